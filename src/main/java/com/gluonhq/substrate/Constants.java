@@ -117,6 +117,57 @@ public class Constants {
     public static final String APK_PATH = "apk";
     public static final String NATIVE_CODE_PATH = "native";
 
+    /**
+     * Fingerprints of the inputs of the build steps, stored under the gvm path
+     */
+    public static final String COMPILE_FINGERPRINT_FILE = "compile.fingerprint";
+    public static final String LINK_FINGERPRINT_FILE = "link.fingerprint";
+    public static final String ADDITIONAL_SOURCES_FINGERPRINT_FILE = "sources.fingerprint";
+
+    /**
+     * Plan of the build, stored under the gvm path
+     */
+    public static final String BUILD_PLAN_FILE = "plan.json";
+
+    /**
+     * Resources used by the processes of each step of the build, stored under the log path
+     */
+    public static final String BUILD_USAGE_FILE = "process-usage.json";
+
+    /**
+     * Shared cache of object files, stored under the user substrate path
+     */
+    public static final String OBJECT_CACHE_FOLDER = "cache";
+    public static final long DEFAULT_OBJECT_CACHE_SIZE_MB = 2048;
+
+    /**
+     * Lock files of the native-image processes running on the host, stored under the user substrate path
+     */
+    public static final String ACTIVE_BUILDS_FOLDER = "builds";
+
+    /**
+     * Durations of the native-image phases of previous builds, stored under the user substrate path
+     */
+    public static final String BUILD_HISTORY_FOLDER = "history";
+
+    /**
+     * Answers of toolchain queries, like compiler versions, stored under the user substrate path
+     */
+    public static final String TOOL_QUERY_CACHE_FOLDER = "queries";
+    public static final int DEFAULT_TOOL_QUERY_CACHE_DAYS = 7;
+
+    /**
+     * Index of the relevant entries of the jars of the classpath, stored under the user substrate path
+     */
+    public static final String JAR_INDEX_FOLDER = "jarindex";
+    public static final int DEFAULT_JAR_INDEX_DAYS = 30;
+
+    /**
+     * Number of process log files kept in the log folder, and number of them kept compressed
+     */
+    public static final int DEFAULT_PROCESS_LOGS = 20;
+    public static final int DEFAULT_COMPRESSED_PROCESS_LOGS = 200;
+
 
 
     /**
@@ -134,6 +185,7 @@ public class Constants {
     public static final String ANDROID_RES_FOLDER = "res";
     public static final String ANDROID_KEYSTORE = "debug.keystore";
 
+    public static final String META_INF_SUBSTRATE = "META-INF/substrate/";
     public static final String META_INF_SUBSTRATE_DALVIK = "META-INF/substrate/dalvik";
     public static final String DALVIK_PRECOMPILED_CLASSES = "/precompiled/classes/";
     public static final String DALVIK_ACTIVITY_PACKAGE = "com/gluonhq/helloandroid/";
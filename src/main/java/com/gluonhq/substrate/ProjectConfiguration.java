@@ -281,6 +281,34 @@ public class ProjectConfiguration {
         this.iosSigningConfiguration = iosSigningConfiguration;
     }
 
+    /**
+     * Creates a copy of this configuration for a different target, so the same
+     * project can be built for several targets concurrently.
+     *
+     * @param targetTriplet the target of the new configuration
+     * @return a new project configuration
+     */
+    ProjectConfiguration copyForTarget(Triplet targetTriplet) {
+        ProjectConfiguration copy = new ProjectConfiguration(mainClassName, classpath);
+        copy.graalPath = graalPath;
+        copy.javafxStaticSdkVersion = javafxStaticSdkVersion;
+        copy.javaStaticSdkVersion = javaStaticSdkVersion;
+        copy.usePrismSW = usePrismSW;
+        copy.verbose = verbose;
+        copy.usePrecompiledCode = usePrecompiledCode;
+        copy.targetTriplet = targetTriplet;
+        copy.hostTriplet = hostTriplet;
+        copy.bundlesList = bundlesList;
+        copy.resourcesList = resourcesList;
+        copy.reflectionList = reflectionList;
+        copy.jniList = jniList;
+        copy.compilerArgs = compilerArgs;
+        copy.appId = appId;
+        copy.appName = appName;
+        copy.iosSigningConfiguration = iosSigningConfiguration;
+        return copy;
+    }
+
     @Override
     public String toString() {
         return "ProjectConfiguration{" +
@@ -0,0 +1,559 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate;
+
+import com.gluonhq.substrate.model.IosSigningConfiguration;
+import com.gluonhq.substrate.model.Triplet;
+import com.gluonhq.substrate.util.CancellationToken;
+import com.gluonhq.substrate.util.Logger;
+import com.gluonhq.substrate.util.Strings;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.stream.Collectors;
+
+/**
+ * A long-lived build daemon, similar to the Gradle daemon.
+ *
+ * Build tools start a new JVM for every Substrate invocation, and each one has
+ * to rebuild the same derived state: the jar scans, the pkg-config lookups, the
+ * GraalVM checks and the verification of the static SDKs. The daemon keeps that
+ * state in memory between builds, and every cache is invalidated when the size,
+ * last modified time or hash of the files it depends on change.
+ *
+ * The daemon listens on a loopback socket. Its port and an access token are
+ * stored in <code>~/.gluon/substrate/daemon.properties</code>, readable only by
+ * the user. Clients submit build requests with {@link #build(Path, ProjectConfiguration, String)},
+ * and receive the logs of the build while it runs. Builds are executed one at a time.
+ *
+ * The external processes of a build inherit the environment of the daemon, like
+ * <code>PATH</code> or <code>ANDROID_SDK</code>, so the daemon only accepts builds from clients
+ * with the same values of the environment variables that affect a build. Other clients get
+ * an {@link IOException}, and can build without the daemon, or restart it. Other environment
+ * variables are not sent to the daemon.
+ *
+ * Start the daemon with <code>java com.gluonhq.substrate.SubstrateDaemon</code>, and
+ * stop it with <code>java com.gluonhq.substrate.SubstrateDaemon stop</code>. The daemon
+ * stops itself after being idle for <code>-Ddaemonidletimeout</code> minutes, 180 by default.
+ */
+public class SubstrateDaemon {
+
+    private static final Path DAEMON_FILE = Constants.USER_SUBSTRATE_PATH.resolve("daemon.properties");
+
+    /**
+     * System properties of the client that are applied to the daemon during a build
+     */
+    private static final List<String> FORWARDED_PROPERTIES = List.of(
+            "skipcompile", "skipsigning", "javalibspath", "javafxsdk", "initbuildtimelist",
+            "expected", "objectcachesize", "buildtimeout", "jarscanthreads");
+
+    /**
+     * Environment variables that affect a build, and have to match between the client
+     * and the daemon, besides <code>LANG</code> and <code>LC_*</code>
+     */
+    private static final List<String> BUILD_ENVIRONMENT = List.of(
+            "PATH", "JAVA_HOME", "GRAALVM_HOME", "ANDROID_HOME", "ANDROID_NDK", "ANDROID_SDK",
+            "PKG_CONFIG_PATH", "DEVELOPER_DIR");
+
+    private static final byte FRAME_LOG = 'L';
+    private static final byte FRAME_RESULT = 'R';
+    private static final byte FRAME_REFUSED = 'X';
+
+    private final ServerSocket serverSocket;
+    private final String token;
+    private final long idleTimeout;
+    private final Object buildLock = new Object();
+    private volatile long lastActivity = System.currentTimeMillis();
+    private volatile boolean running = true;
+    private volatile boolean building;
+
+    private SubstrateDaemon(long idleTimeout) throws IOException {
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        this.serverSocket.setSoTimeout((int) TimeUnit.MINUTES.toMillis(1));
+        this.token = createToken();
+        this.idleTimeout = idleTimeout;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && "stop".equals(args[0])) {
+            stop();
+            return;
+        }
+        if (isRunning()) {
+            System.out.println("The Substrate daemon is already running");
+            return;
+        }
+        long idleMinutes = Long.getLong("daemonidletimeout", 180);
+        new SubstrateDaemon(TimeUnit.MINUTES.toMillis(idleMinutes)).serve();
+    }
+
+    /**
+     * Checks if a daemon is running for the current user
+     * @return true if a daemon is accepting requests
+     */
+    public static boolean isRunning() {
+        try (Socket socket = connect()) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Submits a build request to the running daemon, and waits for its result.
+     * The logs of the build are printed to the standard output.
+     *
+     * @param buildRoot the root, relative to which the compilation step can create object files and temporary files
+     * @param config the ProjectConfiguration, including the target triplet
+     * @param step the step to execute: compile, link, package, install or run
+     * @return true if the build succeeded, false otherwise
+     * @throws IOException if there is no daemon running, or the connection fails,
+     * or the daemon was started with a different environment
+     */
+    public static boolean build(Path buildRoot, ProjectConfiguration config, String step) throws IOException {
+        Properties request = toProperties(config);
+        request.setProperty("command", "build");
+        request.setProperty("buildRoot", buildRoot.toAbsolutePath().toString());
+        request.setProperty("step", step);
+        for (String name : FORWARDED_PROPERTIES) {
+            String value = System.getProperty(name);
+            if (value != null) {
+                request.setProperty("sysprop." + name, value);
+            }
+        }
+        System.getenv().forEach((name, value) -> {
+            if (isBuildEnvironment(name)) {
+                request.setProperty("env." + name, value);
+            }
+        });
+        try (Socket socket = connect()) {
+            sendRequest(socket, request);
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            while (true) {
+                byte type = in.readByte();
+                String content = readString(in);
+                if (type == FRAME_RESULT) {
+                    return Boolean.parseBoolean(content);
+                }
+                if (type == FRAME_REFUSED) {
+                    throw new IOException(content);
+                }
+                System.out.println(content);
+            }
+        } catch (EOFException e) {
+            throw new IOException("The Substrate daemon closed the connection before the build ended");
+        }
+    }
+
+    /**
+     * Stops the running daemon, if any
+     * @throws IOException if the request can't be sent
+     */
+    public static void stop() throws IOException {
+        if (!isRunning()) {
+            return;
+        }
+        Properties request = new Properties();
+        request.setProperty("command", "stop");
+        try (Socket socket = connect()) {
+            sendRequest(socket, request);
+            new DataInputStream(socket.getInputStream()).readByte();
+        } catch (EOFException e) {
+            // the daemon stopped
+        }
+    }
+
+    private void serve() throws IOException {
+        writeDaemonFile();
+        Logger.logInfo("Substrate daemon listening on port " + serverSocket.getLocalPort());
+        try {
+            while (running) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    lastActivity = System.currentTimeMillis();
+                    Thread thread = new Thread(() -> handle(socket), "substrate-daemon-request");
+                    thread.setDaemon(true);
+                    thread.start();
+                } catch (SocketTimeoutException e) {
+                    if (isIdle()) {
+                        Logger.logInfo("Substrate daemon stopping after being idle");
+                        running = false;
+                    }
+                } catch (SocketException e) {
+                    if (running) {
+                        throw e;
+                    }
+                    // closed by a stop request
+                }
+            }
+        } finally {
+            serverSocket.close();
+            Files.deleteIfExists(DAEMON_FILE);
+        }
+    }
+
+    private boolean isIdle() {
+        return !building && System.currentTimeMillis() - lastActivity >= idleTimeout;
+    }
+
+    private void handle(Socket socket) {
+        try (socket) {
+            Properties request = readRequest(socket);
+            if (!token.equals(request.getProperty("token"))) {
+                Logger.logDebug("Rejected daemon request with an invalid token");
+                return;
+            }
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            switch (request.getProperty("command", "")) {
+                case "stop":
+                    running = false;
+                    serverSocket.close();
+                    sendFrame(out, FRAME_RESULT, "true");
+                    break;
+                case "build":
+                    List<String> differences = getEnvironmentDifferences(request, System.getenv());
+                    if (!differences.isEmpty()) {
+                        sendFrame(out, FRAME_REFUSED, "The Substrate daemon was started with a different environment (" +
+                                String.join(", ", differences) + "), restart it to use the current one");
+                        break;
+                    }
+                    sendFrame(out, FRAME_RESULT, String.valueOf(executeBuild(request, out)));
+                    break;
+                default:
+                    sendFrame(out, FRAME_RESULT, "false");
+            }
+        } catch (IOException e) {
+            Logger.logDebug("Error handling daemon request: " + e.getMessage());
+        }
+    }
+
+    private boolean executeBuild(Properties request, DataOutputStream out) throws IOException {
+        if (building) {
+            sendFrame(out, FRAME_LOG, "[Substrate daemon] Waiting for another build to finish");
+        }
+        synchronized (buildLock) {
+            building = true;
+            lastActivity = System.currentTimeMillis();
+            ProjectConfiguration config = fromProperties(request);
+            CancellationToken cancellationToken = new CancellationToken();
+            Handler handler = new ForwardingHandler(out, config.isVerbose() ? Level.FINE : Level.INFO, cancellationToken);
+            Map<String, String> previousProperties = applySystemProperties(request);
+            Logger.addHandler(handler);
+            try {
+                SubstrateDispatcher.Step step = SubstrateDispatcher.Step.valueOf(
+                        request.getProperty("step", "link").toUpperCase(Locale.ROOT));
+                SubstrateDispatcher dispatcher = new SubstrateDispatcher(Path.of(request.getProperty("buildRoot")), config, cancellationToken);
+                return SubstrateDispatcher.executeSteps(step, dispatcher);
+            } catch (RuntimeException e) {
+                Logger.logSevere("Build failed with an exception: " + e);
+                return false;
+            } finally {
+                Logger.removeHandler(handler);
+                restoreSystemProperties(previousProperties);
+                lastActivity = System.currentTimeMillis();
+                building = false;
+            }
+        }
+    }
+
+    /**
+     * Returns the names of the environment variables that affect a build and are
+     * missing or have a different value in the request and in the given environment
+     */
+    static List<String> getEnvironmentDifferences(Properties request, Map<String, String> environment) {
+        Map<String, String> requestEnvironment = new HashMap<>();
+        for (String key : request.stringPropertyNames()) {
+            if (key.startsWith("env.")) {
+                requestEnvironment.put(key.substring("env.".length()), request.getProperty(key));
+            }
+        }
+        Set<String> names = new TreeSet<>(requestEnvironment.keySet());
+        names.addAll(environment.keySet());
+        return names.stream()
+                .filter(SubstrateDaemon::isBuildEnvironment)
+                .filter(name -> !Objects.equals(requestEnvironment.get(name), environment.get(name)))
+                .collect(Collectors.toList());
+    }
+
+    private static boolean isBuildEnvironment(String name) {
+        return BUILD_ENVIRONMENT.contains(name) || "LANG".equals(name) || name.startsWith("LC_");
+    }
+
+    private static Map<String, String> applySystemProperties(Properties request) {
+        Map<String, String> previous = new HashMap<>();
+        for (String name : FORWARDED_PROPERTIES) {
+            previous.put(name, System.getProperty(name));
+            String value = request.getProperty("sysprop." + name);
+            if (value == null) {
+                System.clearProperty(name);
+            } else {
+                System.setProperty(name, value);
+            }
+        }
+        return previous;
+    }
+
+    private static void restoreSystemProperties(Map<String, String> previous) {
+        previous.forEach((name, value) -> {
+            if (value == null) {
+                System.clearProperty(name);
+            } else {
+                System.setProperty(name, value);
+            }
+        });
+    }
+
+    private void writeDaemonFile() throws IOException {
+        Files.createDirectories(DAEMON_FILE.getParent());
+        Files.deleteIfExists(DAEMON_FILE);
+        try {
+            Files.createFile(DAEMON_FILE, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException e) {
+            Files.createFile(DAEMON_FILE);
+        }
+        Properties properties = new Properties();
+        properties.setProperty("port", String.valueOf(serverSocket.getLocalPort()));
+        properties.setProperty("token", token);
+        properties.setProperty("pid", String.valueOf(ProcessHandle.current().pid()));
+        try (OutputStream os = Files.newOutputStream(DAEMON_FILE)) {
+            properties.store(os, "Substrate daemon");
+        }
+    }
+
+    private static Socket connect() throws IOException {
+        if (!Files.exists(DAEMON_FILE)) {
+            throw new IOException("The Substrate daemon is not running");
+        }
+        Properties properties = new Properties();
+        try (InputStream is = Files.newInputStream(DAEMON_FILE)) {
+            properties.load(is);
+        }
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(properties.getProperty("port")));
+        socket.setTcpNoDelay(true);
+        return socket;
+    }
+
+    private static void sendRequest(Socket socket, Properties request) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream is = Files.newInputStream(DAEMON_FILE)) {
+            properties.load(is);
+        }
+        request.setProperty("token", properties.getProperty("token", ""));
+        StringWriter writer = new StringWriter();
+        request.store(writer, null);
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        writeString(out, writer.toString());
+        out.flush();
+    }
+
+    private static Properties readRequest(Socket socket) throws IOException {
+        Properties request = new Properties();
+        request.load(new StringReader(readString(new DataInputStream(socket.getInputStream()))));
+        return request;
+    }
+
+    private static void sendFrame(DataOutputStream out, byte type, String content) throws IOException {
+        synchronized (out) {
+            out.writeByte(type);
+            writeString(out, content);
+            out.flush();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String createToken() {
+        byte[] bytes = new byte[24];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    static Properties toProperties(ProjectConfiguration config) {
+        Properties properties = new Properties();
+        properties.setProperty("mainClassName", config.getMainClassName());
+        properties.setProperty("classpath", config.getClasspath());
+        setIfNotNull(properties, "graalPath", config.getGraalPath() == null ? null : config.getGraalPath().toString());
+        setIfNotNull(properties, "javaStaticSdkVersion", config.getJavaStaticSdkVersion());
+        setIfNotNull(properties, "javafxStaticSdkVersion", config.getJavafxStaticSdkVersion());
+        properties.setProperty("usePrismSW", String.valueOf(config.isUsePrismSW()));
+        properties.setProperty("verbose", String.valueOf(config.isVerbose()));
+        properties.setProperty("usePrecompiledCode", String.valueOf(config.isUsePrecompiledCode()));
+        setIfNotNull(properties, "target", toString(config.getTargetTriplet()));
+        setIfNotNull(properties, "host", toString(config.getHostTriplet()));
+        properties.setProperty("bundlesList", String.join("\n", config.getBundlesList()));
+        properties.setProperty("resourcesList", String.join("\n", config.getResourcesList()));
+        properties.setProperty("reflectionList", String.join("\n", config.getReflectionList()));
+        properties.setProperty("jniList", String.join("\n", config.getJniList()));
+        properties.setProperty("compilerArgs", String.join("\n", config.getCompilerArgs()));
+        setIfNotNull(properties, "appId", config.getAppId());
+        setIfNotNull(properties, "appName", config.getAppName());
+        IosSigningConfiguration ios = config.getIosSigningConfiguration();
+        if (ios != null) {
+            properties.setProperty("ios.skipSigning", String.valueOf(ios.isSkipSigning()));
+            setIfNotNull(properties, "ios.signingIdentity", ios.getProvidedSigningIdentity());
+            setIfNotNull(properties, "ios.provisioningProfile", ios.getProvidedProvisioningProfile());
+            setIfNotNull(properties, "ios.simulatorDevice", ios.getSimulatorDevice());
+        }
+        return properties;
+    }
+
+    static ProjectConfiguration fromProperties(Properties properties) {
+        ProjectConfiguration config = new ProjectConfiguration(properties.getProperty("mainClassName"),
+                properties.getProperty("classpath"));
+        if (properties.getProperty("graalPath") != null) {
+            config.setGraalPath(Path.of(properties.getProperty("graalPath")));
+        }
+        config.setJavaStaticSdkVersion(properties.getProperty("javaStaticSdkVersion"));
+        config.setJavafxStaticSdkVersion(properties.getProperty("javafxStaticSdkVersion"));
+        config.setUsePrismSW(Boolean.parseBoolean(properties.getProperty("usePrismSW")));
+        config.setVerbose(Boolean.parseBoolean(properties.getProperty("verbose")));
+        config.setUsePrecompiledCode(Boolean.parseBoolean(properties.getProperty("usePrecompiledCode", "true")));
+        config.setTarget(toTriplet(properties.getProperty("target")));
+        if (properties.getProperty("host") != null) {
+            config.setHostTriplet(toTriplet(properties.getProperty("host")));
+        }
+        config.setBundlesList(Strings.split(properties.getProperty("bundlesList"), "\n"));
+        config.setResourcesList(Strings.split(properties.getProperty("resourcesList"), "\n"));
+        config.setReflectionList(Strings.split(properties.getProperty("reflectionList"), "\n"));
+        config.setJniList(Strings.split(properties.getProperty("jniList"), "\n"));
+        config.setCompilerArgs(Strings.split(properties.getProperty("compilerArgs"), "\n"));
+        config.setAppId(properties.getProperty("appId"));
+        config.setAppName(properties.getProperty("appName"));
+        IosSigningConfiguration ios = new IosSigningConfiguration();
+        ios.setSkipSigning(Boolean.parseBoolean(properties.getProperty("ios.skipSigning")));
+        ios.setProvidedSigningIdentity(properties.getProperty("ios.signingIdentity"));
+        ios.setProvidedProvisioningProfile(properties.getProperty("ios.provisioningProfile"));
+        ios.setSimulatorDevice(properties.getProperty("ios.simulatorDevice"));
+        config.setIosSigningConfiguration(ios);
+        return config;
+    }
+
+    private static void setIfNotNull(Properties properties, String key, String value) {
+        if (value != null) {
+            properties.setProperty(key, value);
+        }
+    }
+
+    private static String toString(Triplet triplet) {
+        return triplet == null ? null :
+                String.join(":", triplet.getArch(), triplet.getVendor(), triplet.getOs());
+    }
+
+    private static Triplet toTriplet(String value) {
+        if (value == null) {
+            return null;
+        }
+        String[] parts = value.split(":");
+        return new Triplet(parts[0], parts[1], parts[2]);
+    }
+
+    /**
+     * Sends the log records of a build to the client that requested it
+     */
+    private static class ForwardingHandler extends Handler {
+
+        private final DataOutputStream out;
+        private final CancellationToken cancellationToken;
+
+        ForwardingHandler(DataOutputStream out, Level level, CancellationToken cancellationToken) {
+            this.out = out;
+            this.cancellationToken = cancellationToken;
+            setLevel(level);
+        }
+
+        @Override
+        public void publish(LogRecord record) {
+            if (!isLoggable(record)) {
+                return;
+            }
+            try {
+                String message = "[" + record.getLevel() + "] " + record.getMessage();
+                if (record.getThrown() != null) {
+                    StringWriter stackTrace = new StringWriter();
+                    record.getThrown().printStackTrace(new PrintWriter(stackTrace));
+                    message += "\n" + stackTrace;
+                }
+                sendFrame(out, FRAME_LOG, message);
+            } catch (IOException e) {
+                // the client is gone, so is the build
+                cancellationToken.cancel("the daemon client disconnected");
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -36,16 +36,39 @@ import com.gluonhq.substrate.target.IosTargetConfiguration;
 import com.gluonhq.substrate.target.LinuxTargetConfiguration;
 import com.gluonhq.substrate.target.TargetConfiguration;
 import com.gluonhq.substrate.target.WindowsTargetConfiguration;
+import com.gluonhq.substrate.util.BuildPlan;
+import com.gluonhq.substrate.util.BuildTrace;
+import com.gluonhq.substrate.util.BuildUsage;
+import com.gluonhq.substrate.util.CancellationToken;
 import com.gluonhq.substrate.util.Logger;
+import com.gluonhq.substrate.util.ProgressListener;
+import com.gluonhq.substrate.util.ProgressTracker;
+import com.gluonhq.substrate.util.ResourceGovernor;
 import com.gluonhq.substrate.util.Strings;
+import com.gluonhq.substrate.util.TaskGraph;
 
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 public class SubstrateDispatcher {
 
@@ -54,7 +77,7 @@ public class SubstrateDispatcher {
      * the SubstrateDispatcher. The steps are only used when
      * the dispatcher is launched through the main method.
      */
-    private enum Step {
+    enum Step {
         /**
          * The goal of the COMPILE step is to run GraalVM
          * native-image to generate a compiled object file.
@@ -108,32 +131,110 @@ public class SubstrateDispatcher {
         }
     }
 
-    private static volatile boolean compiling = true;
+    private static final Map<String, String> STEP_FAILURE_MESSAGES = Map.of(
+            "compile", "Compiling failed",
+            "link", "Linking failed",
+            "preparePackage", "Preparing the package failed",
+            "package", "Packaging failed",
+            "install", "Installing failed",
+            "run", "Running failed");
 
     public static void main(String[] args) throws IOException {
         Step step = getStepToExecute();
 
         Path buildRoot = Paths.get(System.getProperty("user.dir"), "build", "autoclient");
         ProjectConfiguration configuration = createProjectConfiguration();
+
+        String targetProfiles = System.getProperty("targetProfiles");
+        if (targetProfiles != null) {
+            executeMultiTargetStep(step, buildRoot, configuration, targetProfiles);
+            return;
+        }
+
         SubstrateDispatcher dispatcher = new SubstrateDispatcher(buildRoot, configuration);
+        if (Boolean.getBoolean("plan")) {
+            executePlan(dispatcher);
+            return;
+        }
+        if (!executeSteps(step, dispatcher)) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Executes the given step, and all the steps it requires, using a graph of
+     * tasks. Each task declares its inputs and outputs, so the tasks that don't
+     * depend on each other, like preparing the package resources while the
+     * native image is compiled, can run concurrently.
+     *
+     * @param step the step to execute
+     * @param dispatcher the dispatcher of the project
+     * @return true if all the steps succeeded, false otherwise
+     */
+    static boolean executeSteps(Step step, SubstrateDispatcher dispatcher) {
+        dispatcher.openTrace(true);
+        CancellationToken cancellationToken = dispatcher.getCancellationToken();
+        long timeout = Long.getLong("buildtimeout", 0);
+        if (timeout > 0) {
+            cancellationToken.cancelAfter(timeout, TimeUnit.MINUTES);
+        }
+        Thread shutdownHook = new Thread(() -> cancellationToken.cancel("the build process is shutting down"));
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+        try (BuildTrace.Span span = BuildTrace.begin("dispatcher", "build " + step.name().toLowerCase(Locale.ROOT))) {
+            createTaskGraph(step, dispatcher)
+                    .setCancellationToken(cancellationToken)
+                    .execute();
+            return true;
+        } catch (TaskGraph.TaskFailedException e) {
+            String message = STEP_FAILURE_MESSAGES.getOrDefault(e.getTaskName(), e.getTaskName() + " failed");
+            if (cancellationToken.isCancelled()) {
+                Logger.logSevere("Building was cancelled: " + cancellationToken.getReason() + ".");
+            } else if (e.getCause() == null) {
+                Logger.logSevere(message + ".");
+            } else {
+                Logger.logSevere(message + " with an exception: " + e.getCause());
+                Logger.logDebug("Exception of task " + e.getTaskName(), e.getCause());
+            }
+            return false;
+        } catch (CancellationException e) {
+            Logger.logSevere("Building was cancelled: " + cancellationToken.getReason() + ".");
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancellationToken.cancel("the build was interrupted");
+            Logger.logSevere("Building was interrupted.");
+            return false;
+        } finally {
+            cancellationToken.clearTimeout();
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // the JVM is shutting down
+            }
+        }
+    }
 
-        executeCompileStep(dispatcher);
+    private static TaskGraph createTaskGraph(Step step, SubstrateDispatcher dispatcher) {
+        TaskGraph graph = new TaskGraph("build");
+        graph.addTask("compile", List.of(), List.of("objectFiles"), dispatcher::nativeCompile);
 
         if (step.requires(Step.LINK)) {
-            executeLinkStep(dispatcher);
+            graph.addTask("link", List.of("objectFiles"), List.of("application"), dispatcher::nativeLink);
         }
 
         if (step.requires(Step.PACKAGE)) {
-            executePackageStep(dispatcher);
+            graph.addTask("preparePackage", List.of(), List.of("packageResources"), dispatcher::nativePreparePackage);
+            graph.addTask("package", List.of("application", "packageResources"), List.of("package"), dispatcher::nativePackage);
         }
 
         if (step.requires(Step.INSTALL)) {
-            executeInstallStep(dispatcher);
+            graph.addTask("install", List.of("package"), List.of("installedApplication"), dispatcher::nativeInstall);
         }
 
         if (step.requires(Step.RUN)) {
-            executeRunStep(dispatcher);
+            graph.addTask("run", List.of("installedApplication"), List.of(), () -> runApplication(dispatcher));
         }
+        return graph;
     }
 
     private static ProjectConfiguration createProjectConfiguration() {
@@ -180,91 +281,64 @@ public class SubstrateDispatcher {
                 .orElse(Step.RUN);
     }
 
-    public static void executeCompileStep(SubstrateDispatcher dispatcher) {
-        startNativeCompileTimer();
-
+    private static void executeMultiTargetStep(Step step, Path buildRoot, ProjectConfiguration configuration, String targetProfiles) {
+        if (step.requires(Step.PACKAGE)) {
+            throw new IllegalArgumentException("Only the compile and link steps can be executed for multiple targets. Use -Dstep=link");
+        }
+        List<Triplet> targets = Strings.split(targetProfiles).stream()
+                .map(profile -> new Triplet(Constants.Profile.valueOf(profile.trim().toUpperCase(Locale.ROOT))))
+                .collect(Collectors.toList());
         try {
-            boolean nativeCompileSucceeded = dispatcher.nativeCompile();
-            compiling = false;
-
-            if (!nativeCompileSucceeded) {
-                Logger.logSevere("Compiling failed.");
+            Map<Triplet, Boolean> results = nativeCompileAndLink(buildRoot, configuration, targets, step.requires(Step.LINK));
+            if (results.containsValue(Boolean.FALSE)) {
+                Logger.logSevere("Building failed for targets: " + results.entrySet().stream()
+                        .filter(e -> !e.getValue())
+                        .map(e -> e.getKey().toString())
+                        .collect(Collectors.joining(", ")));
                 System.exit(1);
             }
         } catch (Throwable t) {
-            Logger.logFatal(t, "Compiling failed with an exception.");
+            Logger.logFatal(t, "Building failed with an exception.");
         }
     }
 
-    private static void startNativeCompileTimer() {
-        Thread timer = new Thread(() -> {
-            int counter = 1;
-            while (compiling) {
-                try {
-                    Thread.sleep(60000);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-                Logger.logInfo("NativeCompile is still running, please hold [" + counter++ + " minute(s)]");
-            }
-        });
-        timer.setDaemon(true);
-        timer.start();
-    }
-
-    private static void executeLinkStep(SubstrateDispatcher dispatcher) {
+    private static void executePlan(SubstrateDispatcher dispatcher) {
         try {
-            if (!dispatcher.nativeLink()) {
-                Logger.logSevere("Linking failed.");
-                System.exit(1);
-            }
+            System.out.println(dispatcher.nativePlan().toJson());
         } catch (Throwable t) {
-            Logger.logFatal(t, "Linking failed with an exception.");
+            Logger.logFatal(t, "Computing the build plan failed with an exception.");
         }
     }
 
-    private static void executePackageStep(SubstrateDispatcher dispatcher) {
+    public static void executeCompileStep(SubstrateDispatcher dispatcher) {
         try {
-            if (!dispatcher.nativePackage()) {
-                Logger.logSevere("Packaging failed.");
+            boolean nativeCompileSucceeded = dispatcher.nativeCompile();
+
+            if (!nativeCompileSucceeded) {
+                Logger.logSevere("Compiling failed.");
                 System.exit(1);
             }
         } catch (Throwable t) {
-            Logger.logFatal(t, "Packaging failed with an exception.");
+            Logger.logFatal(t, "Compiling failed with an exception.");
         }
     }
 
-    private static void executeInstallStep(SubstrateDispatcher dispatcher) {
-        try {
-            if (!dispatcher.nativeInstall()) {
-                Logger.logSevere("Installing failed.");
-                System.exit(1);
-            }
-        } catch (Throwable t) {
-            Logger.logFatal(t, "Installing failed with an exception.");
+    private static boolean runApplication(SubstrateDispatcher dispatcher) throws IOException, InterruptedException {
+        String expected = System.getProperty("expected");
+        if (expected == null) {
+            dispatcher.nativeRun();
+            return true;
         }
-    }
+        Logger.logInfo(logTitle("RUN TASK (with expected)"));
 
-    private static void executeRunStep(SubstrateDispatcher dispatcher) {
-        try {
-            String expected = System.getProperty("expected");
-            if (expected != null) {
-                Logger.logInfo(logTitle("RUN TASK (with expected)"));
-
-                String response = dispatcher.targetConfiguration.run(dispatcher.paths.getAppPath(),
-                        dispatcher.config.getAppName());
-                if (expected.equals(response)) {
-                    Logger.logInfo("Run ended successfully, the output: " + expected + " matched the expected result.");
-                } else {
-                    Logger.logSevere("Run failed, expected output: " + expected + ", output: " + response);
-                    System.exit(1);
-                }
-            } else {
-                dispatcher.nativeRun();
-            }
-        } catch (Throwable t) {
-            Logger.logFatal(t, "Running failed with an exception");
+        String response = dispatcher.targetConfiguration.run(dispatcher.paths.getAppPath(),
+                dispatcher.config.getAppName());
+        if (expected.equals(response)) {
+            Logger.logInfo("Run ended successfully, the output: " + expected + " matched the expected result.");
+            return true;
         }
+        Logger.logSevere("Run failed, expected output: " + expected + ", output: " + response);
+        return false;
     }
 
     private static String requireSystemProperty(String argName, String errorMessage ) {
@@ -284,10 +358,88 @@ public class SubstrateDispatcher {
         System.out.println("Usage:\n java -Dimagecp=... -Dgraalvm=... -Dmainclass=... com.gluonhq.substrate.SubstrateDispatcher");
     }
 
+    /**
+     * Compiles, and optionally links, the project for several targets concurrently.
+     * Each target gets its own {@link ProcessPaths} and {@link TargetConfiguration}
+     * under the same build root, while classpath scans and the setup of dependencies
+     * are shared between them. The number of native-image processes that run at
+     * the same time is limited by {@link ResourceGovernor}.
+     *
+     * @param buildRoot the root, relative to which the compilation step can create object files and temporary files
+     * @param config the ProjectConfiguration, its target triplet is ignored
+     * @param targets the list of target triplets
+     * @param link true if the link step has to be executed after the compile step
+     * @return a map with the result of the build for each target, in the order of the given list
+     * @throws IOException if the configuration of a target can't be created
+     * @throws InterruptedException if the thread is interrupted while waiting for the builds
+     */
+    public static Map<Triplet, Boolean> nativeCompileAndLink(Path buildRoot, ProjectConfiguration config,
+                                                             List<Triplet> targets, boolean link) throws IOException, InterruptedException {
+        Objects.requireNonNull(buildRoot);
+        Path logPath = Files.createDirectories(buildRoot.resolve(Constants.LOG_PATH));
+        Logger.logInit(logPath.toString(), config.isVerbose());
+        BuildTrace.open(logPath.resolve(BuildTrace.TRACE_FILE), false);
+
+        CancellationToken cancellationToken = new CancellationToken();
+        long timeout = Long.getLong("buildtimeout", 0);
+        if (timeout > 0) {
+            cancellationToken.cancelAfter(timeout, TimeUnit.MINUTES);
+        }
+        Map<Triplet, SubstrateDispatcher> dispatchers = new LinkedHashMap<>();
+        SubstrateDispatcher first = null;
+        for (Triplet target : new LinkedHashSet<>(targets)) {
+            SubstrateDispatcher dispatcher = new SubstrateDispatcher(buildRoot, config.copyForTarget(target), cancellationToken, false);
+            // the classpath is the same for all the targets, so it is indexed only once
+            if (first == null) {
+                first = dispatcher;
+            } else {
+                dispatcher.config.shareClassPathIndex(first.config);
+            }
+            dispatchers.put(target, dispatcher);
+        }
+        Logger.logInfo("Building for " + dispatchers.keySet() + ", with up to " +
+                ResourceGovernor.getMaxProcesses() + " concurrent native-image processes");
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, dispatchers.size()));
+        Map<Triplet, Future<Boolean>> futures = new LinkedHashMap<>();
+        dispatchers.forEach((target, dispatcher) -> futures.put(target, executor.submit(() -> {
+            try (BuildTrace.Span span = BuildTrace.begin("dispatcher", "build " + target)) {
+                boolean success = dispatcher.nativeCompile() && (!link || dispatcher.nativeLink());
+                span.arg("success", success);
+                Logger.logInfo("Building for " + target + (success ? " succeeded" : " failed"));
+                return success;
+            } catch (Exception e) {
+                Logger.logSevere("Building for " + target + " failed with an exception: " + e);
+                return false;
+            }
+        })));
+        executor.shutdown();
+
+        Map<Triplet, Boolean> results = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<Triplet, Future<Boolean>> entry : futures.entrySet()) {
+                try {
+                    results.put(entry.getKey(), entry.getValue().get());
+                } catch (ExecutionException e) {
+                    results.put(entry.getKey(), false);
+                }
+            }
+        } catch (InterruptedException e) {
+            cancellationToken.cancel("the build was interrupted");
+            throw e;
+        } finally {
+            cancellationToken.clearTimeout();
+        }
+        return results;
+    }
+
     private final InternalProjectConfiguration config;
     private final ProcessPaths paths;
     private final TargetConfiguration targetConfiguration;
-
+    private final CancellationToken cancellationToken;
+    private final BuildUsage buildUsage = new BuildUsage();
+    private final boolean ownsTrace;
+    private boolean traceStarted;
 
     /**
      * Dispatches calls to different process steps. Uses shared build root path and project configuration
@@ -295,6 +447,24 @@ public class SubstrateDispatcher {
      * @param config the ProjectConfiguration, including the target triplet
      */
     public SubstrateDispatcher(Path buildRoot, ProjectConfiguration config) throws IOException {
+        this(buildRoot, config, new CancellationToken(), true);
+    }
+
+    /**
+     * Dispatches calls to different process steps. Uses shared build root path and project configuration.
+     * When the given token is cancelled, the external processes of the build are destroyed, and
+     * no more steps are started
+     * @param buildRoot the root, relative to which the compilation step can create object files and temporary files
+     * @param config the ProjectConfiguration, including the target triplet
+     * @param cancellationToken the token that cancels the build
+     */
+    public SubstrateDispatcher(Path buildRoot, ProjectConfiguration config, CancellationToken cancellationToken) throws IOException {
+        this(buildRoot, config, cancellationToken, true);
+    }
+
+    private SubstrateDispatcher(Path buildRoot, ProjectConfiguration config, CancellationToken cancellationToken,
+                                boolean initLogger) throws IOException {
+        this.cancellationToken = Objects.requireNonNull(cancellationToken);
         this.config = new InternalProjectConfiguration(config);
         if (this.config.isVerbose()) {
             System.out.println("Configuration: " + this.config);
@@ -306,20 +476,122 @@ public class SubstrateDispatcher {
         this.targetConfiguration = Objects.requireNonNull(getTargetConfiguration(targetTriplet),
                 "Error: Target Configuration was not found for " + targetTriplet);
 
-        Logger.logInit(paths.getLogPath().toString(), this.config.isVerbose());
+        this.ownsTrace = initLogger;
+        this.targetConfiguration.addProgressListener(new LoggingProgressListener());
+        if (initLogger) {
+            Logger.logInit(paths.getLogPath().toString(), this.config.isVerbose());
+        }
     }
 
     private TargetConfiguration getTargetConfiguration(Triplet targetTriplet) throws IOException {
         switch (targetTriplet.getOs()) {
-            case Constants.OS_LINUX  : return new LinuxTargetConfiguration(paths, config);
-            case Constants.OS_DARWIN : return new MacOSTargetConfiguration(paths, config);
-            case Constants.OS_WINDOWS: return new WindowsTargetConfiguration(paths, config);
-            case Constants.OS_IOS    : return new IosTargetConfiguration(paths, config);
-            case Constants.OS_ANDROID: return new AndroidTargetConfiguration(paths, config);
+            case Constants.OS_LINUX  : return traced(new LinuxTargetConfiguration(paths, config));
+            case Constants.OS_DARWIN : return traced(new MacOSTargetConfiguration(paths, config));
+            case Constants.OS_WINDOWS: return traced(new WindowsTargetConfiguration(paths, config));
+            case Constants.OS_IOS    : return traced(new IosTargetConfiguration(paths, config));
+            case Constants.OS_ANDROID: return traced(new AndroidTargetConfiguration(paths, config));
             default                  : return null;
         }
     }
 
+    /**
+     * Wraps the target configuration, so every call to its methods is recorded
+     * as a span of the {@link BuildTrace}, and runs with the cancellation token
+     * of this dispatcher. The resources used by the processes of each call are
+     * added to the {@link BuildUsage} of the build
+     */
+    private TargetConfiguration traced(TargetConfiguration target) {
+        String prefix = target.getClass().getSimpleName() + ".";
+        return (TargetConfiguration) Proxy.newProxyInstance(TargetConfiguration.class.getClassLoader(),
+                new Class<?>[] {TargetConfiguration.class}, (proxy, method, args) -> {
+                    try (BuildTrace.Span span = BuildTrace.begin("target", prefix + method.getName())) {
+                        Object result = buildUsage.call(method.getName(),
+                                () -> cancellationToken.call(() -> method.invoke(target, args)));
+                        span.arg("result", result);
+                        return result;
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        writeBuildUsage();
+                    }
+                });
+    }
+
+    /**
+     * Opens the trace file of the build. A new trace is started by the compile step,
+     * unless this dispatcher already started one, while the other steps append their
+     * spans to the trace of the build.
+     */
+    private synchronized void openTrace(boolean newBuild) {
+        if (ownsTrace) {
+            BuildTrace.open(paths.getLogPath().resolve(BuildTrace.TRACE_FILE), traceStarted || !newBuild);
+            traceStarted = true;
+        }
+    }
+
+
+    /**
+     * Returns the token that cancels the build. Cancelling it destroys the external
+     * processes that are running, including their descendants, and the steps that
+     * are not started yet fail right away.
+     * A timeout in minutes for the build can be set with the system property <code>buildtimeout</code>
+     * @return the cancellation token
+     */
+    public CancellationToken getCancellationToken() {
+        return cancellationToken;
+    }
+
+    /**
+     * Returns the resources, CPU time, peak memory and storage I/O, used by the external
+     * processes of each step of the build, on Linux. They are also written as JSON to
+     * <code>process-usage.json</code> under the log path.
+     * @return the usage of the build
+     */
+    public BuildUsage getBuildUsage() {
+        return buildUsage;
+    }
+
+    private void writeBuildUsage() {
+        if (buildUsage.getUsageByStep().isEmpty()) {
+            return;
+        }
+        try {
+            buildUsage.write(paths.getLogPath().resolve(Constants.BUILD_USAGE_FILE));
+        } catch (IOException e) {
+            Logger.logDebug("Error writing the build usage: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Adds a listener that receives the progress of the native-image compilation,
+     * with an estimation of the remaining time based on previous builds of the project.
+     * @param listener the listener
+     */
+    public void addProgressListener(ProgressListener listener) {
+        targetConfiguration.addProgressListener(listener);
+    }
+
+    /**
+     * This method computes the plan of the build for the specified configuration, without
+     * starting any external process: the dependencies that would be downloaded, the command
+     * lines of the compile and link steps, and which of them would be skipped as up to date
+     * or restored from the object cache.
+     * The plan is also written as JSON to <code>plan.json</code> under the gvm path.
+     * @return the plan of the build
+     * @throws Exception
+     */
+    public BuildPlan nativePlan() throws Exception {
+        Logger.logInfo(logTitle("PLAN TASK"));
+        BuildPlan plan = new BuildPlan(config.getTargetTriplet().toString());
+        plan.compute(() -> {
+            targetConfiguration.plan(plan);
+            return null;
+        });
+        Path planFile = paths.getGvmPath().resolve(Constants.BUILD_PLAN_FILE);
+        plan.write(planFile);
+        Logger.logInfo("Build plan written to " + planFile);
+        return plan;
+    }
 
     /**
      * This method will start native compilation for the specified configuration.
@@ -330,21 +602,24 @@ public class SubstrateDispatcher {
      * @throws IllegalArgumentException when the supplied configuration contains illegal combinations
      */
     public boolean nativeCompile() throws Exception {
-        Logger.logInfo(logTitle("COMPILE TASK"));
+        openTrace(true);
+        try (BuildTrace.Span span = BuildTrace.begin("dispatcher", "compile")) {
+            Logger.logInfo(logTitle("COMPILE TASK"));
 
-        config.canRunNativeImage();
+            config.canRunNativeImage();
 
-        Triplet targetTriplet  = config.getTargetTriplet();
-        if (!config.getHostTriplet().canCompileTo(targetTriplet)) {
-            throw new IllegalArgumentException("We currently can't compile to " + targetTriplet + " when running on " + config.getHostTriplet());
-        }
+            Triplet targetTriplet  = config.getTargetTriplet();
+            if (!config.getHostTriplet().canCompileTo(targetTriplet)) {
+                throw new IllegalArgumentException("We currently can't compile to " + targetTriplet + " when running on " + config.getHostTriplet());
+            }
 
-        Logger.logInfo("We will now compile your code for " + targetTriplet + ". This may take some time.");
-        boolean compilingSucceeded = targetConfiguration.compile();
-        if (!compilingSucceeded) {
-            Logger.logSevere("Compiling failed.");
+            Logger.logInfo("We will now compile your code for " + targetTriplet + ". This may take some time.");
+            boolean compilingSucceeded = targetConfiguration.compile();
+            if (!compilingSucceeded) {
+                Logger.logSevere("Compiling failed.");
+            }
+            return compilingSucceeded;
         }
-        return compilingSucceeded;
     }
 
     /**
@@ -357,12 +632,36 @@ public class SubstrateDispatcher {
      * @throws IllegalArgumentException when the supplied configuration contains illegal combinations
      */
     public boolean nativeLink() throws IOException, InterruptedException {
-        Logger.logInfo(logTitle("LINK TASK"));
-        boolean linkingSucceeded = targetConfiguration.link();
-        if (!linkingSucceeded) {
-            Logger.logSevere("Linking failed.");
+        openTrace(false);
+        try (BuildTrace.Span span = BuildTrace.begin("dispatcher", "link")) {
+            Logger.logInfo(logTitle("LINK TASK"));
+            boolean linkingSucceeded = targetConfiguration.link();
+            if (!linkingSucceeded) {
+                Logger.logSevere("Linking failed.");
+            }
+            return linkingSucceeded;
+        }
+    }
+
+    /**
+     * This method prepares the parts of the package that don't depend on the native image application,
+     * like resources or precompiled classes, so it can be called while {@link #nativeCompile()} and
+     * {@link #nativeLink()} are running. If it isn't called, {@link #nativePackage()} does the same work.
+     * This method returns <code>true</code> on success and <code>false</code> when it fails.
+     * @return true if preparing succeeded, false if it fails
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public boolean nativePreparePackage() throws IOException, InterruptedException {
+        openTrace(false);
+        try (BuildTrace.Span span = BuildTrace.begin("dispatcher", "preparePackage")) {
+            Logger.logInfo(logTitle("PREPARE PACKAGE TASK"));
+            boolean preparingSucceeded = targetConfiguration.preparePackage();
+            if (!preparingSucceeded) {
+                Logger.logSevere("Preparing the package failed.");
+            }
+            return preparingSucceeded;
         }
-        return linkingSucceeded;
     }
 
     /**
@@ -374,12 +673,15 @@ public class SubstrateDispatcher {
      * @throws InterruptedException
      */
     public boolean nativePackage() throws IOException, InterruptedException {
-        Logger.logInfo(logTitle("PACKAGE TASK"));
-        boolean packagingSucceeded = targetConfiguration.packageApp();
-        if (!packagingSucceeded) {
-            Logger.logSevere("Packaging failed.");
+        openTrace(false);
+        try (BuildTrace.Span span = BuildTrace.begin("dispatcher", "package")) {
+            Logger.logInfo(logTitle("PACKAGE TASK"));
+            boolean packagingSucceeded = targetConfiguration.packageApp();
+            if (!packagingSucceeded) {
+                Logger.logSevere("Packaging failed.");
+            }
+            return packagingSucceeded;
         }
-        return packagingSucceeded;
     }
 
     /**
@@ -391,12 +693,15 @@ public class SubstrateDispatcher {
      * @throws InterruptedException
      */
     public boolean nativeInstall() throws IOException, InterruptedException {
-        Logger.logInfo(logTitle("INSTALL TASK"));
-        boolean installingSucceeded = targetConfiguration.install();
-        if (!installingSucceeded) {
-            Logger.logSevere("Installing failed.");
+        openTrace(false);
+        try (BuildTrace.Span span = BuildTrace.begin("dispatcher", "install")) {
+            Logger.logInfo(logTitle("INSTALL TASK"));
+            boolean installingSucceeded = targetConfiguration.install();
+            if (!installingSucceeded) {
+                Logger.logSevere("Installing failed.");
+            }
+            return installingSucceeded;
         }
-        return installingSucceeded;
     }
 
     /**
@@ -406,7 +711,43 @@ public class SubstrateDispatcher {
      * @throws IllegalArgumentException when the supplied configuration contains illegal combinations
      */
     public void nativeRun() throws IOException, InterruptedException {
-        Logger.logInfo(logTitle("RUN TASK"));
-        targetConfiguration.runUntilEnd();
+        openTrace(false);
+        try (BuildTrace.Span span = BuildTrace.begin("dispatcher", "run")) {
+            Logger.logInfo(logTitle("RUN TASK"));
+            targetConfiguration.runUntilEnd();
+        }
+    }
+
+    /**
+     * Logs the phases of native-image when they end, and the progress
+     * once a minute, so the user knows the build is not stuck
+     */
+    private static class LoggingProgressListener implements ProgressListener {
+
+        private final List<String> loggedPhases = new ArrayList<>();
+        private long lastLog;
+
+        @Override
+        public synchronized void onProgress(ProgressTracker.Progress progress) {
+            if (progress.isFinished()) {
+                loggedPhases.clear();
+                lastLog = 0;
+                return;
+            }
+            for (String phase : progress.getCompletedPhases()) {
+                if (!loggedPhases.contains(phase)) {
+                    loggedPhases.add(phase);
+                    Logger.logDebug("native-image phase " + phase + " finished, " + progress.getPercent() + "% done");
+                }
+            }
+            long minutes = progress.getElapsedMillis() / 60000;
+            if (minutes > lastLog) {
+                lastLog = minutes;
+                String eta = progress.getEtaMillis() < 0 ? "" :
+                        ", about " + Math.max(1, Math.round(progress.getEtaMillis() / 60000.0)) + " minute(s) left";
+                Logger.logInfo("NativeCompile is still running, please hold [" + minutes + " minute(s), " +
+                        progress.getPercent() + "% done" + eta + "]");
+            }
+        }
     }
 }
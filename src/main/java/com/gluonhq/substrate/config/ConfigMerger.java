@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.config;
+
+import com.gluonhq.substrate.util.Logger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Merges the reflection, JNI and resource configuration files that are passed
+ * to native-image, from the bundled files, the jars in the classpath and the
+ * project configuration.
+ *
+ * Class entries are deduplicated by class name: boolean flags like
+ * <code>allDeclaredMethods</code> are combined, and the lists of methods and fields
+ * are joined without duplicates. Resource patterns are deduplicated too.
+ * The output is sorted, so the same input always produces the same file.
+ */
+public class ConfigMerger {
+
+    private static final List<String> ALL_MEMBERS = List.of(
+            "allDeclaredConstructors", "allPublicConstructors",
+            "allDeclaredFields", "allPublicFields",
+            "allDeclaredMethods", "allPublicMethods");
+
+    private final Map<String, Map<String, Object>> classes = new TreeMap<>();
+    private final TreeSet<String> patterns = new TreeSet<>();
+    private int classEntries;
+
+    /**
+     * Adds the entries of a reflection or JNI configuration file, that contains
+     * a JSON array of class entries
+     *
+     * @param inputStream the stream with the content of the file, it will be closed
+     * @param source a description of the file, used in error messages
+     * @throws IOException if the content can't be read or it is not valid
+     */
+    public void addClassConfig(InputStream inputStream, String source) throws IOException {
+        try (Reader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            addClassConfig(reader, source);
+        }
+    }
+
+    /**
+     * Adds the entries of a reflection or JNI configuration file, that contains
+     * a JSON array of class entries
+     *
+     * @param content the content of the file
+     * @param source a description of the file, used in error messages
+     * @throws IOException if the content is not valid
+     */
+    public void addClassConfig(String content, String source) throws IOException {
+        addClassConfig(new StringReader(content), source);
+    }
+
+    private void addClassConfig(Reader reader, String source) throws IOException {
+        Object value = Json.parse(reader, source);
+        if (!(value instanceof List)) {
+            throw new IOException("Expected a JSON array of classes in " + source);
+        }
+        for (Object entry : (List<?>) value) {
+            if (!(entry instanceof Map) || !(((Map<?, ?>) entry).get("name") instanceof String)) {
+                throw new IOException("Expected a class entry with a name in " + source + ", found: " + entry);
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, Object> map = (Map<String, Object>) entry;
+            addClassEntry(map);
+        }
+    }
+
+    /**
+     * Adds an entry for the given class
+     *
+     * @param className the fully qualified name of the class
+     * @param allMembers if true, all the constructors, fields and methods of the
+     *                   class are registered, else only the class itself
+     */
+    public void addClass(String className, boolean allMembers) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("name", Objects.requireNonNull(className));
+        if (allMembers) {
+            ALL_MEMBERS.forEach(member -> entry.put(member, Boolean.TRUE));
+        }
+        addClassEntry(entry);
+    }
+
+    private void addClassEntry(Map<String, Object> entry) {
+        classEntries++;
+        String name = (String) entry.get("name");
+        Map<String, Object> existing = classes.computeIfAbsent(name, k -> new LinkedHashMap<>());
+        for (Map.Entry<String, Object> member : entry.entrySet()) {
+            if (member.getValue() == null) {
+                continue;
+            }
+            Object value = member.getValue() instanceof List ?
+                    merge(name, member.getKey(), List.of(), member.getValue()) : member.getValue();
+            existing.merge(member.getKey(), value, (a, b) -> merge(name, member.getKey(), a, b));
+        }
+    }
+
+    /**
+     * Adds the patterns of a resource configuration file, with either the
+     * <code>{"resources": [{"pattern": ...}]}</code> format or the
+     * <code>{"resources": {"includes": [{"pattern": ...}]}}</code> one
+     *
+     * @param content the content of the file
+     * @param source a description of the file, used in error messages
+     * @throws IOException if the content is not valid
+     */
+    public void addResourceConfig(String content, String source) throws IOException {
+        Object value = Json.parse(new StringReader(content), source);
+        Object resources = value instanceof Map ? ((Map<?, ?>) value).get("resources") : null;
+        if (resources instanceof Map) {
+            resources = ((Map<?, ?>) resources).get("includes");
+        }
+        if (!(resources instanceof List)) {
+            throw new IOException("Expected a list of resources in " + source);
+        }
+        for (Object entry : (List<?>) resources) {
+            Object pattern = entry instanceof Map ? ((Map<?, ?>) entry).get("pattern") : null;
+            if (!(pattern instanceof String)) {
+                throw new IOException("Expected a resource entry with a pattern in " + source + ", found: " + entry);
+            }
+            patterns.add((String) pattern);
+        }
+    }
+
+    /**
+     * Adds a resource pattern
+     *
+     * @param pattern the regular expression that matches the resources to include
+     */
+    public void addResourcePattern(String pattern) {
+        patterns.add(Objects.requireNonNull(pattern));
+    }
+
+    /**
+     * Adds a resource pattern that is escaped as the content of a JSON string,
+     * like <code>.*\\.txt$</code>, which is how the resources list of the project
+     * configuration is written. If it is not a valid JSON string, it is added as is.
+     *
+     * @param pattern the escaped regular expression that matches the resources to include
+     */
+    public void addEscapedResourcePattern(String pattern) {
+        Object value;
+        try {
+            value = Json.parse(new StringReader("\"" + pattern + "\""), pattern);
+        } catch (IOException e) {
+            value = pattern;
+        }
+        patterns.add(value.toString());
+    }
+
+    /**
+     * Returns the number of different classes that have been added
+     *
+     * @return the number of classes
+     */
+    public int getClassCount() {
+        return classes.size();
+    }
+
+    /**
+     * Returns the number of different resource patterns that have been added
+     *
+     * @return the number of patterns
+     */
+    public int getPatternCount() {
+        return patterns.size();
+    }
+
+    /**
+     * Writes the merged class entries as a reflection or JNI configuration file,
+     * sorted by class name
+     *
+     * @param path the path of the file
+     * @throws IOException if the file can't be written
+     */
+    public void writeClassConfig(Path path) throws IOException {
+        if (classEntries > classes.size()) {
+            Logger.logDebug("Merged " + classEntries + " class entries into " + classes.size() + " for " + path.getFileName());
+        }
+        try (BufferedWriter bw = Files.newBufferedWriter(path)) {
+            Json.write(bw, new ArrayList<>(classes.values()), 0);
+            bw.write("\n");
+        }
+    }
+
+    /**
+     * Writes the merged resource patterns as a resource configuration file,
+     * sorted by pattern
+     *
+     * @param path the path of the file
+     * @throws IOException if the file can't be written
+     */
+    public void writeResourceConfig(Path path) throws IOException {
+        List<Map<String, Object>> resources = new ArrayList<>();
+        for (String pattern : patterns) {
+            resources.add(Map.of("pattern", pattern));
+        }
+        try (BufferedWriter bw = Files.newBufferedWriter(path)) {
+            Json.write(bw, Map.of("resources", resources), 0);
+            bw.write("\n");
+        }
+    }
+
+    private static Object merge(String className, String key, Object a, Object b) {
+        if (a instanceof Boolean && b instanceof Boolean) {
+            return (Boolean) a || (Boolean) b;
+        }
+        if (a instanceof List && b instanceof List) {
+            // union of members, like methods or fields, sorted by their canonical form
+            Map<String, Object> union = new TreeMap<>();
+            for (Object o : (List<?>) a) {
+                union.putIfAbsent(Json.toCanonicalString(o), o);
+            }
+            for (Object o : (List<?>) b) {
+                union.putIfAbsent(Json.toCanonicalString(o), o);
+            }
+            return new ArrayList<>(union.values());
+        }
+        if (!Objects.equals(a, b)) {
+            Logger.logDebug("Conflicting values for " + key + " in " + className + ": keeping " + a + ", ignoring " + b);
+        }
+        return a;
+    }
+}
@@ -28,20 +28,27 @@
 package com.gluonhq.substrate.config;
 
 import com.gluonhq.substrate.model.ClassPath;
+import com.gluonhq.substrate.model.ClassPathEntry;
 import com.gluonhq.substrate.util.FileOps;
+import com.gluonhq.substrate.util.JarIndex;
 import com.gluonhq.substrate.util.Logger;
 import com.gluonhq.substrate.util.Strings;
 
-import java.io.File;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Enumeration;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.function.Predicate;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import static com.gluonhq.substrate.Constants.META_INF_SUBSTRATE_CONFIG;
 import static com.gluonhq.substrate.Constants.USER_INIT_BUILD_TIME_ARCHOS_FILE;
@@ -56,21 +63,83 @@ import static com.gluonhq.substrate.Constants.USER_RESOURCE_FILE;
 /**
  * Helper class that helps scanning jars in the classpath looking for
  * files in META-INF/substrate/config that contain information that has
- * to be added to the config files and native image command line flags
+ * to be added to the config files and native image command line flags.
+ *
+ * Each jar is visited once: all its META-INF/substrate/config entries are read into
+ * an in-memory index that every query uses afterwards. Jars that haven't changed
+ * since a previous build are not opened, see {@link JarIndex}.
  */
 public class ConfigResolver {
 
-    private final List<File> jars;
+    private static final int DEFAULT_JAR_SCAN_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final Map<ClassPathEntry, Map<String, byte[]>> index = new LinkedHashMap<>();
 
     /**
-     * ConfigResolver constructor
+     * ConfigResolver constructor. Scans every jar of the classpath, and the
+     * project's classes and resources directories, for META-INF/substrate/config entries
      *
      * @param classpath a string with the full classpath of the user's project
      * @throws IOException
      * @throws InterruptedException
      */
     public ConfigResolver(String classpath) throws IOException, InterruptedException {
-        this.jars = new ClassPath(classpath).getJars(true);
+        List<ClassPathEntry> entries = new ClassPath(classpath).getEntries(true).stream()
+                .filter(ClassPathEntry::exists)
+                .collect(Collectors.toList());
+        index.putAll(scanEntries(JarIndex.getUserIndex(), entries, Integer.getInteger("jarscanthreads", DEFAULT_JAR_SCAN_THREADS)));
+    }
+
+    /**
+     * Reads the META-INF/substrate/config entries of the given jars and directories,
+     * using up to the given number of threads. The result keeps the order of
+     * the classpath, so it is the same as a sequential scan.
+     *
+     * @param jarIndex the index of jars
+     * @param entries the list of jars and directories to scan
+     * @param threads the maximum number of entries that are read at the same time
+     * @return a map with the META-INF/substrate/config entries of each jar or directory
+     * @throws IOException if any entry can't be read
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    static Map<ClassPathEntry, Map<String, byte[]>> scanEntries(JarIndex jarIndex, List<ClassPathEntry> entries, int threads) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Map<ClassPathEntry, Map<String, byte[]>> result = new LinkedHashMap<>();
+        int poolSize = Math.min(Math.max(1, threads), entries.size());
+        if (poolSize <= 1) {
+            for (ClassPathEntry entry : entries) {
+                result.put(entry, getSubstrateEntries(jarIndex, entry));
+            }
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(poolSize, r -> {
+                Thread thread = new Thread(r, "substrate-jar-scan-" + THREAD_COUNT.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                List<Future<Map<String, byte[]>>> futures = new ArrayList<>();
+                for (ClassPathEntry entry : entries) {
+                    futures.add(executor.submit(() -> getSubstrateEntries(jarIndex, entry)));
+                }
+                for (int i = 0; i < entries.size(); i++) {
+                    try {
+                        result.put(entries.get(i), futures.get(i).get());
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        if (cause instanceof IOException) {
+                            throw (IOException) cause;
+                        }
+                        throw new IOException(cause);
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        Logger.logDebug("Scanned " + entries.size() + " classpath entries for META-INF/substrate/config entries in " +
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms, using " + poolSize + " threads");
+        return result;
     }
 
     /**
@@ -87,9 +156,7 @@ public class ConfigResolver {
     public List<String> getUserInitBuildTimeList(String archOs) throws IOException {
         Logger.logDebug("Scanning for init build time files");
         return scanJars(USER_INIT_BUILD_TIME_FILE,
-                getFileNameForArchOs(USER_INIT_BUILD_TIME_ARCHOS_FILE, archOs),
-                null,
-                null);
+                getFileNameForArchOs(USER_INIT_BUILD_TIME_ARCHOS_FILE, archOs));
     }
 
     /**
@@ -97,18 +164,16 @@ public class ConfigResolver {
      * and looks for META-INF/substrate/config/reflectionconfig or
      * META-INF/substrate/config/reflectionconfig-${archos} files.
      *
-     * The method will return a list of lines from all the files found
+     * The method will return a map with the content of each file found,
+     * keyed by jar and file name, so it can be parsed as a whole
      *
      * @param archOs a string with the arch and os, it can be null
-     * @return a list of lines that should be added to the reflectionconfig.json file
+     * @return a map of sources and contents of the reflection configuration files
      * @throws IOException
      */
-    public List<String> getUserReflectionList(String archOs) throws IOException {
+    public Map<String, String> getUserReflectionConfigs(String archOs) throws IOException {
         Logger.logDebug("Scanning for reflection files");
-        return scanJars(USER_REFLECTION_FILE,
-                getFileNameForArchOs(USER_REFLECTION_ARCHOS_FILE, archOs),
-                ",",
-                line -> !line.startsWith("[") && !line.startsWith("]"));
+        return scanConfigs(USER_REFLECTION_FILE, getFileNameForArchOs(USER_REFLECTION_ARCHOS_FILE, archOs));
     }
 
     /**
@@ -116,18 +181,16 @@ public class ConfigResolver {
      * and looks for META-INF/substrate/config/jniconfig or
      * META-INF/substrate/config/jniconfig-${archos} files.
      *
-     * The method will return a list of lines from all the files found
+     * The method will return a map with the content of each file found,
+     * keyed by jar and file name, so it can be parsed as a whole
      *
      * @param archOs a string with the arch and os, it can be null
-     * @return a list of lines that should be added to the jniconfig.json file
+     * @return a map of sources and contents of the JNI configuration files
      * @throws IOException
      */
-    public List<String> getUserJNIList(String archOs) throws IOException {
+    public Map<String, String> getUserJNIConfigs(String archOs) throws IOException {
         Logger.logDebug("Scanning for JNI files");
-        return scanJars(USER_JNI_FILE,
-                getFileNameForArchOs(USER_JNI_ARCHOS_FILE, archOs),
-                ",",
-                line -> !line.startsWith("[") && !line.startsWith("]"));
+        return scanConfigs(USER_JNI_FILE, getFileNameForArchOs(USER_JNI_ARCHOS_FILE, archOs));
     }
 
     /**
@@ -135,48 +198,73 @@ public class ConfigResolver {
      * and looks for META-INF/substrate/config/resourceconfig or
      * META-INF/substrate/config/resourceconfig-${archos} files.
      *
-     * The method will return a list of lines from all the files found
+     * The method will return a map with the content of each file found,
+     * keyed by jar and file name, so it can be parsed as a whole
      *
      * @param archOs a string with the arch and os, it can be null
-     * @return a list of lines that should be added to the resourceconfig.json file
+     * @return a map of sources and contents of the resource configuration files
      * @throws IOException
      */
-    public List<String> getUserResourcesList(String archOs) throws IOException {
+    public Map<String, String> getUserResourceConfigs(String archOs) throws IOException {
         Logger.logDebug("Scanning for resource files");
-        return scanJars(USER_RESOURCE_FILE,
-                getFileNameForArchOs(USER_RESOURCE_ARCHOS_FILE, archOs),
-                null,
-                line -> line.trim().startsWith("{\"pattern\""));
+        return scanConfigs(USER_RESOURCE_FILE, getFileNameForArchOs(USER_RESOURCE_ARCHOS_FILE, archOs));
     }
 
-    private List<String> scanJars(String configName, String configArchosName, String initLine, Predicate<String> filter) throws IOException {
+    private Map<String, String> scanConfigs(String configName, String configArchosName) throws IOException {
         Objects.requireNonNull(configName, "configName can't be null");
-        List<String> list = new ArrayList<>();
-        for (File jar : jars) {
-            if (!jar.exists()) {
-                continue;
+        Map<String, String> configs = new LinkedHashMap<>();
+        for (Map.Entry<ClassPathEntry, Map<String, byte[]>> jarEntries : index.entrySet()) {
+            ClassPathEntry jar = jarEntries.getKey();
+            for (Map.Entry<String, byte[]> config : jarEntries.getValue().entrySet()) {
+                String name = config.getKey();
+                if ((META_INF_SUBSTRATE_CONFIG + configName).equals(name) ||
+                        (configArchosName != null && (META_INF_SUBSTRATE_CONFIG + configArchosName).equals(name))) {
+                    Logger.logDebug("Adding configuration from " + jar + "::" + name);
+                    configs.put(jar + "::" + name, new String(config.getValue(), StandardCharsets.UTF_8));
+                }
             }
-            try (ZipFile zip = new ZipFile(jar)) {
-                Logger.logDebug("Scanning " + jar);
-                for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); ) {
-                    ZipEntry zipEntry = e.nextElement();
-                    String name = zipEntry.getName();
-                    if (!zipEntry.isDirectory() &&
-                            ((META_INF_SUBSTRATE_CONFIG + configName).equals(name) ||
-                                (configArchosName != null && (META_INF_SUBSTRATE_CONFIG + configArchosName).equals(name)))) {
-                        if (initLine != null) {
-                            // first line content before adding the file's content
-                            list.add(initLine);
-                        }
-                        Logger.logDebug("Adding classes from " + zip.getName() + "::" + zipEntry.getName());
-                        list.addAll(FileOps.readFileLines(zip.getInputStream(zipEntry), filter));
-                    }
+        }
+        return configs;
+    }
+
+    private List<String> scanJars(String configName, String configArchosName) throws IOException {
+        Objects.requireNonNull(configName, "configName can't be null");
+        List<String> list = new ArrayList<>();
+        for (Map.Entry<ClassPathEntry, Map<String, byte[]>> jarEntries : index.entrySet()) {
+            ClassPathEntry jar = jarEntries.getKey();
+            for (Map.Entry<String, byte[]> config : jarEntries.getValue().entrySet()) {
+                String name = config.getKey();
+                if ((META_INF_SUBSTRATE_CONFIG + configName).equals(name) ||
+                        (configArchosName != null && (META_INF_SUBSTRATE_CONFIG + configArchosName).equals(name))) {
+                    Logger.logDebug("Adding classes from " + jar + "::" + name);
+                    list.addAll(readLines(config.getValue()));
                 }
             }
         }
         return list;
     }
 
+    /**
+     * Returns the content of all the files under META-INF/substrate/config in
+     * the given jar or directory. Jars are read from the index of jars, that
+     * only opens a jar if it has changed since the last time it was indexed,
+     * while directories are read in place.
+     */
+    private static Map<String, byte[]> getSubstrateEntries(JarIndex jarIndex, ClassPathEntry classPathEntry) throws IOException {
+        if (classPathEntry.isDirectory()) {
+            return classPathEntry.readEntries(META_INF_SUBSTRATE_CONFIG);
+        }
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        for (JarIndex.Entry entry : jarIndex.getEntries(classPathEntry.getFile(), META_INF_SUBSTRATE_CONFIG)) {
+            entries.put(entry.getName(), entry.getContent());
+        }
+        return entries;
+    }
+
+    private static List<String> readLines(byte[] content) throws IOException {
+        return FileOps.readFileLines(new ByteArrayInputStream(content));
+    }
+
     private String getFileNameForArchOs(String userFileName, String archOs) {
         return archOs == null ?
                 null : Strings.substitute(userFileName, Map.of("archOs", archOs));
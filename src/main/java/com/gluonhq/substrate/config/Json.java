@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.config;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal streaming JSON reader and writer for the configuration files that are
+ * passed to native-image.
+ *
+ * Objects are read as {@link Map}, arrays as {@link List}, and the rest of
+ * values as {@link String}, {@link Boolean}, {@link Long}, {@link Double} or null.
+ * Objects are always written in canonical form: the "name" key first, and the
+ * rest of keys sorted, so equal content produces the same file.
+ */
+final class Json {
+
+    static final Comparator<String> KEY_ORDER = Comparator
+            .comparing((String key) -> !"name".equals(key))
+            .thenComparing(Comparator.naturalOrder());
+
+    private final Reader reader;
+    private final String source;
+    private int current;
+    private int line = 1;
+
+    private Json(Reader reader, String source) throws IOException {
+        this.reader = reader;
+        this.source = source;
+        this.current = reader.read();
+    }
+
+    /**
+     * Reads a single JSON value from the given reader
+     *
+     * @param reader the reader with the JSON content
+     * @param source a description of the content, used in error messages
+     * @return the value that was read
+     * @throws IOException if the content can't be read or it is not valid JSON
+     */
+    static Object parse(Reader reader, String source) throws IOException {
+        Json json = new Json(reader, source);
+        Object value = json.readValue();
+        json.skipWhitespace();
+        if (json.current != -1) {
+            throw json.error("Unexpected content after JSON value");
+        }
+        return value;
+    }
+
+    /**
+     * Writes the given value as indented JSON, with objects in canonical order
+     *
+     * @param writer the writer
+     * @param value a value, as returned by {@link #parse(Reader, String)}
+     * @param indent the current indentation level
+     * @throws IOException if the value can't be written
+     */
+    static void write(Writer writer, Object value, int indent) throws IOException {
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            if (map.isEmpty()) {
+                writer.write("{}");
+                return;
+            }
+            List<String> keys = new ArrayList<>();
+            map.keySet().forEach(k -> keys.add(k.toString()));
+            keys.sort(KEY_ORDER);
+            writer.write("{\n");
+            for (int i = 0; i < keys.size(); i++) {
+                writeIndent(writer, indent + 1);
+                writer.write(quote(keys.get(i)));
+                writer.write(" : ");
+                write(writer, map.get(keys.get(i)), indent + 1);
+                writer.write(i < keys.size() - 1 ? ",\n" : "\n");
+            }
+            writeIndent(writer, indent);
+            writer.write("}");
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            if (list.isEmpty()) {
+                writer.write("[]");
+                return;
+            }
+            writer.write("[\n");
+            for (int i = 0; i < list.size(); i++) {
+                writeIndent(writer, indent + 1);
+                write(writer, list.get(i), indent + 1);
+                writer.write(i < list.size() - 1 ? ",\n" : "\n");
+            }
+            writeIndent(writer, indent);
+            writer.write("]");
+        } else if (value instanceof String) {
+            writer.write(quote((String) value));
+        } else {
+            writer.write(String.valueOf(value));
+        }
+    }
+
+    /**
+     * Returns the value as compact canonical JSON, that can be used to compare values
+     *
+     * @param value a value, as returned by {@link #parse(Reader, String)}
+     * @return a string with the canonical JSON for the value
+     */
+    static String toCanonicalString(Object value) {
+        StringWriter writer = new StringWriter();
+        try {
+            write(writer, value, 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString().replaceAll("\n\\s*", "");
+    }
+
+    static String quote(String value) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"':  sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static void writeIndent(Writer writer, int indent) throws IOException {
+        for (int i = 0; i < indent; i++) {
+            writer.write("  ");
+        }
+    }
+
+    private Object readValue() throws IOException {
+        skipWhitespace();
+        switch (current) {
+            case '{': return readObject();
+            case '[': return readArray();
+            case '"': return readString();
+            case 't': readLiteral("true"); return Boolean.TRUE;
+            case 'f': readLiteral("false"); return Boolean.FALSE;
+            case 'n': readLiteral("null"); return null;
+            case -1: throw error("Unexpected end of content");
+            default:
+                if (current == '-' || (current >= '0' && current <= '9')) {
+                    return readNumber();
+                }
+                throw error("Unexpected character '" + (char) current + "'");
+        }
+    }
+
+    private Map<String, Object> readObject() throws IOException {
+        Map<String, Object> map = new LinkedHashMap<>();
+        next();
+        skipWhitespace();
+        if (current == '}') {
+            next();
+            return map;
+        }
+        while (true) {
+            skipWhitespace();
+            if (current != '"') {
+                throw error("Expected a key");
+            }
+            String key = readString();
+            skipWhitespace();
+            expect(':');
+            map.put(key, readValue());
+            skipWhitespace();
+            if (current == ',') {
+                next();
+            } else {
+                expect('}');
+                return map;
+            }
+        }
+    }
+
+    private List<Object> readArray() throws IOException {
+        List<Object> list = new ArrayList<>();
+        next();
+        skipWhitespace();
+        if (current == ']') {
+            next();
+            return list;
+        }
+        while (true) {
+            list.add(readValue());
+            skipWhitespace();
+            if (current == ',') {
+                next();
+            } else {
+                expect(']');
+                return list;
+            }
+        }
+    }
+
+    private String readString() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        next();
+        while (current != '"') {
+            if (current == -1 || current == '\n') {
+                throw error("Unterminated string");
+            }
+            if (current == '\\') {
+                next();
+                switch (current) {
+                    case '"':
+                    case '\\':
+                    case '/':  sb.append((char) current); break;
+                    case 'b':  sb.append('\b'); break;
+                    case 'f':  sb.append('\f'); break;
+                    case 'n':  sb.append('\n'); break;
+                    case 'r':  sb.append('\r'); break;
+                    case 't':  sb.append('\t'); break;
+                    case 'u':
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            next();
+                            int digit = Character.digit(current, 16);
+                            if (digit < 0) {
+                                throw error("Invalid unicode escape");
+                            }
+                            code = code * 16 + digit;
+                        }
+                        sb.append((char) code);
+                        break;
+                    default:
+                        throw error("Invalid escape sequence");
+                }
+            } else {
+                sb.append((char) current);
+            }
+            next();
+        }
+        next();
+        return sb.toString();
+    }
+
+    private Object readNumber() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        while (current == '-' || current == '+' || current == '.' || current == 'e' || current == 'E' ||
+                (current >= '0' && current <= '9')) {
+            sb.append((char) current);
+            next();
+        }
+        String number = sb.toString();
+        try {
+            if (number.contains(".") || number.contains("e") || number.contains("E")) {
+                return Double.parseDouble(number);
+            }
+            return Long.parseLong(number);
+        } catch (NumberFormatException e) {
+            throw error("Invalid number " + number);
+        }
+    }
+
+    private void readLiteral(String literal) throws IOException {
+        for (char c : literal.toCharArray()) {
+            if (current != c) {
+                throw error("Expected " + literal);
+            }
+            next();
+        }
+    }
+
+    private void expect(char c) throws IOException {
+        if (current != c) {
+            throw error(current == -1 ? "Unexpected end of content" : "Expected '" + c + "'");
+        }
+        next();
+    }
+
+    private void skipWhitespace() throws IOException {
+        while (current == ' ' || current == '\t' || current == '\n' || current == '\r') {
+            next();
+        }
+    }
+
+    private void next() throws IOException {
+        if (current == '\n') {
+            line++;
+        }
+        current = reader.read();
+    }
+
+    private IOException error(String message) {
+        return new IOException(message + " at line " + line + " of " + source);
+    }
+}
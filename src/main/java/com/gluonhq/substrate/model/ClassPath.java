@@ -1,11 +1,6 @@
 package com.gluonhq.substrate.model;
 
-import com.gluonhq.substrate.util.FileOps;
-import com.gluonhq.substrate.util.ProcessRunner;
-
 import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
@@ -99,36 +94,28 @@ public class ClassPath {
                 .orElse(s));
     }
 
-    public List<File> getJars(boolean includeClasses) throws IOException, InterruptedException {
-        List<File> jars = filter(s -> s.endsWith(".jar")).stream()
-                .map(File::new)
+    /**
+     * Returns the jars of this classpath, as entries that can be scanned. Optionally,
+     * the project's classes and resources directories are added to the list, so they
+     * can be scanned as well, in place.
+     *
+     * @param includeClasses true to include the directories of the project's classes and resources
+     * @return a list of classpath entries
+     */
+    public List<ClassPathEntry> getEntries(boolean includeClasses) {
+        List<ClassPathEntry> entries = filter(s -> s.endsWith(".jar")).stream()
+                .map(s -> ClassPathEntry.ofJar(Path.of(s)))
                 .collect(Collectors.toList());
 
         if (includeClasses) {
-            // Add project's classes as a jar to the list so it can be scanned as well
-            String classes = filter(s -> s.endsWith("classes") || s.endsWith("classes/java/main")).stream()
+            filter(s -> s.endsWith("classes") || s.endsWith("classes/java/main")).stream()
+                    .findFirst()
+                    .ifPresent(s -> entries.add(ClassPathEntry.ofDirectory(Path.of(s))));
+            filter(s -> s.endsWith("resources/main")).stream()
                     .findFirst()
-                    .orElse(null);
-            if (classes != null) {
-                Path classesPath = Files.createTempDirectory("classes");
-                FileOps.copyDirectory(Path.of(classes), classesPath);
-                Path resourcesPath = filter(s -> s.endsWith("resources/main")).stream()
-                        .findFirst()
-                        .map(Path::of)
-                        .orElse(null);
-                if (resourcesPath != null && Files.exists(resourcesPath)) {
-                    FileOps.copyDirectory(resourcesPath, classesPath);
-                }
-                Path jar = classesPath.resolve("classes.jar");
-                ProcessRunner runner = new ProcessRunner("jar", "cf", jar.toString(), "-C", classesPath.toString(), ".");
-                if (runner.runProcess("jar") == 0 && Files.exists(jar)) {
-                    jars.add(jar.toFile());
-                } else {
-                    throw new IOException("Error creating classes.jar");
-                }
-            }
+                    .ifPresent(s -> entries.add(ClassPathEntry.ofDirectory(Path.of(s))));
         }
 
-        return jars;
+        return entries;
     }
 }
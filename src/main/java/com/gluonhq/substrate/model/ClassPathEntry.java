@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * An element of the classpath, either a jar or a directory with
+ * classes and resources, that can be scanned in the same way
+ */
+public abstract class ClassPathEntry {
+
+    private final Path path;
+
+    private ClassPathEntry(Path path) {
+        this.path = Objects.requireNonNull(path);
+    }
+
+    /**
+     * Creates the entry for a jar
+     * @param jar the path of the jar
+     * @return the classpath entry
+     */
+    public static ClassPathEntry ofJar(Path jar) {
+        return new Jar(jar);
+    }
+
+    /**
+     * Creates the entry for a directory
+     * @param directory the path of the directory
+     * @return the classpath entry
+     */
+    public static ClassPathEntry ofDirectory(Path directory) {
+        return new Directory(directory);
+    }
+
+    /**
+     * @return the path of the jar or directory
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return the path of the jar or directory, as a file
+     */
+    public File getFile() {
+        return path.toFile();
+    }
+
+    /**
+     * @return true if the jar or directory exists
+     */
+    public boolean exists() {
+        return Files.exists(path);
+    }
+
+    /**
+     * @return true if the entry is a directory, false if it is a jar
+     */
+    public abstract boolean isDirectory();
+
+    /**
+     * Lists the names of all the files of this entry
+     * @return a list of names, with '/' as separator, like <code>com/example/Main.class</code>
+     * @throws IOException if the entry can't be read
+     */
+    public abstract List<String> listNames() throws IOException;
+
+    /**
+     * Reads the files of this entry whose names start with the given prefix
+     * @param prefix the prefix of the names, with '/' as separator, like <code>META-INF/substrate/</code>
+     * @return a map with the content of each file, keyed by its name
+     * @throws IOException if the files can't be read
+     */
+    public abstract Map<String, byte[]> readEntries(String prefix) throws IOException;
+
+    /**
+     * Returns true if this entry has any file whose name starts with the given prefix,
+     * without listing all its files
+     * @param prefix the prefix of the names, with '/' as separator, like <code>javafx/</code>
+     * @return true if a file is found
+     * @throws IOException if the entry can't be read
+     */
+    public abstract boolean containsEntries(String prefix) throws IOException;
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+
+    private static class Jar extends ClassPathEntry {
+
+        Jar(Path path) {
+            super(path);
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return false;
+        }
+
+        @Override
+        public List<String> listNames() throws IOException {
+            List<String> names = new ArrayList<>();
+            try (ZipFile zip = new ZipFile(getFile())) {
+                for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); ) {
+                    ZipEntry zipEntry = e.nextElement();
+                    if (!zipEntry.isDirectory()) {
+                        names.add(zipEntry.getName());
+                    }
+                }
+            }
+            return names;
+        }
+
+        @Override
+        public Map<String, byte[]> readEntries(String prefix) throws IOException {
+            Map<String, byte[]> entries = new LinkedHashMap<>();
+            try (ZipFile zip = new ZipFile(getFile())) {
+                for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); ) {
+                    ZipEntry zipEntry = e.nextElement();
+                    if (!zipEntry.isDirectory() && zipEntry.getName().startsWith(prefix)) {
+                        try (InputStream inputStream = zip.getInputStream(zipEntry)) {
+                            entries.put(zipEntry.getName(), inputStream.readAllBytes());
+                        }
+                    }
+                }
+            }
+            return entries;
+        }
+
+        @Override
+        public boolean containsEntries(String prefix) throws IOException {
+            try (ZipFile zip = new ZipFile(getFile())) {
+                for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); ) {
+                    ZipEntry zipEntry = e.nextElement();
+                    if (!zipEntry.isDirectory() && zipEntry.getName().startsWith(prefix)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class Directory extends ClassPathEntry {
+
+        Directory(Path path) {
+            super(path);
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return true;
+        }
+
+        @Override
+        public List<String> listNames() throws IOException {
+            try (Stream<Path> walk = Files.walk(getPath())) {
+                return walk.filter(Files::isRegularFile)
+                        .map(file -> getPath().relativize(file).toString().replace(File.separatorChar, '/'))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+        }
+
+        @Override
+        public Map<String, byte[]> readEntries(String prefix) throws IOException {
+            Map<String, byte[]> entries = new LinkedHashMap<>();
+            for (Path file : walk(prefix)) {
+                String name = getName(file);
+                if (name.startsWith(prefix)) {
+                    entries.put(name, Files.readAllBytes(file));
+                }
+            }
+            return entries;
+        }
+
+        @Override
+        public boolean containsEntries(String prefix) throws IOException {
+            return walk(prefix).stream().anyMatch(file -> getName(file).startsWith(prefix));
+        }
+
+        /**
+         * Lists the files of the folder of the prefix only, not of the whole directory
+         */
+        private List<Path> walk(String prefix) throws IOException {
+            int slash = prefix.lastIndexOf('/');
+            Path start = slash < 0 ? getPath() : getPath().resolve(prefix.substring(0, slash));
+            if (!Files.isDirectory(start)) {
+                return List.of();
+            }
+            try (Stream<Path> walk = Files.walk(start)) {
+                return walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+        }
+
+        private String getName(Path file) {
+            return getPath().relativize(file).toString().replace(File.separatorChar, '/');
+        }
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.model;
+
+import com.gluonhq.substrate.util.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Index of the classpath, that maps every class, package, service provider
+ * and resource to the jars or directories that provide it.
+ *
+ * The index is built once, reading the list of files of every classpath entry
+ * in parallel, and then it answers queries from memory. When more than one entry
+ * provides the same class or resource, the first one in the classpath is the
+ * one that is found, as it would be by a class loader.
+ */
+public class ClassPathIndex {
+
+    private static final String CLASS_EXTENSION = ".class";
+    private static final String VERSIONS_PREFIX = "META-INF/versions/";
+    private static final String SERVICES_PREFIX = "META-INF/services/";
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final List<ClassPathEntry> entries;
+    private final Map<String, ClassPathEntry> classes = new LinkedHashMap<>();
+    private final NavigableMap<String, List<ClassPathEntry>> packages = new TreeMap<>();
+    private final NavigableMap<String, List<ClassPathEntry>> resources = new TreeMap<>();
+    private final Map<String, List<String>> services = new LinkedHashMap<>();
+
+    private ClassPathIndex(List<ClassPathEntry> entries) {
+        this.entries = Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Builds the index of the given classpath, including the project's
+     * classes and resources directories
+     *
+     * @param classpath a string with the full classpath of the user's project
+     * @return the index
+     * @throws IOException if any entry of the classpath can't be read
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public static ClassPathIndex build(String classpath) throws IOException, InterruptedException {
+        List<ClassPathEntry> entries = new ClassPath(classpath).getEntries(true).stream()
+                .filter(ClassPathEntry::exists)
+                .collect(Collectors.toList());
+        return build(entries, Integer.getInteger("jarscanthreads", Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Builds the index of the given entries, reading up to the given number of
+     * entries at the same time. The result is the same as a sequential build.
+     *
+     * @param entries the jars and directories of the classpath, in order
+     * @param threads the maximum number of entries that are read at the same time
+     * @return the index
+     * @throws IOException if any entry can't be read
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public static ClassPathIndex build(List<ClassPathEntry> entries, int threads) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        List<ClassPathEntry> list = List.copyOf(entries);
+        List<Listing> listings = new ArrayList<>();
+        int poolSize = Math.min(Math.max(1, threads), list.size());
+        if (poolSize <= 1) {
+            for (ClassPathEntry entry : list) {
+                listings.add(Listing.read(entry));
+            }
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(poolSize, r -> {
+                Thread thread = new Thread(r, "substrate-classpath-index-" + THREAD_COUNT.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                List<Future<Listing>> futures = new ArrayList<>();
+                for (ClassPathEntry entry : list) {
+                    futures.add(executor.submit(() -> Listing.read(entry)));
+                }
+                for (Future<Listing> future : futures) {
+                    try {
+                        listings.add(future.get());
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        if (cause instanceof IOException) {
+                            throw (IOException) cause;
+                        }
+                        throw new IOException(cause);
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        ClassPathIndex index = new ClassPathIndex(list);
+        listings.forEach(index::add);
+        Logger.logDebug("Indexed " + index.classes.size() + " classes and " + index.resources.size() +
+                " resources of " + list.size() + " classpath entries in " +
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        return index;
+    }
+
+    /**
+     * @return the jars and directories of the index, in classpath order
+     */
+    public List<ClassPathEntry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Returns true if the classpath contains the given class
+     * @param className the fully qualified name of the class, like <code>com.example.Main</code>
+     * @return true if the class is found
+     */
+    public boolean containsClass(String className) {
+        return classes.containsKey(Objects.requireNonNull(className));
+    }
+
+    /**
+     * Returns the jar or directory that provides the given class
+     * @param className the fully qualified name of the class, like <code>com.example.Main</code>,
+     *                  or <code>com.example.Outer$Inner</code> for nested classes
+     * @return the classpath entry, or null if the class is not found
+     */
+    public ClassPathEntry findClass(String className) {
+        return classes.get(Objects.requireNonNull(className));
+    }
+
+    /**
+     * Returns true if the classpath contains the given package
+     * @param packageName the name of the package, like <code>com.example</code>
+     * @return true if the package is found
+     */
+    public boolean containsPackage(String packageName) {
+        return packages.containsKey(Objects.requireNonNull(packageName));
+    }
+
+    /**
+     * Returns the jars and directories that provide classes of the given package
+     * @param packageName the name of the package, like <code>com.example</code>
+     * @return a list of classpath entries, empty if the package is not found
+     */
+    public List<ClassPathEntry> findPackage(String packageName) {
+        return packages.getOrDefault(Objects.requireNonNull(packageName), List.of());
+    }
+
+    /**
+     * Returns the names of the packages that start with the given prefix
+     * @param prefix the prefix, like <code>javafx.</code>
+     * @return a sorted list of package names
+     */
+    public List<String> getPackageNames(String prefix) {
+        return new ArrayList<>(prefixMap(packages, prefix).keySet());
+    }
+
+    /**
+     * Returns the providers of a service, declared in META-INF/services files
+     * @param serviceName the fully qualified name of the service interface
+     * @return a list of implementation class names, in classpath order
+     */
+    public List<String> getServiceProviders(String serviceName) {
+        return services.getOrDefault(Objects.requireNonNull(serviceName), List.of());
+    }
+
+    /**
+     * Returns the jar or directory that provides the given resource
+     * @param name the name of the resource, like <code>META-INF/substrate/config/jniconfig.json</code>
+     * @return the classpath entry, or null if the resource is not found
+     */
+    public ClassPathEntry findResource(String name) {
+        List<ClassPathEntry> providers = resources.get(Objects.requireNonNull(name));
+        return providers == null ? null : providers.get(0);
+    }
+
+    /**
+     * Returns all the jars and directories that provide the given resource
+     * @param name the name of the resource
+     * @return a list of classpath entries, in classpath order, empty if the resource is not found
+     */
+    public List<ClassPathEntry> findResources(String name) {
+        return resources.getOrDefault(Objects.requireNonNull(name), List.of());
+    }
+
+    /**
+     * Returns the names of the resources that start with the given prefix
+     * @param prefix the prefix, like <code>META-INF/substrate/</code>
+     * @return a sorted list of resource names
+     */
+    public List<String> getResourceNames(String prefix) {
+        return new ArrayList<>(prefixMap(resources, prefix).keySet());
+    }
+
+    private void add(Listing listing) {
+        ClassPathEntry entry = listing.entry;
+        for (String name : listing.names) {
+            String className = name;
+            if (className.startsWith(VERSIONS_PREFIX)) {
+                // multi-release jar: META-INF/versions/11/com/example/Main.class
+                int slash = className.indexOf('/', VERSIONS_PREFIX.length());
+                className = slash < 0 ? className : className.substring(slash + 1);
+            }
+            if (className.endsWith(CLASS_EXTENSION) && !className.startsWith("META-INF/")) {
+                String binaryName = className.substring(0, className.length() - CLASS_EXTENSION.length()).replace('/', '.');
+                int dot = binaryName.lastIndexOf('.');
+                if (dot > 0) {
+                    List<ClassPathEntry> providers = packages.computeIfAbsent(binaryName.substring(0, dot), k -> new ArrayList<>());
+                    if (!providers.contains(entry)) {
+                        providers.add(entry);
+                    }
+                }
+                if (!binaryName.endsWith("module-info") && !binaryName.endsWith("package-info")) {
+                    classes.putIfAbsent(binaryName, entry);
+                }
+            } else {
+                List<ClassPathEntry> providers = resources.computeIfAbsent(name, k -> new ArrayList<>(1));
+                if (!providers.contains(entry)) {
+                    providers.add(entry);
+                }
+            }
+        }
+        for (Map.Entry<String, List<String>> service : listing.services.entrySet()) {
+            List<String> providers = services.computeIfAbsent(service.getKey(), k -> new ArrayList<>());
+            for (String provider : service.getValue()) {
+                if (!providers.contains(provider)) {
+                    providers.add(provider);
+                }
+            }
+        }
+    }
+
+    private static <T> NavigableMap<String, T> prefixMap(NavigableMap<String, T> map, String prefix) {
+        Objects.requireNonNull(prefix);
+        return prefix.isEmpty() ? map : map.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    /**
+     * The files of a classpath entry, and the content of its service files
+     */
+    private static class Listing {
+        private final ClassPathEntry entry;
+        private final List<String> names;
+        private final Map<String, List<String>> services = new LinkedHashMap<>();
+
+        private Listing(ClassPathEntry entry, List<String> names) {
+            this.entry = entry;
+            this.names = names;
+        }
+
+        static Listing read(ClassPathEntry entry) throws IOException {
+            Listing listing;
+            try {
+                listing = new Listing(entry, entry.listNames());
+                if (listing.names.stream().anyMatch(name -> name.startsWith(SERVICES_PREFIX))) {
+                    for (Map.Entry<String, byte[]> service : entry.readEntries(SERVICES_PREFIX).entrySet()) {
+                        listing.services.put(service.getKey().substring(SERVICES_PREFIX.length()),
+                                parseProviders(new String(service.getValue(), StandardCharsets.UTF_8)));
+                    }
+                }
+            } catch (IOException e) {
+                throw new IOException("Error indexing " + entry + ": " + e.getMessage(), e);
+            }
+            return listing;
+        }
+
+        private static List<String> parseProviders(String content) {
+            List<String> providers = new ArrayList<>();
+            for (String line : content.split("\\R")) {
+                int comment = line.indexOf('#');
+                String provider = (comment < 0 ? line : line.substring(0, comment)).trim();
+                if (!provider.isEmpty()) {
+                    providers.add(provider);
+                }
+            }
+            return providers;
+        }
+    }
+}
@@ -31,6 +31,7 @@ import com.gluonhq.substrate.Constants;
 import com.gluonhq.substrate.ProjectConfiguration;
 import com.gluonhq.substrate.util.Logger;
 import com.gluonhq.substrate.util.ProcessRunner;
+import com.gluonhq.substrate.util.ToolQueryCache;
 import com.gluonhq.substrate.util.Strings;
 
 import java.io.IOException;
@@ -38,9 +39,11 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 /**
  * This class contains all configuration info about the current project (not about the current OS/Arch/vendor etc)
@@ -58,7 +61,7 @@ public class InternalProjectConfiguration {
     private String javaFXStaticSDK;
 
     private boolean useJNI = true;
-    private boolean useJavaFX = false;
+    private Boolean useJavaFX;
     private boolean usePrismSW = false;
     private boolean enableCheckHash = true;
 
@@ -72,6 +75,7 @@ public class InternalProjectConfiguration {
     private List<String> releaseSymbolsList;
 
     private IosSigningConfiguration iosSigningConfiguration = new IosSigningConfiguration();
+    private LazyClassPathIndex classPathIndex;
 
     private ProjectConfiguration publicConfig;
 
@@ -93,12 +97,70 @@ public class InternalProjectConfiguration {
         setJavaFXStaticSDK(System.getProperty("javafxsdk"));  // this can be safely set even if null. Default will be used in that case
         setInitBuildTimeList(Strings.split(System.getProperty("initbuildtimelist")));
 
-        boolean useJavaFX = new ClassPath(config.getClasspath()).contains(s -> s.contains("javafx"));
-        setUseJavaFX(useJavaFX);
+        classPathIndex = new LazyClassPathIndex(getClasspath());
 
         performHostChecks();
     }
 
+    /**
+     * Returns the index of the classes, packages, services and resources of
+     * the project's classpath. It is built the first time it is requested,
+     * and reused for the rest of the build.
+     *
+     * @return the classpath index
+     * @throws IOException if any entry of the classpath can't be read
+     * @throws InterruptedException if the thread is interrupted while building the index
+     */
+    public ClassPathIndex getClassPathIndex() throws IOException, InterruptedException {
+        return classPathIndex.get();
+    }
+
+    /**
+     * Uses the same classpath index as the given configuration, like the one of another
+     * target of the same build, so the index is built only once for all of them
+     *
+     * @param other the configuration of the project for another target
+     */
+    public void shareClassPathIndex(InternalProjectConfiguration other) {
+        if (other.classPathIndex.classpath.equals(classPathIndex.classpath)) {
+            classPathIndex = other.classPathIndex;
+        }
+    }
+
+    /**
+     * JavaFX is used if any javafx package is found in the classpath. Elements
+     * of the classpath that don't exist yet can only be detected by their name.
+     */
+    private boolean detectJavaFX() {
+        ClassPath classPath = new ClassPath(getClasspath());
+        boolean missingJavaFX = classPath.contains(s -> s.contains("javafx") && !Files.exists(Path.of(s)));
+        if (missingJavaFX) {
+            return true;
+        }
+        try {
+            if (classPathIndex.isBuilt()) {
+                return !getClassPathIndex().getPackageNames("javafx.").isEmpty();
+            }
+            // the jars with JavaFX classes are the first ones to look at
+            List<ClassPathEntry> entries = classPath.getEntries(true).stream()
+                    .filter(ClassPathEntry::exists)
+                    .sorted(Comparator.comparing(entry -> !entry.toString().contains("javafx")))
+                    .collect(Collectors.toList());
+            for (ClassPathEntry entry : entries) {
+                if (entry.containsEntries("javafx/")) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (IOException e) {
+            Logger.logDebug("Error reading the classpath, detecting JavaFX by name: " + e.getMessage());
+            return classPath.contains(s -> s.contains("javafx"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return classPath.contains(s -> s.contains("javafx"));
+        }
+    }
+
     public Path getGraalPath() {
         return Objects.requireNonNull( this.publicConfig.getGraalPath(), "GraalVM Path is not defined");
     }
@@ -233,11 +295,20 @@ public class InternalProjectConfiguration {
         this.useJNI = useJNI;
     }
 
-    public boolean isUseJavaFX() {
+    /**
+     * Returns true if the project uses JavaFX. Unless it is set, it is detected
+     * from the classpath the first time it is requested
+     *
+     * @return true if JavaFX is used
+     */
+    public synchronized boolean isUseJavaFX() {
+        if (useJavaFX == null) {
+            useJavaFX = detectJavaFX();
+        }
         return useJavaFX;
     }
 
-    public void setUseJavaFX(boolean useJavaFX) {
+    public synchronized void setUseJavaFX(boolean useJavaFX) {
         this.useJavaFX = useJavaFX;
     }
 
@@ -393,11 +464,12 @@ public class InternalProjectConfiguration {
      */
     public void canRunNativeImage() throws IOException, InterruptedException {
         Path javaCmd = getGraalVMBinPath().resolve("java");
-        ProcessRunner processRunner = new ProcessRunner(javaCmd.toString(), "-version");
-        if (processRunner.runProcess("check version") != 0) {
+        // a GraalVM replaced in place is verified again, see ToolQueryCache
+        List<String> lines = ToolQueryCache.getUserCache().query("check version", javaCmd.toString(), "-version");
+        if (lines == null) {
             throw new IllegalArgumentException("$GRAALVM_HOME/bin/java -version process failed");
         }
-        for (String l : processRunner.getResponses()) {
+        for (String l : lines) {
             if (l == null || l.isEmpty()) {
                 throw new IllegalArgumentException(javaCmd + " -version failed to return a valid value for GraalVM");
             }
@@ -503,4 +575,27 @@ public class InternalProjectConfiguration {
                 ", classpath='" + getClasspath() + '\'' +
                 '}';
     }
+
+    /**
+     * The index of a classpath, that is built the first time it is needed
+     */
+    private static class LazyClassPathIndex {
+        private final String classpath;
+        private ClassPathIndex index;
+
+        LazyClassPathIndex(String classpath) {
+            this.classpath = classpath;
+        }
+
+        synchronized ClassPathIndex get() throws IOException, InterruptedException {
+            if (index == null) {
+                index = ClassPathIndex.build(classpath);
+            }
+            return index;
+        }
+
+        synchronized boolean isBuilt() {
+            return index != null;
+        }
+    }
 }
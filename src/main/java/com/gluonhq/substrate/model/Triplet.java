@@ -30,6 +30,7 @@ package com.gluonhq.substrate.model;
 import com.gluonhq.substrate.Constants;
 
 import java.util.Locale;
+import java.util.Objects;
 
 import static com.gluonhq.substrate.Constants.*;
 
@@ -178,5 +179,10 @@ public class Triplet {
                 this.vendor.equals(target.vendor)) ;
     }
 
+    @Override
+    public int hashCode() {
+        return Objects.hash(arch, vendor, os);
+    }
+
 
 }
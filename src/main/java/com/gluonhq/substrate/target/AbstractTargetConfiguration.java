@@ -28,23 +28,33 @@
 package com.gluonhq.substrate.target;
 
 import com.gluonhq.substrate.Constants;
+import com.gluonhq.substrate.config.ConfigMerger;
 import com.gluonhq.substrate.config.ConfigResolver;
 import com.gluonhq.substrate.model.ClassPath;
+import com.gluonhq.substrate.model.ClassPathIndex;
 import com.gluonhq.substrate.model.InternalProjectConfiguration;
 import com.gluonhq.substrate.model.ProcessPaths;
 import com.gluonhq.substrate.model.Triplet;
+import com.gluonhq.substrate.util.BuildFingerprint;
+import com.gluonhq.substrate.util.BuildPlan;
 import com.gluonhq.substrate.util.FileDeps;
 import com.gluonhq.substrate.util.FileOps;
+import com.gluonhq.substrate.util.JarIndex;
 import com.gluonhq.substrate.util.Logger;
+import com.gluonhq.substrate.util.NativeLibExtractor;
+import com.gluonhq.substrate.util.ObjectCache;
 import com.gluonhq.substrate.util.ProcessRunner;
+import com.gluonhq.substrate.util.ProgressListener;
+import com.gluonhq.substrate.util.ProgressTracker;
+import com.gluonhq.substrate.util.ResourceGovernor;
 import com.gluonhq.substrate.util.Strings;
+import com.gluonhq.substrate.util.TaskGraph;
 
-import java.io.BufferedWriter;
-import java.io.FileOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStreamWriter;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -53,7 +63,10 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -76,6 +89,8 @@ public abstract class AbstractTargetConfiguration implements TargetConfiguration
             "com/sun/javafx/scene/control/skin/resources/controls-nt",
             "com.sun.javafx.tk.quantum.QuantumMessagesBundle"
     ));
+    private static final List<String> JDK_PACKAGES = Arrays.asList(
+            "java.", "javax.", "jdk.", "sun.", "com.sun.", "org.graalvm.", "com.oracle.");
     private static final List<String> ENABLED_FEATURES = Arrays.asList(
             "org.graalvm.home.HomeFinderFeature"
     );
@@ -102,6 +117,8 @@ public abstract class AbstractTargetConfiguration implements TargetConfiguration
     protected final boolean crossCompile;
 
     private List<String> defaultAdditionalSourceFiles = Collections.singletonList("launcher.c");
+    private volatile boolean additionalSourcesCompiled;
+    private final List<ProgressListener> progressListeners = new CopyOnWriteArrayList<>();
 
     AbstractTargetConfiguration(ProcessPaths paths, InternalProjectConfiguration configuration) {
         this.projectConfiguration = configuration;
@@ -124,12 +141,51 @@ public abstract class AbstractTargetConfiguration implements TargetConfiguration
     public boolean compile() throws IOException, InterruptedException {
         String processedClasspath = validateCompileRequirements();
 
-        extractNativeLibs(processedClasspath);
-
-        if (!compileAdditionalSources()) {
-            return false;
+        // native-image only waits for the configuration files, everything else
+        // needed later by the link step is prepared while it runs
+        List<String> configurationFileArgs = Collections.synchronizedList(new ArrayList<>());
+        TaskGraph graph = new TaskGraph("compile")
+                .addTask("additionalSources", List.of(), List.of("additionalObjectFiles"),
+                        this::compileAdditionalSources)
+                .addTask("nativeLibs", List.of(), List.of("nativeLibs"), () -> {
+                    extractNativeLibs(processedClasspath);
+                    return true;
+                })
+                .addTask("configFiles", List.of(), List.of("configFiles"), () -> {
+                    configurationFileArgs.addAll(getConfigurationFileArgs(processedClasspath));
+                    return true;
+                })
+                .addTask("linkDependencies", List.of(), List.of("linkDependencies"), () -> {
+                    prefetchLinkDependencies();
+                    return true;
+                })
+                .addTask("nativeImage", List.of("configFiles"), List.of("objectFiles"),
+                        () -> runNativeImage(processedClasspath, configurationFileArgs));
+        try {
+            graph.execute();
+            return true;
+        } catch (TaskGraph.TaskFailedException e) {
+            Throwable cause = e.getCause();
+            if (cause == null) {
+                return false;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(e.getMessage(), cause);
         }
+    }
 
+    /**
+     * Creates the runner of native-image, with the resolved command line
+     */
+    private ProcessRunner createNativeImageRunner(String processedClasspath, List<String> configurationFileArgs) throws IOException {
         ProcessRunner compileRunner = new ProcessRunner(getNativeImagePath());
 
         baseNativeImageArguments.forEach(compileRunner::addArg);
@@ -146,7 +202,7 @@ public abstract class AbstractTargetConfiguration implements TargetConfiguration
             verboseNativeImageArguments.forEach(compileRunner::addArg);
         }
 
-        compileRunner.addArgs(getConfigurationFileArgs(processedClasspath));
+        compileRunner.addArgs(configurationFileArgs);
 
         compileRunner.addArgs(getTargetSpecificAOTCompileFlags());
         if (!getBundlesList().isEmpty()) {
@@ -163,12 +219,56 @@ public abstract class AbstractTargetConfiguration implements TargetConfiguration
 
         compileRunner.setInfo(true);
         compileRunner.setLogToFile(true);
+        return compileRunner;
+    }
+
+    private boolean runNativeImage(String processedClasspath, List<String> configurationFileArgs) throws IOException, InterruptedException {
+        ProcessRunner compileRunner = createNativeImageRunner(processedClasspath, configurationFileArgs);
 
         Path gvmPath = paths.getGvmPath();
+        Path fingerprintPath = gvmPath.resolve(Constants.COMPILE_FINGERPRINT_FILE);
+        BuildFingerprint fingerprint = createCompileFingerprint(compileRunner.getCmdList(), processedClasspath);
+        if (fingerprint.matches(fingerprintPath) && compileOutputsExist()) {
+            Logger.logInfo("Compile step is up to date, skipping native-image");
+            return true;
+        }
+        Files.deleteIfExists(fingerprintPath);
+        FileOps.rmdir(paths.getTmpPath());
+
+        ObjectCache objectCache = ObjectCache.getUserCache();
+        String cacheKey = fingerprint.getHash();
+        if (!objectCache.fetch(cacheKey, paths.getTmpPath()).isEmpty() && compileOutputsExist()) {
+            Logger.logInfo("Object files found in the shared object cache, skipping native-image");
+            fingerprint.write(fingerprintPath);
+            return true;
+        }
+
         Path workDir = gvmPath.resolve(projectConfiguration.getAppName());
-        int result = compileRunner.runProcess("compile", workDir.toFile());
+        int result;
+        try (ResourceGovernor.Lease lease = ResourceGovernor.acquire()) {
+            // the limits depend on the load of the host, so they are not part of the fingerprint
+            List<String> limitArgs = lease.getNativeImageArgs(compileRunner.getCmdList());
+            Logger.logDebug("native-image " + lease.getLimits() + ", adding " + limitArgs);
+            compileRunner.getCmdList().addAll(1, limitArgs);
+            ProgressTracker tracker = new ProgressTracker(getProgressHistoryFile(), progressListeners);
+            compileRunner.addLineConsumer(tracker);
+            tracker.start();
+            result = -1;
+            try {
+                result = compileRunner.runProcess("compile", workDir.toFile());
+            } finally {
+                tracker.finish(result == 0);
+            }
+        }
 
-        return validateCompileResult(result);
+        boolean success = validateCompileResult(result);
+        if (success) {
+            fingerprint.write(fingerprintPath);
+            if (compileOutputsExist()) {
+                objectCache.store(cacheKey, getCompileOutputs());
+            }
+        }
+        return success;
     }
 
     /**
@@ -178,34 +278,50 @@ public abstract class AbstractTargetConfiguration implements TargetConfiguration
     */
     @Override
     public boolean link() throws IOException, InterruptedException {
-        compileAdditionalSources();
+        if (!additionalSourcesCompiled && !compileAdditionalSources()) {
+            Logger.logSevere("Compiling additional sources failed.");
+            return false;
+        }
         ensureClibs();
 
-        String appName = projectConfiguration.getAppName();
-        String objectFilename = projectConfiguration.getMainClassName().toLowerCase(Locale.ROOT) + "." + getObjectFileExtension();
+        String objectFilename = getObjectFilename();
         Path gvmPath = paths.getGvmPath();
         Path objectFile = FileOps.findFile(gvmPath, objectFilename).orElseThrow( () ->
             new IllegalArgumentException(
                     "Linking failed, since there is no objectfile named " + objectFilename + " under " + gvmPath.toString())
         );
 
+        ProcessRunner linkRunner = createLinkRunner(objectFile);
+
+        Path fingerprintPath = gvmPath.resolve(Constants.LINK_FINGERPRINT_FILE);
+        BuildFingerprint fingerprint = createLinkFingerprint(linkRunner.getCmdList());
+        if (fingerprint.matches(fingerprintPath) && Files.exists(Path.of(getAppPath(getLinkOutputName())))) {
+            Logger.logInfo("Link step is up to date, skipping linker");
+            return true;
+        }
+        Files.deleteIfExists(fingerprintPath);
+
+        linkRunner.setInfo(true);
+        linkRunner.setLogToFile(true);
+        int result = linkRunner.runProcess("link");
+        if (result == 0) {
+            fingerprint.write(fingerprintPath);
+        }
+        return result == 0;
+    }
+
+    /**
+     * Creates the runner of the linker, with the resolved command line
+     */
+    private ProcessRunner createLinkRunner(Path objectFile) throws IOException, InterruptedException {
         ProcessRunner linkRunner = new ProcessRunner(getLinker());
 
-        Path gvmAppPath = gvmPath.resolve(appName);
-        linkRunner.addArgs(getAdditionalSourceFiles().stream()
-                .map(s -> s.replaceAll("\\..*", "." + getObjectFileExtension()))
-                .distinct()
-                .map(sourceFile -> gvmAppPath.resolve(sourceFile).toString())
-                .collect(Collectors.toList()));
+        linkRunner.addArgs(getObjectFiles(getAdditionalSourceFiles()));
 
         linkRunner.addArg(objectFile.toString());
         linkRunner.addArgs(getTargetSpecificObjectFiles());
 
-        linkRunner.addArgs(getNativeCodeList().stream()
-            .map(s -> s.replaceAll("\\..*", "." + getObjectFileExtension()))
-            .distinct()
-            .map(sourceFile -> gvmAppPath.resolve(sourceFile).toString())
-            .collect(Collectors.toList()));
+        linkRunner.addArgs(getObjectFiles(getNativeCodeList()));
 
         linkRunner.addArgs(getTargetSpecificLinkLibraries());
         linkRunner.addArgs(getTargetSpecificLinkFlags(projectConfiguration.isUseJavaFX(),
@@ -219,10 +335,66 @@ public abstract class AbstractTargetConfiguration implements TargetConfiguration
             linkRunner.addArg(getJavaFXStaticLibsPath());
         }
         linkRunner.addArgs(getNativeLibsLinkFlags());
-        linkRunner.setInfo(true);
-        linkRunner.setLogToFile(true);
-        int result = linkRunner.runProcess("link");
-        return result == 0;
+        return linkRunner;
+    }
+
+    /**
+     * Adds to the plan the dependencies that would be downloaded, and the command lines
+     * of the compile and link steps, predicting which of them would be skipped.
+     * Configuration files and additional sources are generated, but no external
+     * process is started.
+     */
+    @Override
+    public void plan(BuildPlan plan) throws IOException, InterruptedException {
+        fileDeps.getMissingDependencies().forEach(plan::addDownload);
+        if (!Files.exists(getCLibPath())) {
+            plan.addDownload("clibraries", Strings.substitute(URL_CLIBS_ZIP,
+                    Map.of("osarch", projectConfiguration.getTargetTriplet().getOsArch())));
+        }
+
+        Path gvmPath = paths.getGvmPath();
+        try {
+            Path workDir = gvmPath.resolve(projectConfiguration.getAppName());
+            ProcessRunner compilerRunner = createAdditionalSourcesRunner(workDir);
+            BuildFingerprint fingerprint = createAdditionalSourcesFingerprint(compilerRunner, workDir);
+            boolean upToDate = fingerprint.matches(gvmPath.resolve(Constants.ADDITIONAL_SOURCES_FINGERPRINT_FILE)) &&
+                    getAdditionalObjectFiles().stream().map(Path::of).allMatch(Files::exists);
+            plan.addStep("compile-additional-sources", upToDate ? BuildPlan.Status.UP_TO_DATE : BuildPlan.Status.RUN,
+                    compilerRunner.getCmdList(), "in " + workDir);
+        } catch (BuildPlan.ProcessNotAllowedException e) {
+            plan.addStep("compile-additional-sources", BuildPlan.Status.UNRESOLVED, List.of(), "requires running " + e.getCommand());
+        }
+
+        BuildPlan.Status compileStatus;
+        try {
+            String processedClasspath = validateCompileRequirements();
+            ProcessRunner compileRunner = createNativeImageRunner(processedClasspath, getConfigurationFileArgs(processedClasspath));
+            BuildFingerprint fingerprint = createCompileFingerprint(compileRunner.getCmdList(), processedClasspath);
+            if (fingerprint.matches(gvmPath.resolve(Constants.COMPILE_FINGERPRINT_FILE)) && compileOutputsExist()) {
+                compileStatus = BuildPlan.Status.UP_TO_DATE;
+            } else if (ObjectCache.getUserCache().contains(fingerprint.getHash())) {
+                compileStatus = BuildPlan.Status.CACHED;
+            } else {
+                compileStatus = BuildPlan.Status.RUN;
+            }
+            plan.addStep("compile", compileStatus, compileRunner.getCmdList(),
+                    "the heap and thread limits of native-image are added when it runs");
+        } catch (BuildPlan.ProcessNotAllowedException e) {
+            compileStatus = BuildPlan.Status.UNRESOLVED;
+            plan.addStep("compile", compileStatus, List.of(), "requires running " + e.getCommand());
+        }
+
+        try {
+            String objectFilename = getObjectFilename();
+            Path objectFile = FileOps.findFile(gvmPath, objectFilename).orElse(paths.getTmpPath().resolve(objectFilename));
+            ProcessRunner linkRunner = createLinkRunner(objectFile);
+            boolean upToDate = compileStatus == BuildPlan.Status.UP_TO_DATE &&
+                    createLinkFingerprint(linkRunner.getCmdList()).matches(gvmPath.resolve(Constants.LINK_FINGERPRINT_FILE)) &&
+                    Files.exists(Path.of(getAppPath(getLinkOutputName())));
+            plan.addStep("link", upToDate ? BuildPlan.Status.UP_TO_DATE : BuildPlan.Status.RUN, linkRunner.getCmdList(), null);
+        } catch (BuildPlan.ProcessNotAllowedException e) {
+            plan.addStep("link", BuildPlan.Status.UNRESOLVED, List.of(), "requires running " + e.getCommand());
+        }
     }
 
     /**
@@ -291,13 +463,52 @@ public abstract class AbstractTargetConfiguration implements TargetConfiguration
         return result == 0;
     }
 
+    @Override
+    public void addProgressListener(ProgressListener listener) {
+        progressListeners.add(Objects.requireNonNull(listener));
+    }
+
     // --- private methods
 
+    /**
+     * Compiles the additional C/ObjC sources: the launcher and the glue code
+     * provided by Substrate, and the user native code. This doesn't depend on
+     * native-image, so it runs concurrently with it. When its inputs haven't
+     * changed since the last successful run, the compiler is not invoked.
+     *
+     * @return true if the sources were compiled successfully, false otherwise
+     * @throws IOException
+     * @throws InterruptedException
+     */
     protected boolean compileAdditionalSources()
             throws IOException, InterruptedException {
 
-        String appName = projectConfiguration.getAppName();
-        Path workDir = paths.getGvmPath().resolve(appName);
+        Path workDir = paths.getGvmPath().resolve(projectConfiguration.getAppName());
+        ProcessRunner processRunner = createAdditionalSourcesRunner(workDir);
+        Path fingerprintPath = paths.getGvmPath().resolve(Constants.ADDITIONAL_SOURCES_FINGERPRINT_FILE);
+        BuildFingerprint fingerprint = createAdditionalSourcesFingerprint(processRunner, workDir);
+        List<String> objectFiles = getAdditionalObjectFiles();
+        if (fingerprint.matches(fingerprintPath) && objectFiles.stream().map(Path::of).allMatch(Files::exists)) {
+            Logger.logDebug("Additional sources are up to date, skipping compiler");
+            additionalSourcesCompiled = true;
+            return true;
+        }
+        Files.deleteIfExists(fingerprintPath);
+
+        int result = processRunner.runProcess("compile-additional-sources", workDir.toFile());
+        // we need more checks (e.g. do launcher.o and thread.o exist?)
+        additionalSourcesCompiled = result == 0;
+        if (additionalSourcesCompiled) {
+            fingerprint.write(fingerprintPath);
+        }
+        return additionalSourcesCompiled;
+    }
+
+    /**
+     * Creates the runner of the compiler of the additional sources, copying the
+     * sources and headers to the given work folder
+     */
+    private ProcessRunner createAdditionalSourcesRunner(Path workDir) throws IOException {
         Files.createDirectories(workDir);
 
         ProcessRunner processRunner = new ProcessRunner(getCompiler());
@@ -325,10 +536,59 @@ public abstract class AbstractTargetConfiguration implements TargetConfiguration
         for (String fileName : getAdditionalHeaderFiles()) {
             FileOps.copyResource(getAdditionalSourceFileLocation()  + fileName, workDir.resolve(fileName));
         }
-  
-        int result = processRunner.runProcess("compile-additional-sources", workDir.toFile());
-        // we need more checks (e.g. do launcher.o and thread.o exist?)
-        return result == 0;
+        return processRunner;
+    }
+
+    private BuildFingerprint createAdditionalSourcesFingerprint(ProcessRunner processRunner, Path workDir) throws IOException {
+        Path nativeCodeDir = paths.getNativeCodePath();
+        BuildFingerprint fingerprint = new BuildFingerprint()
+                .add("target", projectConfiguration.getTargetTriplet().toString())
+                .add("arguments", processRunner.getCmdList());
+        for (String fileName : getAdditionalSourceFiles()) {
+            fingerprint.addFile(workDir.resolve(fileName));
+        }
+        for (String fileName : getAdditionalHeaderFiles()) {
+            fingerprint.addFile(workDir.resolve(fileName));
+        }
+        if (Files.isDirectory(nativeCodeDir)) {
+            fingerprint.addFile(nativeCodeDir);
+        }
+        return fingerprint;
+    }
+
+    private List<String> getAdditionalObjectFiles() throws IOException {
+        List<String> objectFiles = new ArrayList<>(getObjectFiles(getAdditionalSourceFiles()));
+        objectFiles.addAll(getObjectFiles(getNativeCodeList()));
+        return objectFiles;
+    }
+
+    /**
+     * Returns the paths of the object files created by the compiler for the given
+     * source files, under the gvm application folder
+     */
+    private List<String> getObjectFiles(List<String> sourceFiles) {
+        Path gvmAppPath = paths.getGvmPath().resolve(projectConfiguration.getAppName());
+        return sourceFiles.stream()
+                .map(s -> s.replaceAll("\\..*", "." + getObjectFileExtension()))
+                .distinct()
+                .map(sourceFile -> gvmAppPath.resolve(sourceFile).toString())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Prepares, while native-image runs, the dependencies that the link step
+     * will need, like the C libraries and the target specific link flags.
+     * Errors are ignored here, since they will be reported by the link step.
+     */
+    void prefetchLinkDependencies() {
+        try {
+            ensureClibs();
+            getTargetSpecificLinkFlags(projectConfiguration.isUseJavaFX(), projectConfiguration.isUsePrismSW());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            Logger.logDebug("Error preparing link dependencies: " + e.getMessage());
+        }
     }
 
     private String validateCompileRequirements() throws IOException {
@@ -435,13 +695,117 @@ public abstract class AbstractTargetConfiguration implements TargetConfiguration
                 .collect(Collectors.toList());
     }
 
-    private String createTempDirectoryArg() throws IOException {
-        Path  tmpPath = paths.getTmpPath();
-        FileOps.rmdir(tmpPath);
-        String tmpDir = tmpPath.toFile().getAbsolutePath();
+    private String createTempDirectoryArg() {
+        String tmpDir = paths.getTmpPath().toFile().getAbsolutePath();
         return "-H:TempDirectory=" + tmpDir;
     }
 
+    private String getObjectFilename() {
+        return projectConfiguration.getMainClassName().toLowerCase(Locale.ROOT) + "." + getObjectFileExtension();
+    }
+
+    /**
+     * Creates the fingerprint of the inputs of native-image: the resolved command line,
+     * the content of the classpath and of the generated configuration files, the
+     * GraalVM installation and the target triplet.
+     * Absolute paths are relocated, so its hash can be used as the key of the
+     * shared {@link ObjectCache}.
+     */
+    private BuildFingerprint createCompileFingerprint(List<String> arguments, String processedClasspath) throws IOException {
+        String suffix = projectConfiguration.getTargetTriplet().getArchOs();
+        Path gvmPath = paths.getGvmPath();
+        BuildFingerprint fingerprint = new BuildFingerprint()
+                .relocate(gvmPath, "${gvm}")
+                .relocate(paths.getClientPath().getParent().getParent(), "${project}")
+                .relocate(projectConfiguration.getGraalPath(), "${graalvm}")
+                .relocate(Path.of(System.getProperty("user.home")), "${home}")
+                .add("target", projectConfiguration.getTargetTriplet().toString())
+                .add("arguments", arguments)
+                .addClasspath(processedClasspath)
+                .addFile(gvmPath.resolve(Strings.substitute(Constants.REFLECTION_ARCH_FILE, Map.of("archOs", suffix))))
+                .addFile(gvmPath.resolve(Strings.substitute(Constants.JNI_ARCH_FILE, Map.of("archOs", suffix))))
+                .addFile(gvmPath.resolve(Strings.substitute(Constants.RESOURCE_ARCH_FILE, Map.of("archOs", suffix))));
+        addGraalVMVersion(fingerprint);
+        return fingerprint;
+    }
+
+    /**
+     * Creates the fingerprint of the inputs of the linker: the resolved command line,
+     * the content of the object files produced by the build, and the stamps of the
+     * libraries in the library paths.
+     */
+    private BuildFingerprint createLinkFingerprint(List<String> arguments) throws IOException {
+        Path gvmPath = paths.getGvmPath();
+        String libraryPathOption = getLinkLibraryPathOption();
+        BuildFingerprint fingerprint = new BuildFingerprint()
+                .add("target", projectConfiguration.getTargetTriplet().toString())
+                .add("arguments", arguments);
+        for (String argument : arguments) {
+            String value = argument.startsWith(libraryPathOption) ?
+                    argument.substring(libraryPathOption.length()) :
+                    argument.substring(argument.lastIndexOf(',') + 1);
+            Path path = toExistingPath(value);
+            if (path == null) {
+                continue;
+            }
+            if (path.startsWith(gvmPath)) {
+                fingerprint.addFile(path);
+            } else {
+                fingerprint.addFileStamp(path);
+            }
+        }
+        addGraalVMVersion(fingerprint);
+        return fingerprint;
+    }
+
+    private static Path toExistingPath(String value) {
+        if (value.isEmpty() || value.startsWith("-")) {
+            return null;
+        }
+        try {
+            Path path = Path.of(value);
+            return Files.exists(path) ? path : null;
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    }
+
+    private void addGraalVMVersion(BuildFingerprint fingerprint) throws IOException {
+        Path graalPath = projectConfiguration.getGraalPath();
+        fingerprint.addFile(graalPath.resolve("release"))
+                .addFileStamp(graalPath.resolve("bin").resolve(getNativeImageCommand()));
+    }
+
+    private List<Path> getCompileOutputs() throws IOException {
+        List<Path> outputs = new ArrayList<>();
+        outputs.add(FileOps.findFile(paths.getGvmPath(), getObjectFilename()).orElseThrow());
+        getTargetSpecificObjectFiles().stream().map(Path::of).forEach(outputs::add);
+        return outputs;
+    }
+
+    /**
+     * Returns the file with the durations of the native-image phases of the
+     * previous builds of this application for this target
+     */
+    private Path getProgressHistoryFile() {
+        String name = (projectConfiguration.getAppName() + "-" + projectConfiguration.getTargetTriplet().getArchOs())
+                .replaceAll("[^A-Za-z0-9._-]", "_");
+        return Constants.USER_SUBSTRATE_PATH.resolve(Constants.BUILD_HISTORY_FOLDER).resolve(name + ".properties");
+    }
+
+    private boolean compileOutputsExist() throws IOException {
+        if (FileOps.findFile(paths.getGvmPath(), getObjectFilename()).isEmpty()) {
+            return false;
+        }
+        try {
+            return getTargetSpecificObjectFiles().stream()
+                    .map(Path::of)
+                    .allMatch(Files::exists);
+        } catch (NoSuchElementException e) {
+            return false;
+        }
+    }
+
     private List<String> getReflectionClassList(String suffix, boolean useJavaFX, boolean usePrismSW) {
         List<String> answer = new LinkedList<>();
         answer.add(Constants.REFLECTION_JAVA_FILE);
@@ -473,6 +837,9 @@ public abstract class AbstractTargetConfiguration implements TargetConfiguration
 
         String suffix = projectConfiguration.getTargetTriplet().getArchOs();
         ConfigResolver configResolver = new ConfigResolver(processedClasspath);
+        validateClassNames(projectConfiguration.getInitBuildTimeList(), "initBuildTimeList");
+        validateClassNames(projectConfiguration.getReflectionList(), "reflectionList");
+        validateClassNames(projectConfiguration.getJniList(), "jniList");
 
         List<String> buildTimeList = getInitializeAtBuildTimeList(suffix, configResolver);
         if (!buildTimeList.isEmpty()) {
@@ -486,6 +853,25 @@ public abstract class AbstractTargetConfiguration implements TargetConfiguration
         return arguments;
     }
 
+    /**
+     * Warns about classes or packages of the project configuration that
+     * can't be found in the classpath, excluding those from the JDK
+     *
+     * @param names a list with fully qualified class or package names
+     * @param listName the name of the list in the project configuration
+     */
+    private void validateClassNames(List<String> names, String listName) throws IOException, InterruptedException {
+        ClassPathIndex index = projectConfiguration.getClassPathIndex();
+        for (String name : names) {
+            if (name.startsWith("[") || JDK_PACKAGES.stream().anyMatch(name::startsWith)) {
+                continue;
+            }
+            if (!index.containsClass(name) && !index.containsPackage(name)) {
+                Logger.logInfo("Warning, " + name + " from " + listName + " was not found in the classpath");
+            }
+        }
+    }
+
     /**
      * Generates a list with class names that should be added to the
      * initialize in build time flag
@@ -503,30 +889,21 @@ public abstract class AbstractTargetConfiguration implements TargetConfiguration
         Path reflectionPath = gvmPath.resolve(
                 Strings.substitute( Constants.REFLECTION_ARCH_FILE, Map.of("archOs", suffix)));
         Files.deleteIfExists(reflectionPath);
-        try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(reflectionPath.toFile())))) {
-            bw.write("[\n");
-            writeSingleEntry(bw, projectConfiguration.getMainClassName(), false);
-            for (String javaFile : getReflectionClassList(suffix, projectConfiguration.isUseJavaFX(), projectConfiguration.isUsePrismSW())) {
-                InputStream inputStream = AbstractTargetConfiguration.class.getResourceAsStream(Constants.CONFIG_FILES + javaFile);
-                if (inputStream != null) {
-                    bw.write(",\n");
-                    List<String> lines = FileOps.readFileLines(inputStream,
-                            line -> !line.startsWith("[") && !line.startsWith("]"));
-                    for (String line : lines) {
-                        bw.write(line + "\n");
-                    }
-                }
-            }
-
-            for (String line : configResolver.getUserReflectionList(suffix)) {
-                bw.write(line + "\n");
-            }
-
-            for (String javaClass : projectConfiguration.getReflectionList()) {
-                writeEntry(bw, javaClass);
+        ConfigMerger merger = new ConfigMerger();
+        merger.addClass(projectConfiguration.getMainClassName(), true);
+        for (String javaFile : getReflectionClassList(suffix, projectConfiguration.isUseJavaFX(), projectConfiguration.isUsePrismSW())) {
+            InputStream inputStream = AbstractTargetConfiguration.class.getResourceAsStream(Constants.CONFIG_FILES + javaFile);
+            if (inputStream != null) {
+                merger.addClassConfig(inputStream, javaFile);
             }
-            bw.write("]");
         }
+        for (Map.Entry<String, String> config : configResolver.getUserReflectionConfigs(suffix).entrySet()) {
+            merger.addClassConfig(config.getValue(), config.getKey());
+        }
+        for (String javaClass : projectConfiguration.getReflectionList()) {
+            merger.addClass(javaClass, true);
+        }
+        merger.writeClassConfig(reflectionPath);
         return reflectionPath;
     }
 
@@ -534,30 +911,21 @@ public abstract class AbstractTargetConfiguration implements TargetConfiguration
         Path gvmPath = paths.getGvmPath();
         Path jniPath = gvmPath.resolve(Strings.substitute(Constants.JNI_ARCH_FILE, Map.of("archOs", suffix)));
         Files.deleteIfExists(jniPath);
-        try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(jniPath.toFile())))) {
-            bw.write("[\n");
-            bw.write("  {\n    \"name\" : \"" + projectConfiguration.getMainClassName() + "\"\n  }\n");
-            for (String javaFile : getJNIClassList(suffix, projectConfiguration.isUseJavaFX(), projectConfiguration.isUsePrismSW())) {
-                InputStream inputStream = AbstractTargetConfiguration.class.getResourceAsStream(Constants.CONFIG_FILES + javaFile);
-                if (inputStream != null) {
-                    bw.write(",\n");
-                    List<String> lines = FileOps.readFileLines(inputStream,
-                            line -> !line.startsWith("[") && !line.startsWith("]"));
-                    for (String line : lines) {
-                        bw.write(line + "\n");
-                    }
-                }
+        ConfigMerger merger = new ConfigMerger();
+        merger.addClass(projectConfiguration.getMainClassName(), false);
+        for (String javaFile : getJNIClassList(suffix, projectConfiguration.isUseJavaFX(), projectConfiguration.isUsePrismSW())) {
+            InputStream inputStream = AbstractTargetConfiguration.class.getResourceAsStream(Constants.CONFIG_FILES + javaFile);
+            if (inputStream != null) {
+                merger.addClassConfig(inputStream, javaFile);
             }
-
-            for (String line : configResolver.getUserJNIList(suffix)) {
-                bw.write(line + "\n");
-            }
-
-            for (String javaClass : projectConfiguration.getJniList()) {
-                writeEntry(bw, javaClass);
-            }
-            bw.write("]");
         }
+        for (Map.Entry<String, String> config : configResolver.getUserJNIConfigs(suffix).entrySet()) {
+            merger.addClassConfig(config.getValue(), config.getKey());
+        }
+        for (String javaClass : projectConfiguration.getJniList()) {
+            merger.addClass(javaClass, true);
+        }
+        merger.writeClassConfig(jniPath);
         return jniPath;
     }
 
@@ -566,93 +934,36 @@ public abstract class AbstractTargetConfiguration implements TargetConfiguration
         Path resourcePath = gvmPath.resolve(
                 Strings.substitute(Constants.RESOURCE_ARCH_FILE, Map.of("archOs", suffix)));
         Files.deleteIfExists(resourcePath);
-        try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(resourcePath.toFile())))) {
-            bw.write("{\n");
-            bw.write("  \"resources\": [\n");
-            boolean patternHasBeenWritten = false;
-            for (String extension : RESOURCES_BY_EXTENSION) {
-                if (patternHasBeenWritten) {
-                    bw.write(",\n");
-                } else {
-                    patternHasBeenWritten = true;
-                }
-                writePatternEntry(bw, ".*\\\\." + extension + "$");
-            }
-            for (String configurationResource : projectConfiguration.getResourcesList()) {
-                if (patternHasBeenWritten) {
-                    bw.write(",\n");
-                } else {
-                    patternHasBeenWritten = true;
-                }
-                writePatternEntry(bw, configurationResource);
-            }
-
-            List<String> userResourcesList = configResolver.getUserResourcesList(suffix);
-            if (!userResourcesList.isEmpty()) {
-                if (patternHasBeenWritten) {
-                    bw.write(",\n");
-                }
-                for (String line : userResourcesList) {
-                    bw.write(line + "\n");
-                }
-            } else if (patternHasBeenWritten) {
-                bw.write("\n");
-            }
-
-            bw.write("  ]\n");
-            bw.write("}");
+        ConfigMerger merger = new ConfigMerger();
+        for (String extension : RESOURCES_BY_EXTENSION) {
+            merger.addResourcePattern(".*\\." + extension + "$");
         }
-        return resourcePath;
-    }
-
-    private static void writeEntry(BufferedWriter bw, String javaClass) throws IOException {
-        writeEntry(bw, javaClass, false);
-    }
-
-    private static void writeEntry(BufferedWriter bw, String javaClass, boolean exclude) throws IOException {
-        bw.write(",\n");
-        writeSingleEntry(bw, javaClass, exclude);
-    }
-
-    private static void writeSingleEntry (BufferedWriter bw, String javaClass, boolean exclude) throws IOException {
-        bw.write("  {\n");
-        bw.write("    \"name\" : \"" + javaClass + "\"");
-        if (! exclude) {
-            bw.write(",\n");
-            bw.write("    \"allDeclaredConstructors\" : true,\n");
-            bw.write("    \"allPublicConstructors\" : true,\n");
-            bw.write("    \"allDeclaredFields\" : true,\n");
-            bw.write("    \"allPublicFields\" : true,\n");
-            bw.write("    \"allDeclaredMethods\" : true,\n");
-            bw.write("    \"allPublicMethods\" : true\n");
-        } else {
-            bw.write("\n");
+        for (String configurationResource : projectConfiguration.getResourcesList()) {
+            merger.addEscapedResourcePattern(configurationResource);
         }
-        bw.write("  }\n");
-    }
-
-    private static void writePatternEntry(BufferedWriter bw, String pattern) throws IOException {
-        bw.write("    {\"pattern\": \"" + pattern + "\"}");
+        for (Map.Entry<String, String> config : configResolver.getUserResourceConfigs(suffix).entrySet()) {
+            merger.addResourceConfig(config.getValue(), config.getKey());
+        }
+        merger.writeResourceConfig(resourcePath);
+        return resourcePath;
     }
 
     /**
      * For every jar in the classpath, checks for native libraries (*.a)
-     * and if found, extracts them to a folder, for later link
+     * and if found, extracts them to a folder, for later link. Libraries that
+     * haven't changed since the last build are left untouched
      *
      * @param classPath The classpath of the project
      * @throws IOException
      */
-    private void extractNativeLibs(String classPath) throws IOException {
+    private void extractNativeLibs(String classPath) throws IOException, InterruptedException {
         Path libPath = paths.getGvmPath().resolve(Constants.LIB_PATH);
-        if (Files.exists(libPath)) {
-            FileOps.deleteDirectory(libPath);
-        }
         Logger.logDebug("Extracting native libs to: " + libPath);
 
-        List<String> jars = new ClassPath(classPath).filter(s -> s.endsWith(".jar") && !s.contains("javafx-"));
-        for (String jar : jars) {
-            FileOps.extractFilesFromJar(".a", Path.of(jar), libPath, getTargetSpecificNativeLibsFilter());
-        }
+        List<File> jars = new ClassPath(classPath).filter(s -> s.endsWith(".jar") && !s.contains("javafx-")).stream()
+                .map(File::new)
+                .collect(Collectors.toList());
+        new NativeLibExtractor(libPath, JarIndex.getUserIndex(), getTargetSpecificNativeLibsFilter()).extract(jars);
     }
 
     /**
@@ -685,7 +996,7 @@ public abstract class AbstractTargetConfiguration implements TargetConfiguration
             Path gvmPath = paths.getGvmPath();
 
             // we will print the output of the process only if we don't have the resulting objectfile
-            String nameSearch = projectConfiguration.getMainClassName().toLowerCase(Locale.ROOT) + "." + getObjectFileExtension();
+            String nameSearch = getObjectFilename();
             if (FileOps.findFile(gvmPath, nameSearch).isEmpty()) {
                 Logger.logInfo("Additional information: Objectfile should be called " + nameSearch + " but we didn't find that under " + gvmPath.toString());
                 return false;
@@ -837,11 +1148,13 @@ public abstract class AbstractTargetConfiguration implements TargetConfiguration
 
     /**
      * A filter can be used to verify if the native library matches certain
-     * criteria, like being available for a given architecture
+     * criteria, like being available for a given architecture. It is applied
+     * to the architectures found in the headers of the library, before it
+     * is extracted
      *
      * @return a predicate, default is null (no filter applied)
      */
-    Predicate<Path> getTargetSpecificNativeLibsFilter() {
+    Predicate<Set<String>> getTargetSpecificNativeLibsFilter() {
         return null;
     }
 
@@ -28,7 +28,8 @@
 package com.gluonhq.substrate.target;
 
 import com.gluonhq.substrate.Constants;
-import com.gluonhq.substrate.model.ClassPath;
+import com.gluonhq.substrate.model.ClassPathEntry;
+import com.gluonhq.substrate.model.ClassPathIndex;
 import com.gluonhq.substrate.model.InternalProjectConfiguration;
 import com.gluonhq.substrate.model.ProcessPaths;
 import com.gluonhq.substrate.util.FileOps;
@@ -45,12 +46,11 @@ import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Enumeration;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 import static com.gluonhq.substrate.Constants.DALVIK_ACTIVITY_PACKAGE;
 import static com.gluonhq.substrate.Constants.DALVIK_JAVAFX_PACKAGE;
@@ -87,6 +87,8 @@ public class AndroidTargetConfiguration extends PosixTargetConfiguration {
             "PermissionRequestActivity", "PermissionRequestActivity$1");
     private final List<String> compiledGlueCodeJavaFX = Arrays.asList("KeyCode", "KeyCode$KeyCodeClass");
 
+    private boolean packagePrepared;
+
     public AndroidTargetConfiguration( ProcessPaths paths, InternalProjectConfiguration configuration ) throws IOException {
         super(paths,configuration);
 
@@ -122,7 +124,10 @@ public class AndroidTargetConfiguration extends PosixTargetConfiguration {
     }
 
     @Override
-    public boolean packageApp() throws IOException, InterruptedException {
+    public synchronized boolean preparePackage() throws IOException, InterruptedException {
+        if (packagePrepared) {
+            return true;
+        }
         Path androidPathForManifest = prepareAndroidManifest();
         Path androidPathForRes = prepareAndroidResources();
 
@@ -132,9 +137,6 @@ public class AndroidTargetConfiguration extends PosixTargetConfiguration {
         Path buildToolsPath = sdkPath.resolve("build-tools").resolve(findLatestBuildTool(sdkPath));
         String androidJar = sdkPath.resolve("platforms").resolve("android-27").resolve("android.jar").toString();
 
-        String unalignedApk = getApkBinPath().resolve(projectConfiguration.getAppName() + ".unaligned.apk").toString();
-        String alignedApk = getApkBinPath().resolve(projectConfiguration.getAppName() + ".apk").toString();
-
         if (!processPrecompiledClasses(androidJar)) {
             return false;
         }
@@ -142,12 +144,24 @@ public class AndroidTargetConfiguration extends PosixTargetConfiguration {
         copyAndroidManifest(androidPathForManifest);
         copyAssets(androidPathForRes);
 
-        int processResult = dx(buildToolsPath);
-        if (processResult != 0) {
+        packagePrepared = dx(buildToolsPath) == 0;
+        return packagePrepared;
+    }
+
+    @Override
+    public boolean packageApp() throws IOException, InterruptedException {
+        if (!preparePackage()) {
             return false;
         }
 
-        processResult = aapt(buildToolsPath, unalignedApk, androidJar);
+        Path sdkPath = Paths.get(sdk);
+        Path buildToolsPath = sdkPath.resolve("build-tools").resolve(findLatestBuildTool(sdkPath));
+        String androidJar = sdkPath.resolve("platforms").resolve("android-27").resolve("android.jar").toString();
+
+        String unalignedApk = getApkBinPath().resolve(projectConfiguration.getAppName() + ".unaligned.apk").toString();
+        String alignedApk = getApkBinPath().resolve(projectConfiguration.getAppName() + ".apk").toString();
+
+        int processResult = aapt(buildToolsPath, unalignedApk, androidJar);
         if (processResult != 0) {
             return false;
         }
@@ -370,32 +384,29 @@ public class AndroidTargetConfiguration extends PosixTargetConfiguration {
     }
 
     /**
-     * Walks through the jars in the classpath, excluding the JavaFX ones,
-     * and looks for META-INF/substrate/dalvik/*.class files.
-     *
-     * The method will copy all the class files found into the target folder
+     * Copies the META-INF/substrate/dalvik/*.class files found in the
+     * classpath index into the target folder. Only the jars and directories
+     * that provide those files are read. If more than one provides the same
+     * class, the last one in the classpath wins.
      *
      * @throws IOException
      */
     private void copyOtherDalvikClasses() throws IOException, InterruptedException {
         Path targetFolder = getApkClassesPath();
-        Logger.logDebug("Scanning for dalvik classes");
-        final List<File> jars = new ClassPath(projectConfiguration.getClasspath()).getJars(true);
         String prefix = META_INF_SUBSTRATE_DALVIK + DALVIK_PRECOMPILED_CLASSES;
-        for (File jar : jars) {
-            try (ZipFile zip = new ZipFile(jar)) {
-                Logger.logDebug("Scanning " + jar);
-                for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); ) {
-                    ZipEntry zipEntry = e.nextElement();
-                    String name = zipEntry.getName();
-                    if (!zipEntry.isDirectory() && name.startsWith(prefix)) {
-                        Path classPath = targetFolder.resolve(name.substring(prefix.length()));
-                        Logger.logDebug("Adding classes from " + zip.getName() + " :: " + name + " into " + classPath);
-                        FileOps.copyStream(zip.getInputStream(zipEntry), classPath);
-                    }
-                }
-            } catch (IOException e) {
-                throw new IOException("Error processing dalvik classes from jar: " + jar + ": " + e.getMessage() + ", " + Arrays.toString(e.getSuppressed()));
+        ClassPathIndex index = projectConfiguration.getClassPathIndex();
+        Map<ClassPathEntry, List<String>> classesByEntry = new LinkedHashMap<>();
+        for (String name : index.getResourceNames(prefix)) {
+            List<ClassPathEntry> providers = index.findResources(name);
+            classesByEntry.computeIfAbsent(providers.get(providers.size() - 1), k -> new ArrayList<>()).add(name);
+        }
+        for (Map.Entry<ClassPathEntry, List<String>> entry : classesByEntry.entrySet()) {
+            Map<String, byte[]> contents = entry.getKey().readEntries(prefix);
+            for (String name : entry.getValue()) {
+                Path classPath = targetFolder.resolve(name.substring(prefix.length()));
+                Logger.logDebug("Adding classes from " + entry.getKey() + " :: " + name + " into " + classPath);
+                Files.createDirectories(classPath.getParent());
+                Files.write(classPath, contents.get(name));
             }
         }
     }
@@ -46,6 +46,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -121,8 +122,8 @@ public class IosTargetConfiguration extends DarwinTargetConfiguration {
     }
 
     @Override
-    Predicate<Path> getTargetSpecificNativeLibsFilter() {
-        return this::lipoMatch;
+    Predicate<Set<String>> getTargetSpecificNativeLibsFilter() {
+        return architectures -> architectures.contains(getTargetArch());
     }
 
     @Override
@@ -264,19 +265,6 @@ public class IosTargetConfiguration extends DarwinTargetConfiguration {
         }
     }
 
-    private boolean lipoMatch(Path path) {
-        try {
-            return lipoInfo(path).indexOf(getTargetArch()) > 0;
-        } catch (IOException | InterruptedException e) {
-            Logger.logSevere("Error processing lipo for " + path);
-        }
-        return false;
-    }
-
-    private String lipoInfo(Path path) throws IOException, InterruptedException {
-        return ProcessRunner.runProcessForSingleOutput("lipo", "lipo", "-info", path.toFile().getAbsolutePath());
-    }
-
     /*
      * Copies the .cap files from the jar resource and store them in
      * a directory. Return that directory
@@ -31,14 +31,12 @@ import com.gluonhq.substrate.Constants;
 import com.gluonhq.substrate.model.InternalProjectConfiguration;
 import com.gluonhq.substrate.model.ProcessPaths;
 import com.gluonhq.substrate.util.FileOps;
+import com.gluonhq.substrate.util.ToolQueryCache;
 import com.gluonhq.substrate.util.Version;
 import com.gluonhq.substrate.util.VersionParser;
 import com.gluonhq.substrate.util.linux.LinuxLinkerFlags;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -205,16 +203,8 @@ public class LinuxTargetConfiguration extends PosixTargetConfiguration {
     }
 
     private String getFirstLineFromProcess(String...command) throws InterruptedException, IOException {
-        ProcessBuilder compiler = new ProcessBuilder(command);
-        compiler.redirectErrorStream(true);
-
-        Process compilerProcess = compiler.start();
-        InputStream processInputStream = compilerProcess.getInputStream();
-        compilerProcess.waitFor();
-
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(processInputStream))) {
-            return reader.readLine();
-        }
+        List<String> lines = ToolQueryCache.getUserCache().query(command[0] + " version", command);
+        return lines == null || lines.isEmpty() ? null : lines.get(0);
     }
 
     private List<String> asListOfLibraryLinkFlags(List<String> libraries) {
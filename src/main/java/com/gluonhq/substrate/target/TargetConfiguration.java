@@ -27,6 +27,9 @@
  */
 package com.gluonhq.substrate.target;
 
+import com.gluonhq.substrate.util.BuildPlan;
+import com.gluonhq.substrate.util.ProgressListener;
+
 import java.io.IOException;
 import java.nio.file.Path;
 
@@ -42,6 +45,20 @@ public interface TargetConfiguration {
 
     boolean link() throws IOException, InterruptedException;
 
+    /**
+     * Prepares the parts of the package that don't depend on the linked
+     * application, like resources or precompiled classes. This operation can
+     * run concurrently with {@link #compile()} and {@link #link()}. If it is not
+     * called, {@link #packageApp()} does the same work.
+     *
+     * @return true if preparing succeeded or is a no-op, false if it failed.
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    default boolean preparePackage() throws IOException, InterruptedException {
+        return true;
+    }
+
     /**
      * Creates a package of the application (including at least executable and
      * other possible files) in a given format.
@@ -81,4 +98,21 @@ public interface TargetConfiguration {
 
     boolean runUntilEnd() throws IOException, InterruptedException;
 
+    /**
+     * Adds to the plan the dependencies that would be downloaded, and the command lines
+     * of the steps that {@link #compile()} and {@link #link()} would run, without
+     * starting any external process.
+     *
+     * @param plan the plan of the build
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    void plan(BuildPlan plan) throws IOException, InterruptedException;
+
+    /**
+     * Adds a listener that receives the progress of native-image during {@link #compile()}
+     * @param listener the listener
+     */
+    void addProgressListener(ProgressListener listener);
+
 }
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Records a fingerprint of the inputs of a build step (command line arguments,
+ * file contents, tool versions, ...), so that the step can be skipped when
+ * none of its inputs changed since its last successful run.
+ *
+ * Each input is stored as a key and the hash of its value, so when a fingerprint
+ * doesn't match, the first changed input can be reported.
+ *
+ * Absolute paths can be relocated to placeholders, so the same inputs produce
+ * the same hash for different checkouts of a project, or on different machines.
+ */
+public class BuildFingerprint {
+
+    private static final String SEPARATOR = "\t";
+
+    private final Map<String, String> entries = new LinkedHashMap<>();
+    private final Map<String, String> relocations = new LinkedHashMap<>();
+
+    /**
+     * Replaces the given root path with a placeholder in all the inputs added
+     * afterwards. When roots are nested, the innermost one should be relocated first.
+     * @param root the absolute path that will be replaced
+     * @param placeholder the placeholder, like <code>${project}</code>
+     * @return this fingerprint
+     */
+    public BuildFingerprint relocate(Path root, String placeholder) {
+        relocations.put(Objects.requireNonNull(root).toString(), Objects.requireNonNull(placeholder));
+        return this;
+    }
+
+    /**
+     * Adds a string value to the fingerprint
+     * @param key the name of the input
+     * @param value the value of the input, it can be null
+     * @return this fingerprint
+     */
+    public BuildFingerprint add(String key, String value) {
+        entries.put(relocate(Objects.requireNonNull(key)), hash(relocate(String.valueOf(value)).getBytes(StandardCharsets.UTF_8)));
+        return this;
+    }
+
+    /**
+     * Adds a list of values, like command line arguments, to the fingerprint
+     * @param key the name of the input
+     * @param values the list of values
+     * @return this fingerprint
+     */
+    public BuildFingerprint add(String key, List<String> values) {
+        return add(key, String.join("\n", Objects.requireNonNull(values)));
+    }
+
+    /**
+     * Adds the content of a file to the fingerprint. If the path is a directory,
+     * the relative names and the content of all its files are added.
+     * @param path the path to a file or a directory
+     * @return this fingerprint
+     * @throws IOException if the file can't be read
+     */
+    public BuildFingerprint addFile(Path path) throws IOException {
+        String key = "file:" + Objects.requireNonNull(path);
+        if (!Files.exists(path)) {
+            return add(key, "missing");
+        }
+        if (!Files.isDirectory(path)) {
+            entries.put(relocate(key), hash(path));
+            return this;
+        }
+        MessageDigest digest = newDigest();
+        for (Path file : listFiles(path)) {
+            digest.update(path.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+            digest.update(hash(file).getBytes(StandardCharsets.UTF_8));
+        }
+        entries.put(relocate(key), toHex(digest.digest()));
+        return this;
+    }
+
+    /**
+     * Adds the size and last modified time of a file to the fingerprint. This is
+     * cheaper than hashing the content, and should be used for large files that
+     * are not produced by the build. If the path is a directory, the stamps of
+     * its files are added.
+     * @param path the path to a file or a directory
+     * @return this fingerprint
+     * @throws IOException if the attributes of the file can't be read
+     */
+    public BuildFingerprint addFileStamp(Path path) throws IOException {
+        String key = "stamp:" + Objects.requireNonNull(path);
+        if (!Files.exists(path)) {
+            return add(key, "missing");
+        }
+        List<Path> files = Files.isDirectory(path) ? listFiles(path) : List.of(path);
+        StringBuilder stamps = new StringBuilder();
+        for (Path file : files) {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            stamps.append(path.relativize(file)).append(':')
+                    .append(attrs.size()).append(':')
+                    .append(attrs.lastModifiedTime().toMillis()).append('\n');
+        }
+        return add(key, stamps.toString());
+    }
+
+    /**
+     * Adds the content of all the elements of a classpath: the jars and the
+     * files under the directories.
+     * @param classpath a classpath, delimited with {@code File.pathSeparator}
+     * @return this fingerprint
+     * @throws IOException if any of the files can't be read
+     */
+    public BuildFingerprint addClasspath(String classpath) throws IOException {
+        add("classpath", classpath);
+        for (String element : Strings.split(classpath.replace("\"", ""), File.pathSeparator)) {
+            addFile(Path.of(element));
+        }
+        return this;
+    }
+
+    /**
+     * Returns a single hash that combines all the inputs of this fingerprint
+     * @return a string with the hash
+     */
+    public String getHash() {
+        MessageDigest digest = newDigest();
+        entries.forEach((k, v) -> digest.update((k + SEPARATOR + v + "\n").getBytes(StandardCharsets.UTF_8)));
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Checks if this fingerprint matches the one stored at the given path
+     * @param fingerprintFile the path of a previously written fingerprint
+     * @return true if the file exists and contains exactly the same inputs
+     * @throws IOException if the file can't be read
+     */
+    public boolean matches(Path fingerprintFile) throws IOException {
+        if (!Files.exists(fingerprintFile)) {
+            Logger.logDebug("No previous fingerprint found at " + fingerprintFile);
+            return false;
+        }
+        Map<String, String> previous = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(fingerprintFile)) {
+            int index = line.lastIndexOf(SEPARATOR);
+            if (index > 0) {
+                previous.put(line.substring(0, index), line.substring(index + 1));
+            }
+        }
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            if (!entry.getValue().equals(previous.get(entry.getKey()))) {
+                Logger.logDebug("Input changed since last build: " + entry.getKey());
+                return false;
+            }
+        }
+        if (previous.size() != entries.size()) {
+            Logger.logDebug("The set of inputs changed since last build");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Stores this fingerprint at the given path
+     * @param fingerprintFile the path of the fingerprint file
+     * @throws IOException if the file can't be written
+     */
+    public void write(Path fingerprintFile) throws IOException {
+        Files.createDirectories(fingerprintFile.getParent());
+        Files.write(fingerprintFile, entries.entrySet().stream()
+                .map(e -> e.getKey() + SEPARATOR + e.getValue())
+                .collect(Collectors.toList()));
+    }
+
+    private String relocate(String value) {
+        for (Map.Entry<String, String> relocation : relocations.entrySet()) {
+            value = value.replace(relocation.getKey(), relocation.getValue());
+        }
+        return value;
+    }
+
+    private static List<Path> listFiles(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    static String hash(byte[] bytes) {
+        return toHex(newDigest().digest(bytes));
+    }
+
+    private static String hash(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream is = Files.newInputStream(file)) {
+            byte[] buffer = new byte[65536];
+            int len;
+            while ((len = is.read(buffer)) > 0) {
+                digest.update(buffer, 0, len);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
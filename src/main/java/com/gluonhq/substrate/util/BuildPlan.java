@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * The plan of a build: the dependencies that would be downloaded, and the
+ * command line of every step, with the prediction of whether it would run,
+ * be skipped as up to date, or be restored from the object cache.
+ *
+ * While a plan is computed with {@link #compute(Callable)}, no external process
+ * can be started from the current thread: {@link ProcessRunner} throws a
+ * {@link ProcessNotAllowedException} instead, and the parts of the plan that
+ * depend on the output of a process are reported as unresolved.
+ */
+public class BuildPlan {
+
+    public enum Status {
+        /** The step would run */
+        RUN,
+        /** The step would be skipped, since its inputs didn't change */
+        UP_TO_DATE,
+        /** The outputs of the step would be restored from the object cache */
+        CACHED,
+        /** The plan of the step requires running an external process */
+        UNRESOLVED;
+
+        String toJson() {
+            return name().toLowerCase(Locale.ROOT).replace('_', '-');
+        }
+    }
+
+    private static final ThreadLocal<BuildPlan> ACTIVE = new ThreadLocal<>();
+
+    private final String target;
+    private final Map<String, String> downloads = new LinkedHashMap<>();
+    private final List<Step> steps = new ArrayList<>();
+
+    /**
+     * Creates an empty plan
+     * @param target the target triplet of the build
+     */
+    public BuildPlan(String target) {
+        this.target = target;
+    }
+
+    /**
+     * Checks if a plan is being computed by the current thread
+     * @return true if processes can't be started
+     */
+    public static boolean isComputing() {
+        return ACTIVE.get() != null;
+    }
+
+    /**
+     * Computes the plan, running the given action while external processes
+     * are not allowed in the current thread
+     * @param action the action that adds the downloads and steps to this plan
+     * @throws Exception if the action fails
+     */
+    public void compute(Callable<?> action) throws Exception {
+        BuildPlan previous = ACTIVE.get();
+        ACTIVE.set(this);
+        try {
+            action.call();
+        } finally {
+            if (previous == null) {
+                ACTIVE.remove();
+            } else {
+                ACTIVE.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Adds a dependency that would be downloaded
+     * @param name the name of the dependency
+     * @param location the location it would be downloaded from
+     */
+    public synchronized void addDownload(String name, String location) {
+        downloads.put(name, location);
+    }
+
+    /**
+     * Adds a step to the plan
+     * @param name the name of the step
+     * @param status the predicted status of the step
+     * @param command the command line of the step, or an empty list if it is not known
+     * @param detail an optional explanation of the status
+     */
+    public synchronized void addStep(String name, Status status, List<String> command, String detail) {
+        steps.add(new Step(name, status, List.copyOf(command), detail));
+    }
+
+    public synchronized Map<String, String> getDownloads() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(downloads));
+    }
+
+    public synchronized List<Step> getSteps() {
+        return List.copyOf(steps);
+    }
+
+    /**
+     * Returns the plan as a JSON document
+     * @return a JSON string
+     */
+    public synchronized String toJson() {
+        StringBuilder sb = new StringBuilder("{\n");
+        sb.append("  \"target\": ").append(BuildTrace.quote(target)).append(",\n");
+        sb.append("  \"downloads\": [");
+        String separator = "\n";
+        for (Map.Entry<String, String> download : downloads.entrySet()) {
+            sb.append(separator).append("    {\"name\": ").append(BuildTrace.quote(download.getKey()))
+                    .append(", \"location\": ").append(BuildTrace.quote(download.getValue())).append('}');
+            separator = ",\n";
+        }
+        sb.append(downloads.isEmpty() ? "],\n" : "\n  ],\n");
+        sb.append("  \"steps\": [");
+        separator = "\n";
+        for (Step step : steps) {
+            sb.append(separator).append("    {\"name\": ").append(BuildTrace.quote(step.getName()))
+                    .append(", \"status\": \"").append(step.getStatus().toJson()).append('"');
+            if (step.getDetail() != null) {
+                sb.append(", \"detail\": ").append(BuildTrace.quote(step.getDetail()));
+            }
+            sb.append(", \"command\": [");
+            String argSeparator = "";
+            for (String arg : step.getCommand()) {
+                sb.append(argSeparator).append(BuildTrace.quote(arg));
+                argSeparator = ", ";
+            }
+            sb.append("]}");
+            separator = ",\n";
+        }
+        sb.append(steps.isEmpty() ? "]\n" : "\n  ]\n");
+        return sb.append("}\n").toString();
+    }
+
+    /**
+     * Writes the plan as a JSON file
+     * @param file the file
+     * @throws IOException if the file can't be written
+     */
+    public void write(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, toJson().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * A step of the plan
+     */
+    public static class Step {
+
+        private final String name;
+        private final Status status;
+        private final List<String> command;
+        private final String detail;
+
+        Step(String name, Status status, List<String> command, String detail) {
+            this.name = name;
+            this.status = status;
+            this.command = command;
+            this.detail = detail;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public List<String> getCommand() {
+            return command;
+        }
+
+        public String getDetail() {
+            return detail;
+        }
+    }
+
+    /**
+     * Thrown when an external process is started while a plan is computed
+     */
+    public static class ProcessNotAllowedException extends IllegalStateException {
+
+        private final String command;
+
+        ProcessNotAllowedException(String command) {
+            super("Processes can't be started while computing a build plan: " + command);
+            this.command = command;
+        }
+
+        public String getCommand() {
+            return command;
+        }
+    }
+
+    static void checkProcessAllowed(String command) {
+        if (isComputing()) {
+            throw new ProcessNotAllowedException(command);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records the timeline of a build as a Chrome trace-event file, that can be
+ * opened in <code>chrome://tracing</code> or <a href="https://ui.perfetto.dev">Perfetto</a>.
+ *
+ * Every span is written as a complete event ("ph": "X") as soon as it ends, so the
+ * file is useful even if the build is interrupted. The file uses the JSON array
+ * format without the closing bracket, which trace viewers accept, and that allows
+ * later steps of the same build, even from a different JVM, to append their spans.
+ */
+public class BuildTrace {
+
+    public static final String TRACE_FILE = "build-trace.json";
+
+    private static final long PID = ProcessHandle.current().pid();
+
+    private static Path traceFile;
+    private static Writer writer;
+    private static boolean empty;
+
+    private BuildTrace() {
+    }
+
+    /**
+     * Starts writing the spans to the given file. If it is already the current
+     * trace file, and <code>append</code> is true, nothing changes.
+     *
+     * @param file the trace file
+     * @param append if true, the spans are appended to the existing file, if any,
+     *               otherwise a new trace is started
+     */
+    public static synchronized void open(Path file, boolean append) {
+        if (append && file.equals(traceFile)) {
+            return;
+        }
+        close();
+        try {
+            Files.createDirectories(file.getParent());
+            boolean exists = append && Files.exists(file) && Files.size(file) > 2;
+            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                    exists ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+            if (!exists) {
+                writer.write("[\n");
+                writer.flush();
+            }
+            empty = !exists;
+            traceFile = file;
+        } catch (IOException e) {
+            Logger.logDebug("Error creating trace file " + file + ": " + e.getMessage());
+            writer = null;
+            traceFile = null;
+        }
+    }
+
+    /**
+     * Stops writing spans to the current trace file
+     */
+    public static synchronized void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                Logger.logDebug("Error closing trace file " + traceFile + ": " + e.getMessage());
+            }
+        }
+        writer = null;
+        traceFile = null;
+    }
+
+    /**
+     * Starts a new span, that ends when {@link Span#close()} is called
+     *
+     * @param category the category of the span, like "dispatcher", "target" or "process"
+     * @param name the name of the span
+     * @return the span
+     */
+    public static Span begin(String category, String name) {
+        return new Span(category, name);
+    }
+
+    private static synchronized void write(Span span, long end) {
+        if (writer == null) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(empty ? "" : ",\n");
+        sb.append("{\"name\":").append(quote(span.name))
+                .append(",\"cat\":").append(quote(span.category))
+                .append(",\"ph\":\"X\"")
+                .append(",\"ts\":").append(span.start)
+                .append(",\"dur\":").append(Math.max(0, end - span.start))
+                .append(",\"pid\":").append(PID)
+                .append(",\"tid\":").append(span.threadId);
+        if (!span.args.isEmpty()) {
+            sb.append(",\"args\":{");
+            String separator = "";
+            for (Map.Entry<String, Object> arg : span.args.entrySet()) {
+                sb.append(separator).append(quote(arg.getKey())).append(':');
+                Object value = arg.getValue();
+                sb.append(value instanceof Number || value instanceof Boolean ? value.toString() : quote(String.valueOf(value)));
+                separator = ",";
+            }
+            sb.append('}');
+        }
+        sb.append('}');
+        try {
+            writer.write(sb.toString());
+            writer.flush();
+            empty = false;
+        } catch (IOException e) {
+            Logger.logDebug("Error writing trace file " + traceFile + ": " + e.getMessage());
+        }
+    }
+
+    private static long now() {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now());
+    }
+
+    static String quote(String value) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"':  sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * A span of the build timeline, with optional arguments that are shown
+     * by the trace viewer when the span is selected
+     */
+    public static class Span implements AutoCloseable {
+
+        private final String category;
+        private final String name;
+        private final long start;
+        private final long threadId;
+        private final Map<String, Object> args = new LinkedHashMap<>();
+        private boolean closed;
+
+        private Span(String category, String name) {
+            this.category = category;
+            this.name = name;
+            this.start = now();
+            this.threadId = Thread.currentThread().getId();
+        }
+
+        /**
+         * Adds an argument to the span
+         * @param key the name of the argument
+         * @param value a number, a boolean or a value that is written as a string
+         * @return this span
+         */
+        public Span arg(String key, Object value) {
+            if (value != null) {
+                args.put(key, value);
+            }
+            return this;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                write(this, now());
+            }
+        }
+    }
+}
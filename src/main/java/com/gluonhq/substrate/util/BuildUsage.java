@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * The resources used by the external processes of a build, grouped by the
+ * step of the build that started them.
+ *
+ * The step is active in the thread that runs it, see {@link #call(String, Callable)},
+ * and in the tasks of the {@link TaskGraph}s executed from that thread, and every
+ * {@link ProcessRunner} started from those threads adds the usage of its process to
+ * the step when it ends.
+ */
+public class BuildUsage {
+
+    private static final ThreadLocal<StepScope> CURRENT = new ThreadLocal<>();
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    /**
+     * Runs the given action as a step of the build, in the current thread
+     * @param step the name of the step
+     * @param action the action
+     * @param <T> the type of the result of the action
+     * @return the result of the action
+     * @throws Exception if the action fails
+     */
+    public <T> T call(String step, Callable<T> action) throws Exception {
+        return new StepScope(this, step).call(action);
+    }
+
+    /**
+     * Returns the step that is active in the current thread
+     * @return the step, or null if there is none
+     */
+    static StepScope current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Returns the total usage of the processes of each step, in the order the
+     * steps started processes
+     * @return a map with the usage for each step
+     */
+    public synchronized Map<String, ProcessUsage> getUsageByStep() {
+        Map<String, ProcessUsage> usage = new LinkedHashMap<>();
+        for (Entry entry : entries) {
+            usage.merge(entry.step, entry.usage, ProcessUsage::plus);
+        }
+        return usage;
+    }
+
+    /**
+     * Returns the usage of each process started by a given step
+     * @param step the name of the step
+     * @return a map with the usage of each process, by the name of the process
+     */
+    public synchronized Map<String, ProcessUsage> getUsage(String step) {
+        Map<String, ProcessUsage> usage = new LinkedHashMap<>();
+        for (Entry entry : entries) {
+            if (entry.step.equals(step)) {
+                usage.merge(entry.processName, entry.usage, ProcessUsage::plus);
+            }
+        }
+        return usage;
+    }
+
+    synchronized void add(String step, String processName, ProcessUsage usage) {
+        entries.add(new Entry(step, processName, usage));
+    }
+
+    /**
+     * Returns the usage of each step, and of each process, as a JSON document
+     * @return a string with the JSON document
+     */
+    public synchronized String toJson() {
+        StringBuilder sb = new StringBuilder("{\n  \"steps\": [");
+        String separator = "\n";
+        for (Map.Entry<String, ProcessUsage> step : getUsageByStep().entrySet()) {
+            sb.append(separator).append("    {\"name\": ").append(BuildTrace.quote(step.getKey()))
+                    .append(", \"usage\": ").append(step.getValue().toJson()).append(", \"processes\": [");
+            String processSeparator = "\n";
+            for (Entry entry : entries) {
+                if (entry.step.equals(step.getKey())) {
+                    sb.append(processSeparator).append("      {\"name\": ").append(BuildTrace.quote(entry.processName))
+                            .append(", \"usage\": ").append(entry.usage.toJson()).append('}');
+                    processSeparator = ",\n";
+                }
+            }
+            sb.append("\n    ]}");
+            separator = ",\n";
+        }
+        sb.append(entries.isEmpty() ? "]\n}\n" : "\n  ]\n}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Writes the usage as JSON to the given file
+     * @param file the file
+     * @throws IOException if the file can't be written
+     */
+    public void write(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, toJson().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * A step of a build that is active in a thread
+     */
+    static class StepScope {
+        private final BuildUsage usage;
+        private final String step;
+
+        StepScope(BuildUsage usage, String step) {
+            this.usage = usage;
+            this.step = step;
+        }
+
+        void add(String processName, ProcessUsage processUsage) {
+            usage.add(step, processName, processUsage);
+        }
+
+        /**
+         * Runs the given action with this step active in the current thread
+         */
+        <T> T call(Callable<T> action) throws Exception {
+            StepScope previous = CURRENT.get();
+            CURRENT.set(this);
+            try {
+                return action.call();
+            } finally {
+                if (previous == null) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(previous);
+                }
+            }
+        }
+    }
+
+    private static class Entry {
+        private final String step;
+        private final String processName;
+        private final ProcessUsage usage;
+
+        Entry(String step, String processName, ProcessUsage usage) {
+            this.step = step;
+            this.processName = processName;
+            this.usage = usage;
+        }
+    }
+}
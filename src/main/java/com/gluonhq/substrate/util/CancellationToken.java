@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allows cancelling a build. Each {@link com.gluonhq.substrate.SubstrateDispatcher}
+ * has a token, that is active in the thread that runs the steps of the build, see
+ * {@link #call(Callable)}, and in the tasks of the {@link TaskGraph}s executed from
+ * that thread. Every {@link ProcessRunner} started from those threads destroys its
+ * process, and all the descendants of it, when the token is cancelled.
+ */
+public class CancellationToken {
+
+    private static final ThreadLocal<CancellationToken> CURRENT = new ThreadLocal<>();
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "substrate-cancellation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private final boolean internal;
+    private volatile String reason;
+    private ScheduledFuture<?> timeout;
+
+    /**
+     * Creates a token that cancels a build
+     */
+    public CancellationToken() {
+        this(false);
+    }
+
+    /**
+     * Creates a token
+     * @param internal true if the token only cancels part of a build, and its
+     *                 cancellation is not shown to the user
+     */
+    CancellationToken(boolean internal) {
+        this.internal = internal;
+    }
+
+    /**
+     * Returns the token that is active in the current thread
+     * @return the token, or null if there is none
+     */
+    public static CancellationToken current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs the given action with this token as the active token of the current thread
+     * @param action the action
+     * @param <T> the type of the result of the action
+     * @return the result of the action
+     * @throws Exception if the action fails
+     * @throws CancellationException if the token was cancelled before the action starts
+     */
+    public <T> T call(Callable<T> action) throws Exception {
+        throwIfCancelled();
+        CancellationToken previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return action.call();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Cancels the token, and notifies the listeners. Cancelling a token
+     * more than once has no effect.
+     * @param reason the reason of the cancellation, that is shown to the user
+     */
+    public void cancel(String reason) {
+        synchronized (this) {
+            if (this.reason != null) {
+                return;
+            }
+            this.reason = reason == null ? "cancelled" : reason;
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+        }
+        if (internal) {
+            Logger.logDebug("Cancelling: " + this.reason);
+        } else {
+            Logger.logInfo("Cancelling the build: " + this.reason);
+        }
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Cancels the token after the given time, unless it is cancelled before
+     * @param delay the time
+     * @param unit the unit of the time
+     */
+    public synchronized void cancelAfter(long delay, TimeUnit unit) {
+        if (reason != null) {
+            return;
+        }
+        if (timeout != null) {
+            timeout.cancel(false);
+        }
+        timeout = TIMER.schedule(() -> cancel("timeout after " + delay + " " + unit.toString().toLowerCase(Locale.ROOT)), delay, unit);
+    }
+
+    /**
+     * Cancels the timeout set by {@link #cancelAfter(long, TimeUnit)}, if any,
+     * when the build ends before it
+     */
+    public synchronized void clearTimeout() {
+        if (timeout != null) {
+            timeout.cancel(false);
+            timeout = null;
+        }
+    }
+
+    public boolean isCancelled() {
+        return reason != null;
+    }
+
+    /**
+     * @return the reason of the cancellation, or null if the token is not cancelled
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * @throws CancellationException if the token is cancelled
+     */
+    public void throwIfCancelled() {
+        if (reason != null) {
+            throw new CancellationException("Build cancelled: " + reason);
+        }
+    }
+
+    /**
+     * Adds a listener that is called when the token is cancelled. If it is
+     * already cancelled, the listener is called right away.
+     * @param listener the listener
+     * @return a runnable that removes the listener
+     */
+    public Runnable onCancel(Runnable listener) {
+        listeners.add(listener);
+        if (reason != null && listeners.remove(listener)) {
+            listener.run();
+        }
+        return () -> listeners.remove(listener);
+    }
+}
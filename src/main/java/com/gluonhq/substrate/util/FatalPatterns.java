@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Default patterns for lines of output of the tools used during the build
+ * that mean the tool will fail, so {@link ProcessRunner} can end them right
+ * away instead of waiting for them to exit on their own.
+ *
+ * There are no patterns for the compilers and linkers: they exit on their own
+ * right after a fatal error, or after reporting all the unresolved symbols or
+ * missing libraries, and ending them earlier would only cut that output short.
+ *
+ * They can be disabled with <code>-Dfatalpatterns=false</code>.
+ */
+public final class FatalPatterns {
+
+    public static final List<Pattern> NATIVE_IMAGE = List.of(
+            Pattern.compile("^Fatal error:"),
+            Pattern.compile("^Error: Unsupported features in \\d+ methods"),
+            Pattern.compile("^Error: Main entry point class '.*' not found"),
+            Pattern.compile("^Error: Classes that should be initialized at run time got initialized during image building"),
+            Pattern.compile("^(?:Exception in thread \".*\" |Caused by: )?java\\.lang\\.OutOfMemoryError"));
+
+    public static final List<Pattern> AAPT = List.of(
+            Pattern.compile("^error: "),
+            Pattern.compile("^\\S+:\\d+: error: "),
+            Pattern.compile("^ERROR: "));
+
+    private FatalPatterns() {}
+
+    /**
+     * Returns the default fatal patterns for a given command
+     * @param executable the first argument of the command line, like <code>/path/to/native-image</code>
+     * @return the list of patterns, that can be empty if the tool is not known
+     */
+    public static List<Pattern> forCommand(String executable) {
+        if (executable == null || executable.isEmpty() ||
+                !Boolean.parseBoolean(System.getProperty("fatalpatterns", "true"))) {
+            return List.of();
+        }
+        String name = Path.of(executable).getFileName().toString().toLowerCase(Locale.ROOT)
+                .replaceFirst("\\.(?:exe|cmd|bat)$", "");
+        if (name.equals("native-image")) {
+            return NATIVE_IMAGE;
+        }
+        if (name.equals("aapt") || name.equals("aapt2")) {
+            return AAPT;
+        }
+        return List.of();
+    }
+}
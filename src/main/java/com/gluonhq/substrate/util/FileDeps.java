@@ -37,9 +37,13 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Stream;
 
 public final class FileDeps {
@@ -73,6 +77,9 @@ public final class FileDeps {
             "https://repo1.maven.org/maven2/javax/xml/bind/jaxb-api/2.3.1/jaxb-api-2.3.1.jar",
             "https://repo1.maven.org/maven2/com/sun/istack/istack-commons-runtime/3.0.10/istack-commons-runtime-3.0.10.jar" };
 
+    private static final Object DEPENDENCIES_LOCK = new Object();
+    private static final Map<String, String> CHECKSUMS = new ConcurrentHashMap<>();
+
     private static final String ANDROID_KEY = "24333f8a63b6825ea9c5514f83c2829b004d1fee";
     private static final String[] ANDROID_SDK_PACKAGES = {
             "platforms;android-27", "build-tools;27.0.3", "platform-tools", 
@@ -146,12 +153,56 @@ public final class FileDeps {
         if (Files.exists(Objects.requireNonNull(path))) {
             return path;
         }
-        if (!setupDependencies()) {
-            throw new IOException(errorMessage); //"Error setting up dependencies"
+        if (BuildPlan.isComputing()) {
+            // the download is part of the plan
+            return path;
+        }
+        // concurrent builds for different targets can share dependencies: install them only once
+        synchronized (DEPENDENCIES_LOCK) {
+            if (Files.exists(path)) {
+                return path;
+            }
+            if (!setupDependencies()) {
+                throw new IOException(errorMessage); //"Error setting up dependencies"
+            }
         }
         return path;
     }
 
+    /**
+     * Returns the dependencies that {@link #setupDependencies()} would download for this
+     * configuration, without downloading them.
+     * @return a map with the name of each missing dependency and the location it is downloaded from
+     * @throws IOException if a user-supplied location doesn't contain the required files
+     */
+    public Map<String, String> getMissingDependencies() throws IOException {
+        String target = configuration.getTargetTriplet().getOsArch();
+        Map<String, String> dependencies = new LinkedHashMap<>();
+        for (Dependency dependency : findMissingDependencies()) {
+            switch (dependency) {
+                case JAVA_STATIC_SDK:
+                    dependencies.put("javaStaticSdk", JAVA_STATIC_URL + Strings.substitute(JAVA_STATIC_ZIP, Map.of(
+                            "version", configuration.getJavaStaticSdkVersion(), "target", target)));
+                    break;
+                case JAVAFX_STATIC_SDK:
+                    dependencies.put("javafxStaticSdk", JAVAFX_STATIC_URL + Strings.substitute(JAVAFX_STATIC_ZIP, Map.of(
+                            "version", configuration.getJavafxStaticSdkVersion(), "target", target)));
+                    break;
+                case ANDROID_SDK:
+                    dependencies.put("androidSdk", Strings.substitute(ANDROID_SDK_URL,
+                            Map.of("host", configuration.getHostTriplet().getOs())));
+                    break;
+                case ANDROID_ADDITIONAL_LIBS:
+                    dependencies.put("androidAdditionalLibs", String.join(",", ANDROID_DEPS));
+                    break;
+                case ANDROID_NDK:
+                    dependencies.put("androidNdk", "sdkmanager " + String.join(" ", ANDROID_SDK_PACKAGES));
+                    break;
+            }
+        }
+        return dependencies;
+    }
+
     /**
      * First, this method searches for a valid location of the java static libraries
      * (e.g. libjava.a). When a user-supplied location is present, this location will be
@@ -175,15 +226,64 @@ public final class FileDeps {
             Files.createDirectories(Constants.USER_SUBSTRATE_PATH);
         }
 
+        Path javaStaticLibs = configuration.getJavaStaticLibsPath();
+        Set<Dependency> missing = findMissingDependencies();
+        boolean downloadJavaStatic = missing.contains(Dependency.JAVA_STATIC_SDK);
+        boolean downloadJavaFXStatic = missing.contains(Dependency.JAVAFX_STATIC_SDK);
+        boolean downloadAndroidSdk = missing.contains(Dependency.ANDROID_SDK);
+        boolean downloadAndroidNdk = missing.contains(Dependency.ANDROID_NDK);
+        boolean downloadAndroidAdditionalLibs = missing.contains(Dependency.ANDROID_ADDITIONAL_LIBS);
+
+        try {
+            if (downloadJavaStatic) {
+                downloadJavaZip(target);
+            }
+
+            if (downloadJavaFXStatic) {
+                downloadJavaFXZip(target);
+            }
+
+            if (downloadAndroidSdk) { // First we get SDK
+                downloadAndroidSdkZip();
+            }
+
+            if (downloadAndroidAdditionalLibs) { // Then we get additional libs
+                downloadAdditionalAndroidLibs();
+            }
+
+            if (downloadAndroidNdk) { // And then NDK
+                fetchFromSdkManager();
+            }
+
+        } catch (IOException | InterruptedException e) {
+            throw new RuntimeException("Error downloading zips: " + e.getMessage());
+        }
+        Logger.logDebug("Setup dependencies done");
+
+        if (!Files.exists(javaStaticLibs) && (!configuration.getHostTriplet().equals(configuration.getTargetTriplet()))) {
+            Logger.logSevere("Error: path " + javaStaticLibs + " doesn't exist but required for crosscompilation");
+            return false;
+        }
+        if (configuration.isUseJavaFX() && !Files.exists(configuration.getJavafxStaticLibsPath())) {
+            Logger.logSevere("Error: path " + configuration.getJavafxStaticLibsPath() + " doesn't exist");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks which of the dependencies required by this configuration are
+     * missing or modified, and have to be downloaded
+     * @return the set of missing dependencies
+     * @throws IOException if a user-supplied location doesn't contain the required files
+     */
+    private Set<Dependency> findMissingDependencies() throws IOException {
         Path javaStaticLibs = configuration.getJavaStaticLibsPath();
         Path defaultJavaStaticPath = configuration.getDefaultJavaStaticPath();
         boolean customJavaLocation = configuration.useCustomJavaStaticLibs();
 
-        boolean downloadJavaStatic = false;
-        boolean downloadJavaFXStatic = false;
-        boolean downloadAndroidSdk = false;
-        boolean downloadAndroidNdk = false;
-        boolean downloadAndroidAdditionalLibs = false;
+        String target = configuration.getTargetTriplet().getOsArch();
+        Set<Dependency> missing = EnumSet.noneOf(Dependency.class);
 
         // Java Static
         Logger.logDebug("Processing JavaStatic dependencies at " + javaStaticLibs.toString());
@@ -194,7 +294,7 @@ public final class FileDeps {
                 if (customJavaLocation) {
                     throw new IOException ("A location for the static sdk libs was supplied, but it doesn't exist: "+javaStaticLibs);
                 }
-                downloadJavaStatic = true;
+                missing.add(Dependency.JAVA_STATIC_SDK);
             } else {
                 String path = javaStaticLibs.toString();
                 if (JAVA_FILES.stream()
@@ -205,7 +305,7 @@ public final class FileDeps {
                     if (customJavaLocation) {
                         throw new IOException ("A location for the static sdk libs was supplied, but the java libs are missing "+javaStaticLibs);
                     }
-                    downloadJavaStatic = true;
+                    missing.add(Dependency.JAVA_STATIC_SDK);
                 } else if (!customJavaLocation && configuration.isEnableCheckHash()) {
                     // when the directory for the libs is found, and it is not a user-supplied one, check for its validity
                     Logger.logDebug("Checking java static sdk hashes");
@@ -213,12 +313,12 @@ public final class FileDeps {
                     Map<String, String> hashes = FileOps.getHashMap(md5File);
                     if (hashes == null) {
                         Logger.logDebug(md5File+" not found");
-                        downloadJavaStatic = true;
+                        missing.add(Dependency.JAVA_STATIC_SDK);
                     } else if (JAVA_FILES.stream()
                             .map(s -> new File(path, s))
-                            .anyMatch(f -> !hashes.get(f.getName()).equals(FileOps.calculateCheckSum(f)))) {
+                            .anyMatch(f -> !hashes.get(f.getName()).equals(calculateCheckSum(f)))) {
                         Logger.logDebug("jar file has invalid hashcode");
-                        downloadJavaStatic = true;
+                        missing.add(Dependency.JAVA_STATIC_SDK);
                     }
                 }
             }
@@ -231,25 +331,25 @@ public final class FileDeps {
 
             if (!Files.isDirectory(javafxStatic)) {
          //       Logger.logDebug("javafxStaticSdk/" + configuration.getJavafxStaticSdkVersion() + "/" + target + "-sdk/lib folder not found");
-                downloadJavaFXStatic = true;
+                missing.add(Dependency.JAVAFX_STATIC_SDK);
             } else {
                 String path = javafxStatic.toString();
                 if (JAVAFX_FILES.stream().map(s -> new File(path, s)).anyMatch(f -> !f.exists()) ||
                         JAVAFX_STATIC_FILES.stream().map(s -> new File(path, s)).noneMatch(File::exists)) {
                     Logger.logDebug("JavaFX file not found");
-                    downloadJavaFXStatic = true;
+                    missing.add(Dependency.JAVAFX_STATIC_SDK);
                 } else if (configuration.isEnableCheckHash()) {
                     Logger.logDebug("Checking javafx static sdk hashes");
                     String md5File = getChecksumFileName(javafxStatic.getParent(), "javafxStaticSdk", target);
                     Map<String, String> hashes = FileOps.getHashMap(md5File);
                     if (hashes == null) {
                         Logger.logDebug(md5File + " md5 not found");
-                        downloadJavaFXStatic = true;
+                        missing.add(Dependency.JAVAFX_STATIC_SDK);
                     } else if (JAVAFX_FILES.stream()
                             .map(s -> new File(path, s))
-                            .anyMatch(f -> !hashes.get(f.getName()).equals(FileOps.calculateCheckSum(f)))) {
+                            .anyMatch(f -> !hashes.get(f.getName()).equals(calculateCheckSum(f)))) {
                         Logger.logDebug("JavaFX jar file has invalid hashcode");
-                        downloadJavaFXStatic = true;
+                        missing.add(Dependency.JAVAFX_STATIC_SDK);
                     }
                 }
             }
@@ -263,53 +363,38 @@ public final class FileDeps {
 
             if (!Files.exists(androidSdk)) {
                 Logger.logInfo("ANDROID_SDK not found and will be downloaded.");
-                downloadAndroidSdk = true;
+                missing.add(Dependency.ANDROID_SDK);
             } 
 
             if (!Files.exists(libsLocation)) {
-                downloadAndroidAdditionalLibs = true;
+                missing.add(Dependency.ANDROID_ADDITIONAL_LIBS);
             }
 
             if (!Files.exists(androidNdk)) {
                 Logger.logInfo("ANDROID_NDK not found and will be downloaded.");
-                downloadAndroidNdk = true;
+                missing.add(Dependency.ANDROID_NDK);
             }
         }
-        try {
-            if (downloadJavaStatic) {
-                downloadJavaZip(target);
-            }
-
-            if (downloadJavaFXStatic) {
-                downloadJavaFXZip(target);
-            }
-
-            if (downloadAndroidSdk) { // First we get SDK
-                downloadAndroidSdkZip();
-            }
-
-            if (downloadAndroidAdditionalLibs) { // Then we get additional libs
-                downloadAdditionalAndroidLibs();
-            }
+        return missing;
+    }
 
-            if (downloadAndroidNdk) { // And then NDK
-                fetchFromSdkManager();
+    /**
+     * Returns the checksum of a file. Checksums are cached by path, size and
+     * last modified time, so a long running JVM verifies each file only once
+     * while it doesn't change.
+     * @param file the file
+     * @return the checksum of the file
+     */
+    private static String calculateCheckSum(File file) {
+        String key = file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+        String checksum = CHECKSUMS.get(key);
+        if (checksum == null) {
+            checksum = FileOps.calculateCheckSum(file);
+            if (!checksum.isEmpty()) {
+                CHECKSUMS.put(key, checksum);
             }
-
-        } catch (IOException | InterruptedException e) {
-            throw new RuntimeException("Error downloading zips: " + e.getMessage());
-        }
-        Logger.logDebug("Setup dependencies done");
-
-        if (!Files.exists(javaStaticLibs) && (!configuration.getHostTriplet().equals(configuration.getTargetTriplet()))) {
-            Logger.logSevere("Error: path " + javaStaticLibs + " doesn't exist but required for crosscompilation");
-            return false;
         }
-        if (configuration.isUseJavaFX() && !Files.exists(configuration.getJavafxStaticLibsPath())) {
-            Logger.logSevere("Error: path " + configuration.getJavafxStaticLibsPath() + " doesn't exist");
-            return false;
-        }
-        return true;
+        return checksum;
     }
 
     /**
@@ -427,4 +512,8 @@ public final class FileDeps {
         androidSdkManager(ANDROID_SDK_PACKAGES);
         Logger.logInfo("Android NDK and toolchain downloaded successfully");
     }
-} 
+
+    private enum Dependency {
+        JAVA_STATIC_SDK, JAVAFX_STATIC_SDK, ANDROID_SDK, ANDROID_ADDITIONAL_LIBS, ANDROID_NDK
+    }
+}
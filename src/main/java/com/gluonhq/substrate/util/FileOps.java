@@ -65,10 +65,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
@@ -362,49 +362,6 @@ public class FileOps {
         }
     }
 
-    /**
-     * Extracts the files that match a given extension found in a jar to a target patch,
-     * providing that the file passes a given filter, and it doesn't exist yet in the target path
-     *
-     * @param extension the extension of the files in the jar that will be extracted
-     * @param sourceJar the path to the jar that will be inspected
-     * @param target the path of the folder where the files will be extracted
-     * @param filter a predicate that the files in the jar should match.
-     * @throws IOException
-     */
-    public static void extractFilesFromJar(String extension, Path sourceJar, Path target, Predicate<Path> filter) throws IOException {
-        if (!Files.exists(sourceJar)) {
-            return;
-        }
-        if (!Files.exists(target)) {
-            Files.createDirectories(target);
-        }
-        ZipFile zf = new ZipFile(sourceJar.toFile());
-        List<? extends ZipEntry> entries = zf.stream()
-                .filter(ze -> ze.getName().endsWith(extension))
-                .collect(Collectors.toList());
-        if (entries.isEmpty()) {
-            return;
-        }
-
-        List<String> uniqueObjectFileNames = Files.list(target)
-                .map(p -> p.getFileName().toString())
-                .collect(Collectors.toList());
-
-        for (ZipEntry ze : entries) {
-            String uniqueName = new File(ze.getName()).getName();
-            if (!uniqueObjectFileNames.contains(uniqueName)) {
-                Path filePath = FileOps.copyStream(zf.getInputStream(ze), target.resolve(uniqueName));
-                if (filter == null || filter.test(filePath)) {
-                    uniqueObjectFileNames.add(uniqueName);
-                } else {
-                    Logger.logDebug("File not copied, doesn't pass filter: " + uniqueName);
-                    Files.delete(filePath);
-                }
-            }
-        }
-    }
-
     /**
      * Downloads a file from a given URL (non null) into a given path (non null)
      * @param fileUrl the URL of the file
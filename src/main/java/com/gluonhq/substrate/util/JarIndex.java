@@ -0,0 +1,400 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import com.gluonhq.substrate.Constants;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Persistent index of the entries of the jars of the classpath that are relevant
+ * to a build: the files under META-INF/substrate, like configuration files
+ * and dalvik classes, with their content, and the native libraries (*.a), with
+ * only their size and CRC.
+ *
+ * The key of a jar is its canonical path, size and last modified time, so
+ * a jar that doesn't change is only opened once. Indexes are kept in memory, only
+ * the latest one of each jar and up to a total size, the least recently used
+ * being dropped first, and in files under {@link Constants#USER_SUBSTRATE_PATH} that are moved in place
+ * atomically. Index files that haven't been used for a number of days are removed,
+ * that can be set with the system property <code>jarindexdays</code>.
+ */
+public class JarIndex {
+
+    private static final String META_INF_SUBSTRATE = "META-INF/substrate/";
+    private static final String NATIVE_LIB_EXTENSION = ".a";
+    private static final int FORMAT_VERSION = 1;
+    private static final String TMP_PREFIX = ".tmp-";
+    private static final long DEFAULT_MAX_MEMORY_BYTES = 64L * 1024 * 1024;
+    // approximate size of an entry, without its content
+    private static final long ENTRY_OVERHEAD_BYTES = 128;
+
+    private static final Set<Path> PRUNED_ROOTS = ConcurrentHashMap.newKeySet();
+    private static JarIndex userIndex;
+
+    // guarded by itself, in access order
+    private final Map<Path, CachedJar> memoryCache = new LinkedHashMap<>(16, 0.75f, true);
+    private final Path root;
+    private final long maxAgeMillis;
+    private final long maxMemoryBytes;
+    private long memoryBytes;
+
+    /**
+     * Creates an index stored at the given folder
+     * @param root the folder of the index, or null to keep it only in memory
+     * @param maxAgeMillis the time an unused index file is kept
+     */
+    public JarIndex(Path root, long maxAgeMillis) {
+        this(root, maxAgeMillis, DEFAULT_MAX_MEMORY_BYTES);
+    }
+
+    JarIndex(Path root, long maxAgeMillis, long maxMemoryBytes) {
+        this.root = root;
+        this.maxAgeMillis = maxAgeMillis;
+        this.maxMemoryBytes = maxMemoryBytes;
+    }
+
+    /**
+     * Returns the index of the current user, under {@link Constants#USER_SUBSTRATE_PATH},
+     * that is shared by all the builds of this JVM
+     * @return the jar index
+     */
+    public static synchronized JarIndex getUserIndex() {
+        if (userIndex == null) {
+            int days = Integer.getInteger("jarindexdays", Constants.DEFAULT_JAR_INDEX_DAYS);
+            userIndex = new JarIndex(Constants.USER_SUBSTRATE_PATH.resolve(Constants.JAR_INDEX_FOLDER),
+                    TimeUnit.DAYS.toMillis(Math.max(1, days)));
+        }
+        return userIndex;
+    }
+
+    /**
+     * Returns the relevant entries of the jar, reading it only if it is not indexed yet
+     * @param jar the jar file
+     * @return an unmodifiable list of entries, in the order of the jar
+     * @throws IOException if the jar can't be read
+     */
+    public List<Entry> getEntries(File jar) throws IOException {
+        Path path = jar.toPath().toRealPath();
+        String key = getKey(path);
+        synchronized (memoryCache) {
+            CachedJar cached = memoryCache.get(path);
+            if (cached != null && cached.key.equals(key)) {
+                return cached.entries;
+            }
+        }
+        pruneOnce();
+        List<Entry> entries = fetch(key);
+        if (entries == null) {
+            entries = readJar(jar);
+            store(key, entries);
+        }
+        cache(path, new CachedJar(key, entries));
+        return entries;
+    }
+
+    /**
+     * Returns the indexed entries of the jar with the given prefix
+     * @param jar the jar file
+     * @param prefix the prefix of the names of the entries, like <code>META-INF/substrate/config/</code>
+     * @return a list of the matching entries, in the order of the jar
+     * @throws IOException if the jar can't be read
+     */
+    public List<Entry> getEntries(File jar, String prefix) throws IOException {
+        List<Entry> result = new ArrayList<>();
+        for (Entry entry : getEntries(jar)) {
+            if (entry.getName().startsWith(prefix)) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns true if the jar contains native libraries (*.a)
+     * @param jar the jar file
+     * @return true if there is any native library in the jar
+     * @throws IOException if the jar can't be read
+     */
+    public boolean hasNativeLibs(File jar) throws IOException {
+        return getEntries(jar).stream().anyMatch(e -> e.getName().endsWith(NATIVE_LIB_EXTENSION));
+    }
+
+    /**
+     * Keeps the entries of a jar in memory, replacing any previous version
+     * of the jar, and drops the least recently used jars over the maximum size
+     * @param path the canonical path of the jar
+     * @param cached the entries of the jar
+     */
+    private void cache(Path path, CachedJar cached) {
+        synchronized (memoryCache) {
+            CachedJar previous = memoryCache.put(path, cached);
+            if (previous != null) {
+                memoryBytes -= previous.bytes;
+            }
+            memoryBytes += cached.bytes;
+            Iterator<CachedJar> iterator = memoryCache.values().iterator();
+            while (memoryBytes > maxMemoryBytes && iterator.hasNext()) {
+                memoryBytes -= iterator.next().bytes;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the approximate size of the entries kept in memory
+     */
+    long getMemoryBytes() {
+        synchronized (memoryCache) {
+            return memoryBytes;
+        }
+    }
+
+    /**
+     * Returns the key of a jar
+     * @param path the canonical path of the jar file
+     * @return a hash of the canonical path, size and last modified time of the jar
+     * @throws IOException if the jar doesn't exist
+     */
+    static String getKey(Path path) throws IOException {
+        String stamp = FORMAT_VERSION + ":" + path + ":" + Files.size(path) + ":" +
+                Files.getLastModifiedTime(path).toMillis();
+        return BuildFingerprint.hash(stamp.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<Entry> readJar(File jar) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (ZipFile zip = new ZipFile(jar)) {
+            for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); ) {
+                ZipEntry zipEntry = e.nextElement();
+                String name = zipEntry.getName();
+                if (zipEntry.isDirectory()) {
+                    continue;
+                }
+                if (name.startsWith(META_INF_SUBSTRATE)) {
+                    byte[] content;
+                    try (InputStream inputStream = zip.getInputStream(zipEntry)) {
+                        content = inputStream.readAllBytes();
+                    }
+                    entries.add(new Entry(name, zipEntry.getCrc(), content.length, content));
+                } else if (name.endsWith(NATIVE_LIB_EXTENSION)) {
+                    entries.add(new Entry(name, zipEntry.getCrc(), zipEntry.getSize(), null));
+                }
+            }
+        } catch (IOException e) {
+            throw new IOException("Error scanning jar: " + jar + ": " + e.getMessage(), e);
+        }
+        return Collections.unmodifiableList(entries);
+    }
+
+    private List<Entry> fetch(String key) {
+        if (root == null) {
+            return null;
+        }
+        Path file = root.resolve(key);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (dis.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            int count = dis.readInt();
+            List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String name = dis.readUTF();
+                long crc = dis.readLong();
+                long size = dis.readLong();
+                int length = dis.readInt();
+                byte[] content = null;
+                if (length >= 0) {
+                    content = new byte[length];
+                    dis.readFully(content);
+                }
+                entries.add(new Entry(name, crc, size, content));
+            }
+            // mark the index file as recently used
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return Collections.unmodifiableList(entries);
+        } catch (IOException e) {
+            Logger.logDebug("Error reading jar index entry " + key + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void store(String key, List<Entry> entries) {
+        if (root == null) {
+            return;
+        }
+        Path tmpFile = root.resolve(TMP_PREFIX + UUID.randomUUID());
+        try {
+            Files.createDirectories(root);
+            try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+                dos.writeInt(FORMAT_VERSION);
+                dos.writeInt(entries.size());
+                for (Entry entry : entries) {
+                    dos.writeUTF(entry.name);
+                    dos.writeLong(entry.crc);
+                    dos.writeLong(entry.size);
+                    if (entry.content == null) {
+                        dos.writeInt(-1);
+                    } else {
+                        dos.writeInt(entry.content.length);
+                        dos.write(entry.content);
+                    }
+                }
+            }
+            Files.move(tmpFile, root.resolve(key), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Logger.logDebug("Error storing jar index entry " + key + ": " + e.getMessage());
+            try {
+                Files.deleteIfExists(tmpFile);
+            } catch (IOException ex) {
+                Logger.logDebug("Error removing " + tmpFile + ": " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Removes, in the background, the index files that haven't been used
+     * for longer than the maximum age, once per JVM
+     */
+    private void pruneOnce() {
+        if (root == null || !PRUNED_ROOTS.add(root)) {
+            return;
+        }
+        CompletableFuture.runAsync(() -> prune(root, maxAgeMillis));
+    }
+
+    static void prune(Path root, long maxAgeMillis) {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        long limit = System.currentTimeMillis() - maxAgeMillis;
+        try (Stream<Path> files = Files.list(root)) {
+            files.forEach(file -> {
+                try {
+                    if (Files.getLastModifiedTime(file).toMillis() < limit) {
+                        Files.deleteIfExists(file);
+                    }
+                } catch (IOException e) {
+                    Logger.logDebug("Error removing jar index entry " + file + ": " + e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            Logger.logDebug("Error pruning jar index " + root + ": " + e.getMessage());
+        }
+    }
+
+    private static class CachedJar {
+        private final String key;
+        private final List<Entry> entries;
+        private final long bytes;
+
+        CachedJar(String key, List<Entry> entries) {
+            this.key = key;
+            this.entries = entries;
+            this.bytes = entries.stream()
+                    .mapToLong(e -> ENTRY_OVERHEAD_BYTES + 2L * e.name.length() +
+                            (e.content == null ? 0 : e.content.length))
+                    .sum();
+        }
+    }
+
+    /**
+     * An indexed entry of a jar
+     */
+    public static class Entry {
+        private final String name;
+        private final long crc;
+        private final long size;
+        private final byte[] content;
+
+        Entry(String name, long crc, long size, byte[] content) {
+            this.name = Objects.requireNonNull(name);
+            this.crc = crc;
+            this.size = size;
+            this.content = content;
+        }
+
+        /**
+         * @return the name of the entry in the jar
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the CRC-32 of the uncompressed entry, or -1 if unknown
+         */
+        public long getCrc() {
+            return crc;
+        }
+
+        /**
+         * @return the uncompressed size of the entry, or -1 if unknown
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return the content of the entry, or null if only its metadata is indexed
+         */
+        public byte[] getContent() {
+            return content;
+        }
+    }
+}
@@ -30,6 +30,7 @@ package com.gluonhq.substrate.util;
 
 import java.util.logging.ConsoleHandler;
 import java.util.logging.FileHandler;
+import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.SimpleFormatter;
 
@@ -48,6 +49,10 @@ public class Logger {
         LOGGER.fine(s);
     }
 
+    public static void logDebug(String s, Throwable t) {
+        LOGGER.log(Level.FINE, s, t);
+    }
+
     public static void logFinest(String s) {
         LOGGER.finest(s);
     }
@@ -71,6 +76,31 @@ public class Logger {
     }
 
 
+    /**
+     * Returns the directory of the log files, set by {@link #logInit(String, boolean)}
+     * @return the log directory, or null if the logger was not initialized
+     */
+    public static String getLogDirectory() {
+        return logDirectory;
+    }
+
+    /**
+     * Adds a handler that will receive all the log records, like a build
+     * daemon forwarding the logs to its client
+     * @param handler the handler
+     */
+    public static void addHandler(Handler handler) {
+        LOGGER.addHandler(handler);
+    }
+
+    /**
+     * Removes a handler added with {@link #addHandler(Handler)}
+     * @param handler the handler
+     */
+    public static void removeHandler(Handler handler) {
+        LOGGER.removeHandler(handler);
+    }
+
     public static void logInit(String logPath, boolean verbose) {
         System.setProperty("java.util.logging.SimpleFormatter.format", "[%1$tc][%4$s] %5$s%n"); // [Date][Level] Message
         logDirectory = logPath;
@@ -87,6 +117,7 @@ public class Logger {
 
             if (fileHandler != null) {
                 LOGGER.removeHandler(fileHandler);
+                fileHandler.close();
             }
 
             fileHandler = new FileHandler(logPath + "/client-debug%g.log",
@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Reads the architectures of a native library, like <code>lipo -info</code> does,
+ * from its headers only: universal (fat) files, static archives (ar) of Mach-O
+ * objects or bitcode, and single Mach-O objects.
+ *
+ * Architectures are returned with the names used by lipo and clang, like
+ * <code>arm64</code> or <code>x86_64</code>.
+ */
+public final class NativeArchive {
+
+    private static final int FAT_MAGIC = 0xcafebabe;
+    private static final int FAT_MAGIC_64 = 0xcafebabf;
+    private static final int MH_MAGIC = 0xfeedface;
+    private static final int MH_MAGIC_64 = 0xfeedfacf;
+    private static final int MH_CIGAM = 0xcefaedfe;
+    private static final int MH_CIGAM_64 = 0xcffaedfe;
+    private static final int BITCODE_WRAPPER_MAGIC = 0xdec0170b;
+
+    private static final byte[] AR_MAGIC = "!<arch>\n".getBytes(StandardCharsets.US_ASCII);
+    private static final int AR_HEADER_SIZE = 60;
+    // enough for the magic, cputype and cpusubtype of Mach-O, and the cputype of the bitcode wrapper
+    private static final int OBJECT_HEADER_SIZE = 20;
+    private static final String BSD_LONG_NAME = "#1/";
+
+    private static final int CPU_ARCH_ABI64 = 0x01000000;
+    private static final int CPU_ARCH_ABI64_32 = 0x02000000;
+    private static final int CPU_TYPE_X86 = 7;
+    private static final int CPU_TYPE_ARM = 12;
+
+    private NativeArchive() {
+    }
+
+    /**
+     * Reads the architectures of the library from the given stream. Only the headers
+     * are parsed, the rest of the content is skipped without being stored.
+     *
+     * @param inputStream the stream with the content of the library, it is not closed
+     * @return a set of architecture names, empty if the format is not recognized
+     * @throws IOException if the stream can't be read
+     */
+    public static Set<String> readArchitectures(InputStream inputStream) throws IOException {
+        byte[] magic = new byte[8];
+        int read = readFully(inputStream, magic);
+        if (read >= 8 && startsWith(magic, AR_MAGIC)) {
+            return readArchive(inputStream);
+        }
+        if (read < 4) {
+            return Collections.emptySet();
+        }
+        int bigEndian = ByteBuffer.wrap(magic).order(ByteOrder.BIG_ENDIAN).getInt();
+        if (bigEndian == FAT_MAGIC || bigEndian == FAT_MAGIC_64) {
+            if (read < 8) {
+                return Collections.emptySet();
+            }
+            int count = ByteBuffer.wrap(magic, 4, 4).order(ByteOrder.BIG_ENDIAN).getInt();
+            int entrySize = bigEndian == FAT_MAGIC ? 20 : 32;
+            Set<String> archs = new LinkedHashSet<>();
+            byte[] entry = new byte[entrySize];
+            for (int i = 0; i < count; i++) {
+                if (readFully(inputStream, entry) < entrySize) {
+                    throw new EOFException("Truncated universal header");
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(entry).order(ByteOrder.BIG_ENDIAN);
+                addArch(archs, buffer.getInt(0), buffer.getInt(4));
+            }
+            return archs;
+        }
+        byte[] header = new byte[OBJECT_HEADER_SIZE];
+        System.arraycopy(magic, 0, header, 0, read);
+        if (read == 8) {
+            readFully(inputStream, header, 8);
+        }
+        return readObject(header);
+    }
+
+    /**
+     * Returns the architectures of the first object of a static archive, skipping
+     * the symbol tables and the objects that are not Mach-O or bitcode
+     */
+    private static Set<String> readArchive(InputStream inputStream) throws IOException {
+        byte[] header = new byte[AR_HEADER_SIZE];
+        while (readFully(inputStream, header) == AR_HEADER_SIZE) {
+            String name = new String(header, 0, 16, StandardCharsets.US_ASCII).trim();
+            long size;
+            try {
+                size = Long.parseLong(new String(header, 48, 10, StandardCharsets.US_ASCII).trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid archive member header: " + name);
+            }
+            long remaining = size + (size % 2);
+            if (name.startsWith(BSD_LONG_NAME)) {
+                int nameLength = Integer.parseInt(name.substring(BSD_LONG_NAME.length()));
+                byte[] longName = new byte[nameLength];
+                if (readFully(inputStream, longName) < nameLength) {
+                    throw new EOFException("Truncated archive member name");
+                }
+                name = new String(longName, StandardCharsets.US_ASCII).trim();
+                remaining -= nameLength;
+            }
+            if (!name.startsWith("__.SYMDEF") && !name.startsWith("/") && remaining >= OBJECT_HEADER_SIZE) {
+                byte[] objectHeader = new byte[OBJECT_HEADER_SIZE];
+                if (readFully(inputStream, objectHeader) < OBJECT_HEADER_SIZE) {
+                    throw new EOFException("Truncated archive member " + name);
+                }
+                remaining -= OBJECT_HEADER_SIZE;
+                Set<String> archs = readObject(objectHeader);
+                if (!archs.isEmpty()) {
+                    return archs;
+                }
+            }
+            skipFully(inputStream, remaining);
+        }
+        return Collections.emptySet();
+    }
+
+    private static Set<String> readObject(byte[] header) {
+        Set<String> archs = new LinkedHashSet<>();
+        int magic = ByteBuffer.wrap(header).order(ByteOrder.BIG_ENDIAN).getInt();
+        if (magic == MH_MAGIC || magic == MH_MAGIC_64) {
+            ByteBuffer buffer = ByteBuffer.wrap(header).order(ByteOrder.BIG_ENDIAN);
+            addArch(archs, buffer.getInt(4), buffer.getInt(8));
+        } else if (magic == MH_CIGAM || magic == MH_CIGAM_64) {
+            ByteBuffer buffer = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+            addArch(archs, buffer.getInt(4), buffer.getInt(8));
+        } else if (magic == BITCODE_WRAPPER_MAGIC) {
+            // the wrapper has the magic, version, offset, size and cputype, in little endian
+            ByteBuffer buffer = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+            addArch(archs, buffer.getInt(16), 0);
+        }
+        return archs;
+    }
+
+    private static void addArch(Set<String> archs, int cpuType, int cpuSubtype) {
+        String name = getArchName(cpuType, cpuSubtype & 0x00ffffff);
+        if (name != null) {
+            archs.add(name);
+        }
+    }
+
+    static String getArchName(int cpuType, int cpuSubtype) {
+        switch (cpuType) {
+            case CPU_TYPE_X86:
+                return "i386";
+            case CPU_TYPE_X86 | CPU_ARCH_ABI64:
+                return cpuSubtype == 8 ? "x86_64h" : "x86_64";
+            case CPU_TYPE_ARM:
+                switch (cpuSubtype) {
+                    case 6: return "armv6";
+                    case 9: return "armv7";
+                    case 11: return "armv7s";
+                    case 12: return "armv7k";
+                    default: return "arm";
+                }
+            case CPU_TYPE_ARM | CPU_ARCH_ABI64:
+                return cpuSubtype == 2 ? "arm64e" : "arm64";
+            case CPU_TYPE_ARM | CPU_ARCH_ABI64_32:
+                return "arm64_32";
+            default:
+                return null;
+        }
+    }
+
+    private static boolean startsWith(byte[] bytes, byte[] prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readFully(InputStream inputStream, byte[] buffer) throws IOException {
+        return readFully(inputStream, buffer, 0);
+    }
+
+    private static int readFully(InputStream inputStream, byte[] buffer, int offset) throws IOException {
+        int total = offset;
+        while (total < buffer.length) {
+            int read = inputStream.read(buffer, total, buffer.length - total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total - offset;
+    }
+
+    private static void skipFully(InputStream inputStream, long bytes) throws IOException {
+        long remaining = bytes;
+        while (remaining > 0) {
+            long skipped = inputStream.skip(remaining);
+            if (skipped <= 0) {
+                if (inputStream.read() < 0) {
+                    return;
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Extracts the native libraries (*.a) of the jars of the classpath into a folder,
+ * incrementally.
+ *
+ * Libraries are extracted with their file name, and if more than one jar contains
+ * a library with the same name, the first one in the classpath that passes the filter
+ * is used. Different libraries are extracted in parallel, streaming each entry straight
+ * from the jar into its file, and the filter is applied to the architectures found in the
+ * headers of the entry, before anything is written. A manifest in the folder records, for each extracted or rejected library,
+ * its jar, entry, CRC and size, so later extractions only write the libraries that
+ * changed, and remove those that are not in the classpath anymore. Libraries that
+ * don't change are never touched, so their modification time is kept.
+ */
+public class NativeLibExtractor {
+
+    public static final String MANIFEST_FILE = ".native-libs";
+
+    private static final String NATIVE_LIB_EXTENSION = ".a";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final Path libPath;
+    private final JarIndex jarIndex;
+    private final Predicate<Set<String>> filter;
+    private final int threads;
+
+    private final AtomicInteger extracted = new AtomicInteger();
+    private final AtomicInteger kept = new AtomicInteger();
+    private int removed;
+
+    /**
+     * Creates an extractor for the given folder
+     * @param libPath the folder where the libraries are extracted
+     * @param jarIndex the index of jars, used to find the libraries without opening the jars
+     * @param filter a predicate on the architectures of a library, as returned by
+     *               {@link NativeArchive#readArchitectures(InputStream)}, that it has to pass
+     *               to be used, or null
+     */
+    public NativeLibExtractor(Path libPath, JarIndex jarIndex, Predicate<Set<String>> filter) {
+        this(libPath, jarIndex, filter, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an extractor for the given folder
+     * @param libPath the folder where the libraries are extracted
+     * @param jarIndex the index of jars, used to find the libraries without opening the jars
+     * @param filter a predicate on the architectures of a library, or null
+     * @param threads the maximum number of libraries that are extracted at the same time
+     */
+    public NativeLibExtractor(Path libPath, JarIndex jarIndex, Predicate<Set<String>> filter, int threads) {
+        this.libPath = Objects.requireNonNull(libPath);
+        this.jarIndex = Objects.requireNonNull(jarIndex);
+        this.filter = filter;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Brings the folder up to date with the native libraries of the given jars
+     * @param jars the jars of the classpath, in order
+     * @throws IOException if a library can't be extracted
+     * @throws InterruptedException if the thread is interrupted while waiting for the extraction
+     */
+    public void extract(List<File> jars) throws IOException, InterruptedException {
+        extracted.set(0);
+        kept.set(0);
+        removed = 0;
+        Map<String, Record> previous = readManifest();
+
+        // candidates for each library name, in classpath order
+        Map<String, List<Record>> candidates = new LinkedHashMap<>();
+        for (File jar : jars) {
+            if (!jar.exists()) {
+                continue;
+            }
+            String jarPath = jar.toPath().toRealPath().toString();
+            for (JarIndex.Entry entry : jarIndex.getEntries(jar)) {
+                if (entry.getName().endsWith(NATIVE_LIB_EXTENSION)) {
+                    String fileName = new File(entry.getName()).getName();
+                    candidates.computeIfAbsent(fileName, k -> new ArrayList<>())
+                            .add(new Record(fileName, jarPath, entry.getName(), entry.getCrc(), entry.getSize(), false, 0));
+                }
+            }
+        }
+
+        if (candidates.isEmpty()) {
+            // no libraries: no folder, so it is not added to the link command
+            if (Files.exists(libPath)) {
+                FileOps.deleteDirectory(libPath);
+            }
+            return;
+        }
+
+        Files.createDirectories(libPath);
+        List<Record> manifest = new ArrayList<>();
+        Set<String> libs = new HashSet<>();
+        for (List<Record> records : resolveAll(new ArrayList<>(candidates.values()), previous)) {
+            manifest.addAll(records);
+            Record last = records.get(records.size() - 1);
+            if (last.accepted) {
+                libs.add(last.fileName);
+            }
+        }
+
+        try (Stream<Path> files = Files.list(libPath)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                String name = file.getFileName().toString();
+                if (!libs.contains(name) && !MANIFEST_FILE.equals(name) && Files.isRegularFile(file)) {
+                    Logger.logDebug("Removing native library " + file);
+                    Files.delete(file);
+                    removed++;
+                }
+            }
+        }
+        writeManifest(manifest);
+        Logger.logDebug("Native libraries in " + libPath + ": " + extracted.get() + " extracted, " +
+                kept.get() + " unchanged, " + removed + " removed");
+    }
+
+    /**
+     * Resolves every library, in parallel. The records of each library are
+     * returned in classpath order, so the result doesn't depend on the threads.
+     */
+    private List<List<Record>> resolveAll(List<List<Record>> libraries, Map<String, Record> previous)
+            throws IOException, InterruptedException {
+        List<List<Record>> results = new ArrayList<>();
+        int poolSize = Math.min(threads, libraries.size());
+        if (poolSize <= 1) {
+            for (List<Record> candidates : libraries) {
+                results.add(resolve(candidates, previous));
+            }
+            return results;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize, r -> {
+            Thread thread = new Thread(r, "substrate-native-libs-" + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<List<Record>>> futures = new ArrayList<>();
+            for (List<Record> candidates : libraries) {
+                futures.add(executor.submit(() -> resolve(candidates, previous)));
+            }
+            for (Future<List<Record>> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    throw new IOException(cause);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    /**
+     * Returns the records of the candidates of a library that were checked,
+     * in classpath order, until the first one that is accepted
+     */
+    private List<Record> resolve(List<Record> candidates, Map<String, Record> previous) throws IOException {
+        List<Record> records = new ArrayList<>();
+        for (Record candidate : candidates) {
+            Record record = update(candidate, previous.get(candidate.getKey()));
+            records.add(record);
+            if (record.accepted) {
+                break;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * @return the number of libraries written by the last extraction
+     */
+    public int getExtracted() {
+        return extracted.get();
+    }
+
+    /**
+     * @return the number of libraries left untouched by the last extraction
+     */
+    public int getKept() {
+        return kept.get();
+    }
+
+    /**
+     * @return the number of files removed by the last extraction
+     */
+    public int getRemoved() {
+        return removed;
+    }
+
+    private Record update(Record candidate, Record previous) throws IOException {
+        Path file = libPath.resolve(candidate.fileName);
+        if (previous != null && previous.crc == candidate.crc && previous.size == candidate.size) {
+            if (!previous.accepted) {
+                return previous;
+            }
+            if (Files.isRegularFile(file) && Files.size(file) == previous.size &&
+                    Files.getLastModifiedTime(file).toMillis() == previous.lastModified) {
+                kept.incrementAndGet();
+                return previous;
+            }
+        }
+
+        try (ZipFile zip = new ZipFile(candidate.jar)) {
+            ZipEntry zipEntry = zip.getEntry(candidate.entry);
+            if (zipEntry == null) {
+                throw new IOException("Entry " + candidate.entry + " not found in " + candidate.jar);
+            }
+            if (filter != null) {
+                Set<String> architectures;
+                try (InputStream inputStream = zip.getInputStream(zipEntry)) {
+                    architectures = NativeArchive.readArchitectures(inputStream);
+                }
+                if (!filter.test(architectures)) {
+                    Logger.logDebug("File not copied, doesn't pass filter: " + candidate.fileName +
+                            " from " + candidate.jar + ", architectures: " + architectures);
+                    return candidate;
+                }
+            }
+            Path tmpFile = libPath.resolve(candidate.fileName + TMP_SUFFIX);
+            try (InputStream inputStream = zip.getInputStream(zipEntry)) {
+                Files.copy(inputStream, tmpFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Logger.logDebug("Extracted native library " + candidate.entry + " from " + candidate.jar);
+        extracted.incrementAndGet();
+        return new Record(candidate.fileName, candidate.jar, candidate.entry, candidate.crc, candidate.size,
+                true, Files.getLastModifiedTime(file).toMillis());
+    }
+
+    private Map<String, Record> readManifest() {
+        Map<String, Record> records = new HashMap<>();
+        Path manifest = libPath.resolve(MANIFEST_FILE);
+        if (!Files.isRegularFile(manifest)) {
+            return records;
+        }
+        try {
+            for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                String[] fields = line.split("\t");
+                if (fields.length != 7) {
+                    continue;
+                }
+                Record record = new Record(fields[0], fields[1], fields[2], Long.parseLong(fields[3]),
+                        Long.parseLong(fields[4]), Boolean.parseBoolean(fields[5]), Long.parseLong(fields[6]));
+                records.put(record.getKey(), record);
+            }
+        } catch (IOException | NumberFormatException e) {
+            Logger.logDebug("Error reading " + manifest + ", all native libraries will be extracted: " + e.getMessage());
+            records.clear();
+        }
+        return records;
+    }
+
+    private void writeManifest(List<Record> records) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (Record record : records) {
+            lines.add(String.join("\t", record.fileName, record.jar, record.entry,
+                    Long.toString(record.crc), Long.toString(record.size),
+                    Boolean.toString(record.accepted), Long.toString(record.lastModified)));
+        }
+        Path tmpFile = libPath.resolve(MANIFEST_FILE + TMP_SUFFIX);
+        Files.write(tmpFile, lines, StandardCharsets.UTF_8);
+        Files.move(tmpFile, libPath.resolve(MANIFEST_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * A library of a jar, and whether it was extracted or rejected by the filter
+     */
+    private static class Record {
+        private final String fileName;
+        private final String jar;
+        private final String entry;
+        private final long crc;
+        private final long size;
+        private final boolean accepted;
+        private final long lastModified;
+
+        Record(String fileName, String jar, String entry, long crc, long size, boolean accepted, long lastModified) {
+            this.fileName = fileName;
+            this.jar = jar;
+            this.entry = entry;
+            this.crc = crc;
+            this.size = size;
+            this.accepted = accepted;
+            this.lastModified = lastModified;
+        }
+
+        String getKey() {
+            return jar + "!" + entry;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import com.gluonhq.substrate.Constants;
+
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed cache of the object files created by native-image, shared
+ * by all the projects of the user.
+ *
+ * Each entry is a folder named after the hash of the compile inputs, see
+ * {@link BuildFingerprint#getHash()}. Entries are written to a temporary folder
+ * and moved in place atomically, so concurrent builds never see partial entries.
+ * The last modified time of an entry is updated when it is used, and the least
+ * recently used entries are removed when the cache exceeds its maximum size.
+ *
+ * The maximum size in MB can be set with the system property <code>objectcachesize</code>,
+ * a value of 0 disables the cache.
+ */
+public class ObjectCache {
+
+    private static final String TMP_PREFIX = ".tmp-";
+
+    private final Path root;
+    private final long maxSize;
+
+    /**
+     * Creates a cache stored at the given folder
+     * @param root the folder of the cache
+     * @param maxSize the maximum size in bytes of all the entries, 0 to disable the cache
+     */
+    public ObjectCache(Path root, long maxSize) {
+        this.root = Objects.requireNonNull(root);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the cache of the current user, under {@link Constants#USER_SUBSTRATE_PATH}
+     * @return the object cache
+     */
+    public static ObjectCache getUserCache() {
+        long sizeMB = Long.getLong("objectcachesize", Constants.DEFAULT_OBJECT_CACHE_SIZE_MB);
+        return new ObjectCache(Constants.USER_SUBSTRATE_PATH.resolve(Constants.OBJECT_CACHE_FOLDER),
+                Math.max(0, sizeMB) * 1024 * 1024);
+    }
+
+    /**
+     * Returns true if the cache can be used
+     * @return true if the maximum size is greater than 0
+     */
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * Checks if there is an entry with the given key, without using it
+     * @param key the hash of the inputs that created the files
+     * @return true if the entry exists
+     */
+    public boolean contains(String key) {
+        return isEnabled() && Files.isDirectory(root.resolve(Objects.requireNonNull(key)));
+    }
+
+    /**
+     * Copies the files of the entry with the given key into the target folder.
+     * @param key the hash of the inputs that created the files
+     * @param targetDir the folder where the files will be copied
+     * @return the list of copied files, or an empty list if the entry doesn't exist
+     * @throws IOException if the target folder can't be created
+     */
+    public List<Path> fetch(String key, Path targetDir) throws IOException {
+        Path entry = root.resolve(Objects.requireNonNull(key));
+        if (!isEnabled() || !Files.isDirectory(entry)) {
+            return List.of();
+        }
+        Files.createDirectories(targetDir);
+        List<Path> copied = new ArrayList<>();
+        try {
+            for (Path file : listEntryFiles(entry)) {
+                copied.add(Files.copy(file, targetDir.resolve(file.getFileName().toString()),
+                        StandardCopyOption.REPLACE_EXISTING));
+            }
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // the entry was evicted by another build while copying it
+            Logger.logDebug("Error fetching " + key + " from object cache: " + e.getMessage());
+            for (Path file : copied) {
+                Files.deleteIfExists(file);
+            }
+            return List.of();
+        }
+        Logger.logDebug("Fetched " + copied.size() + " files from object cache entry " + key);
+        return copied;
+    }
+
+    /**
+     * Stores a copy of the given files in a new entry. If the entry already
+     * exists, the existing files are kept. Stores never fail the build: errors are
+     * logged and ignored.
+     * @param key the hash of the inputs that created the files
+     * @param files the files to store
+     */
+    public void store(String key, List<Path> files) {
+        if (!isEnabled()) {
+            return;
+        }
+        Path entry = root.resolve(Objects.requireNonNull(key));
+        Path tmpEntry = root.resolve(TMP_PREFIX + UUID.randomUUID());
+        try {
+            if (Files.isDirectory(entry)) {
+                Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+                return;
+            }
+            Files.createDirectories(tmpEntry);
+            for (Path file : files) {
+                Files.copy(file, tmpEntry.resolve(file.getFileName().toString()));
+            }
+            try {
+                Files.move(tmpEntry, entry, StandardCopyOption.ATOMIC_MOVE);
+                Logger.logDebug("Stored " + files.size() + " files in object cache entry " + key);
+            } catch (FileSystemException e) {
+                // another build stored the same entry in the meantime
+                Logger.logDebug("Object cache entry " + key + " was not stored: " + e.getMessage());
+            }
+            evict();
+        } catch (IOException e) {
+            Logger.logDebug("Error storing " + key + " in object cache: " + e.getMessage());
+        } finally {
+            try {
+                FileOps.rmdir(tmpEntry);
+            } catch (IOException e) {
+                Logger.logDebug("Error removing " + tmpEntry + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Removes the least recently used entries until the total size of the cache
+     * is below its maximum size
+     * @throws IOException if the cache folder can't be listed
+     */
+    void evict() throws IOException {
+        List<Path> entries;
+        try (Stream<Path> stream = Files.list(root)) {
+            entries = stream.filter(Files::isDirectory)
+                    .filter(p -> !p.getFileName().toString().startsWith(TMP_PREFIX))
+                    .sorted(Comparator.comparing(ObjectCache::lastModified).reversed())
+                    .collect(Collectors.toList());
+        }
+        long total = 0;
+        for (Path entry : entries) {
+            total += size(entry);
+            if (total > maxSize) {
+                Logger.logDebug("Evicting object cache entry " + entry.getFileName());
+                try {
+                    FileOps.rmdir(entry);
+                } catch (IOException e) {
+                    Logger.logDebug("Error evicting " + entry + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static List<Path> listEntryFiles(Path entry) throws IOException {
+        try (Stream<Path> stream = Files.list(entry)) {
+            return stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static long size(Path entry) {
+        try {
+            long size = 0;
+            for (Path file : listEntryFiles(entry)) {
+                size += Files.size(file);
+            }
+            return size;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static FileTime lastModified(Path entry) {
+        try {
+            return Files.getLastModifiedTime(entry);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
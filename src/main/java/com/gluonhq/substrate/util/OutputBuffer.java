@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the last lines of the output of a process, up to a maximum number of
+ * lines, so the memory used doesn't depend on how verbose the process is.
+ * Optionally, every line is also written to a file.
+ */
+class OutputBuffer {
+
+    private final int maxLines;
+    private final ArrayDeque<String> lines = new ArrayDeque<>();
+    private long totalLines;
+    private Path spillFile;
+    private BufferedWriter spillWriter;
+
+    OutputBuffer(int maxLines) {
+        this.maxLines = Math.max(1, maxLines);
+    }
+
+    /**
+     * Writes every line that is added from now on to the given file
+     * @param file the file
+     * @throws IOException if the file can't be created
+     */
+    synchronized void spillTo(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        spillWriter = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        spillFile = file;
+    }
+
+    synchronized void add(String line) {
+        if (lines.size() == maxLines) {
+            lines.removeFirst();
+        }
+        lines.addLast(line);
+        totalLines++;
+        if (spillWriter != null) {
+            try {
+                spillWriter.write(line);
+                spillWriter.newLine();
+            } catch (IOException e) {
+                Logger.logDebug("Error writing process output to " + spillFile + ": " + e.getMessage());
+                close();
+            }
+        }
+    }
+
+    /**
+     * Flushes and closes the file, if any
+     */
+    synchronized void close() {
+        if (spillWriter != null) {
+            try {
+                spillWriter.close();
+            } catch (IOException e) {
+                Logger.logDebug("Error closing " + spillFile + ": " + e.getMessage());
+            }
+            spillWriter = null;
+        }
+    }
+
+    synchronized List<String> getLines() {
+        return new ArrayList<>(lines);
+    }
+
+    synchronized String getLastLine() {
+        return lines.isEmpty() ? null : lines.getLast();
+    }
+
+    synchronized long getTotalLines() {
+        return totalLines;
+    }
+
+    synchronized boolean isTruncated() {
+        return totalLines > lines.size();
+    }
+
+    /**
+     * @return the file with the whole output, or null if it is not written to a file
+     */
+    synchronized Path getSpillFile() {
+        return spillFile;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A regular expression that is evaluated against every line of the output
+ * of a process while it runs, see {@link ProcessRunner#addMatcher(Pattern)}.
+ *
+ * The groups of every line that matches are kept, so callers don't need to
+ * scan the output again once the process ends.
+ */
+public class OutputMatcher {
+
+    private final Pattern pattern;
+    private final List<List<String>> matches = Collections.synchronizedList(new ArrayList<>());
+
+    OutputMatcher(Pattern pattern) {
+        this.pattern = pattern;
+    }
+
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    /**
+     * @return true if at least one line of the output matched the pattern
+     */
+    public boolean isMatched() {
+        return !matches.isEmpty();
+    }
+
+    /**
+     * Returns the groups of the first line that matched the pattern, where
+     * the element at index 0 is the whole match, like {@link Matcher#group(int)}
+     * @return the list of groups, or an empty list if no line matched
+     */
+    public List<String> getGroups() {
+        synchronized (matches) {
+            return matches.isEmpty() ? List.of() : matches.get(0);
+        }
+    }
+
+    /**
+     * Returns the groups of every line that matched the pattern, in order
+     * @return a list with the groups of each match
+     */
+    public List<List<String>> getMatches() {
+        synchronized (matches) {
+            return new ArrayList<>(matches);
+        }
+    }
+
+    void match(String line) {
+        Matcher matcher = pattern.matcher(line);
+        if (matcher.find()) {
+            List<String> groups = new ArrayList<>(matcher.groupCount() + 1);
+            for (int i = 0; i <= matcher.groupCount(); i++) {
+                groups.add(matcher.group(i));
+            }
+            matches.add(Collections.unmodifiableList(groups));
+        }
+    }
+
+    void reset() {
+        matches.clear();
+    }
+}
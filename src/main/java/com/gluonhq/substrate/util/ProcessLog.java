@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import com.gluonhq.substrate.Constants;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Log file of a process, with the command line, the output and the result.
+ * The output is written to the file as it is read, so the log is available
+ * even if the build ends abruptly.
+ *
+ * Older log files in the same folder are compressed, and eventually removed,
+ * see {@link #rotate(Path, int, int)}. Files that are still open are never rotated. The number of files can be set with the
+ * system properties <code>processlogs</code> and <code>compressedprocesslogs</code>.
+ */
+class ProcessLog {
+
+    private static final String PREFIX = "process-";
+    private static final String SUFFIX = ".log";
+    private static final String GZ_SUFFIX = ".log.gz";
+    private static final long FLUSH_INTERVAL_MILLIS = 1000;
+
+    // number of files created in each folder since it was rotated
+    private static final Map<Path, AtomicInteger> CREATED_FILES = new ConcurrentHashMap<>();
+    // files of this JVM that are still being written
+    private static final Set<Path> OPEN_FILES = ConcurrentHashMap.newKeySet();
+
+    private final Path file;
+    private BufferedWriter writer;
+    private long lastFlush;
+
+    private ProcessLog(Path file, BufferedWriter writer) {
+        this.file = file;
+        this.writer = writer;
+        this.lastFlush = System.currentTimeMillis();
+    }
+
+    /**
+     * Creates a new log file, and writes its header
+     * @param dir the log folder
+     * @param processName the name of the process
+     * @param cmd the command line of the process
+     * @return the process log
+     * @throws IOException if the file can't be created
+     */
+    static ProcessLog create(Path dir, String processName, String cmd) throws IOException {
+        Files.createDirectories(dir);
+        String name = PREFIX + processName.replaceAll("[^A-Za-z0-9._-]", "_") + "-" + System.currentTimeMillis();
+        Path file = dir.resolve(name + SUFFIX).toAbsolutePath();
+        BufferedWriter writer = null;
+        for (int i = 1; writer == null; i++) {
+            // registered before the file exists, so a concurrent rotation can't pick it
+            OPEN_FILES.add(file);
+            try {
+                writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            } catch (FileAlreadyExistsException e) {
+                OPEN_FILES.remove(file);
+                file = dir.resolve(name + "-" + i + SUFFIX).toAbsolutePath();
+            } catch (IOException | RuntimeException e) {
+                OPEN_FILES.remove(file);
+                throw e;
+            }
+        }
+        ProcessLog log = new ProcessLog(file, writer);
+        log.write("Process\n=======\n" + processName + "\n\n" +
+                "Command Line\n============\n" + cmd + "\n\n" +
+                "Output\n======");
+        if (CREATED_FILES.computeIfAbsent(dir, d -> new AtomicInteger()).getAndIncrement() % getMaxLogs() == 0) {
+            CompletableFuture.runAsync(() -> rotate(dir, getMaxLogs(),
+                    Integer.getInteger("compressedprocesslogs", Constants.DEFAULT_COMPRESSED_PROCESS_LOGS)));
+        }
+        return log;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * Writes a line of the output of the process
+     * @param line the line
+     */
+    synchronized void write(String line) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.write(line);
+            writer.newLine();
+            long now = System.currentTimeMillis();
+            if (now - lastFlush > FLUSH_INTERVAL_MILLIS) {
+                writer.flush();
+                lastFlush = now;
+            }
+        } catch (IOException e) {
+            Logger.logDebug("Error writing to " + file + ": " + e.getMessage());
+            close();
+        }
+    }
+
+    /**
+     * Writes the result of the process, and closes the file
+     * @param result the result of the process
+     * @param usage the resources used by the process, or null if they are not known
+     */
+    synchronized void finish(String result, ProcessUsage usage) {
+        write("\n\nResult\n======\n" + result);
+        if (usage != null) {
+            write("\nResources\n=========\n" + usage);
+        }
+        close();
+    }
+
+    void delete() {
+        close();
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            Logger.logDebug("Error removing " + file + ": " + e.getMessage());
+        }
+    }
+
+    private synchronized void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                Logger.logDebug("Error closing " + file + ": " + e.getMessage());
+            }
+            writer = null;
+            OPEN_FILES.remove(file);
+        }
+    }
+
+    /**
+     * Compresses the log files of a folder, except for the most recent ones
+     * and the ones that are still open, and removes the oldest compressed files
+     * @param dir the log folder
+     * @param maxLogs the number of log files that are not compressed
+     * @param maxCompressedLogs the number of compressed log files that are kept
+     */
+    static void rotate(Path dir, int maxLogs, int maxCompressedLogs) {
+        try {
+            List<Path> logs = listByAge(dir, SUFFIX);
+            for (Path log : logs.subList(Math.min(maxLogs, logs.size()), logs.size())) {
+                if (!OPEN_FILES.contains(log.toAbsolutePath())) {
+                    compress(log);
+                }
+            }
+            List<Path> compressedLogs = listByAge(dir, GZ_SUFFIX);
+            for (Path log : compressedLogs.subList(Math.min(maxCompressedLogs, compressedLogs.size()), compressedLogs.size())) {
+                Files.deleteIfExists(log);
+            }
+        } catch (IOException e) {
+            Logger.logDebug("Error rotating process logs in " + dir + ": " + e.getMessage());
+        }
+    }
+
+    private static int getMaxLogs() {
+        return Math.max(1, Integer.getInteger("processlogs", Constants.DEFAULT_PROCESS_LOGS));
+    }
+
+    private static List<Path> listByAge(Path dir, String suffix) throws IOException {
+        try (Stream<Path> stream = Files.list(dir)) {
+            return stream.filter(p -> p.getFileName().toString().startsWith(PREFIX))
+                    .filter(p -> p.getFileName().toString().endsWith(suffix))
+                    .sorted(Comparator.comparing(ProcessLog::lastModified).reversed())
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static void compress(Path log) throws IOException {
+        Path gz = log.resolveSibling(log.getFileName() + ".gz");
+        Path tmp = log.resolveSibling(log.getFileName() + ".gz.tmp");
+        try (InputStream is = Files.newInputStream(log);
+             OutputStream os = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+            is.transferTo(os);
+        }
+        Files.setLastModifiedTime(tmp, lastModified(log));
+        Files.move(tmp, gz, StandardCopyOption.REPLACE_EXISTING);
+        Files.delete(log);
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The result of a process started with {@link ProcessRunner#start(String)}
+ */
+public class ProcessResult {
+
+    private final String processName;
+    private final List<String> command;
+    private final int exitValue;
+    private final List<String> output;
+    private final long totalLines;
+    private final Path outputFile;
+    private final long durationMillis;
+    private final String fatalLine;
+    private final ProcessUsage usage;
+
+    ProcessResult(String processName, List<String> command, int exitValue, List<String> output,
+                  long totalLines, Path outputFile, long durationMillis, String fatalLine,
+                  ProcessUsage usage) {
+        this.processName = processName;
+        this.command = List.copyOf(command);
+        this.exitValue = exitValue;
+        this.output = List.copyOf(output);
+        this.totalLines = totalLines;
+        this.outputFile = outputFile;
+        this.durationMillis = durationMillis;
+        this.fatalLine = fatalLine;
+        this.usage = usage;
+    }
+
+    public String getProcessName() {
+        return processName;
+    }
+
+    public List<String> getCommand() {
+        return command;
+    }
+
+    /**
+     * @return 0 if the process ended successfully, non-zero values indicate a failure
+     */
+    public int getExitValue() {
+        return exitValue;
+    }
+
+    /**
+     * Returns the output of the process. If the process printed more lines than the maximum
+     * set with {@link ProcessRunner#setMaxOutputLines(int)}, only the last lines are kept.
+     * @return the list of lines
+     */
+    public List<String> getOutput() {
+        return output;
+    }
+
+    /**
+     * @return true if the first lines of the output were not kept
+     */
+    public boolean isTruncated() {
+        return totalLines > output.size();
+    }
+
+    /**
+     * @return the number of lines printed by the process
+     */
+    public long getTotalLines() {
+        return totalLines;
+    }
+
+    /**
+     * @return the file with the whole output, if {@link ProcessRunner#setSpillOutput(boolean)} was set, or null
+     */
+    public Path getOutputFile() {
+        return outputFile;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * @return the line that matched a fatal pattern, if the process was aborted, or null
+     */
+    public String getFatalLine() {
+        return fatalLine;
+    }
+
+    /**
+     * @return the resources used by the process and its descendants, or null if they are not available on this system
+     */
+    public ProcessUsage getUsage() {
+        return usage;
+    }
+
+    @Override
+    public String toString() {
+        return "ProcessResult{" + processName + ", exitValue=" + exitValue + ", lines=" + totalLines +
+                ", duration=" + durationMillis + " ms}";
+    }
+}
@@ -32,7 +32,6 @@ import com.gluonhq.substrate.Constants;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -44,8 +43,18 @@ import java.util.List;
 import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 /**
  * Utility class to run processes based on command line arguments
@@ -54,13 +63,32 @@ import java.util.concurrent.TimeUnit;
  */
 public class ProcessRunner {
 
+    private static final int DEFAULT_MAX_OUTPUT_LINES = 10_000;
+    private static final long DESTROY_TIMEOUT_SECONDS = 10;
+
+    // drains the output of all the processes
+    private static final ExecutorService OUTPUT_EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "substrate-process-output");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private final List<String> args = new ArrayList<>();
     private final Map<String, String> map;
-    private StringBuffer answer;
+    private OutputBuffer output;
+    private volatile Process process;
+    private CancellationToken cancellationToken;
+    private int maxOutputLines = Integer.getInteger("processoutputlines", DEFAULT_MAX_OUTPUT_LINES);
+    private boolean spillOutput;
     private boolean info;
     private boolean logToFile;
     private Path processLogPath;
     private boolean interactive;
+    private final List<Consumer<String>> lineConsumers = new ArrayList<>();
+    private final List<OutputMatcher> matchers = new ArrayList<>();
+    private final List<Pattern> fatalPatterns = new ArrayList<>();
+    private boolean defaultFatalPatterns = true;
+    private volatile String fatalLine;
 
     /**
      * Constructor, allowing some command line arguments
@@ -68,7 +96,7 @@ public class ProcessRunner {
      */
     public ProcessRunner(String... args) {
         this.args.addAll(Arrays.asList(args));
-        this.answer = new StringBuffer();
+        this.output = new OutputBuffer(maxOutputLines);
         this.map = new HashMap<>();
     }
 
@@ -100,6 +128,100 @@ public class ProcessRunner {
     public void setLogToFile(boolean logToFile) {
         this.logToFile = logToFile;
     }
+
+    /**
+     * Sets the maximum number of lines of the output that are kept in memory.
+     * When the process prints more lines, only the last ones are kept. By default,
+     * it is 10000, or the value of the system property <code>processoutputlines</code>
+     * @param maxOutputLines the maximum number of lines
+     */
+    public void setMaxOutputLines(int maxOutputLines) {
+        this.maxOutputLines = maxOutputLines;
+    }
+
+    /**
+     * When set to true, the whole output of the process is also written to
+     * a file in the log folder, that is available from {@link ProcessResult#getOutputFile()}.
+     * By default is false
+     * @param spillOutput if true, the output is written to a file
+     */
+    public void setSpillOutput(boolean spillOutput) {
+        this.spillOutput = spillOutput;
+    }
+
+    /**
+     * Adds a consumer that receives every line of the output of the
+     * process, as soon as it is read
+     * @param consumer the consumer of the lines
+     */
+    public void addLineConsumer(Consumer<String> consumer) {
+        lineConsumers.add(consumer);
+    }
+
+    /**
+     * Adds a regular expression that is evaluated against every line of the
+     * output of the process, as soon as it is read. The returned matcher keeps
+     * the groups of the lines that matched, and it is reset every time the
+     * process runs.
+     * @param pattern the regular expression, found anywhere in the line
+     * @return the matcher with the results
+     */
+    public OutputMatcher addMatcher(Pattern pattern) {
+        OutputMatcher matcher = new OutputMatcher(pattern);
+        matchers.add(matcher);
+        return matcher;
+    }
+
+    /**
+     * Adds a regular expression that is evaluated against every line of the
+     * output of the process, see {@link #addMatcher(Pattern)}
+     * @param regex the regular expression, found anywhere in the line
+     * @return the matcher with the results
+     */
+    public OutputMatcher addMatcher(String regex) {
+        return addMatcher(Pattern.compile(regex));
+    }
+
+    /**
+     * Adds a pattern that, when it is found in a line of the output, means that
+     * the process is going to fail. The process and its descendants are destroyed
+     * right away, and the line is logged as the cause of the failure.
+     * Known tools, like native-image and aapt, already
+     * have default patterns, see {@link FatalPatterns}.
+     * @param pattern the regular expression, found anywhere in the line
+     */
+    public void addFatalPattern(Pattern pattern) {
+        fatalPatterns.add(pattern);
+    }
+
+    /**
+     * When set to false, the default {@link FatalPatterns} for the command are
+     * not used, only the patterns added with {@link #addFatalPattern(Pattern)}.
+     * By default is true
+     * @param defaultFatalPatterns if false, the default patterns are not used
+     */
+    public void setDefaultFatalPatterns(boolean defaultFatalPatterns) {
+        this.defaultFatalPatterns = defaultFatalPatterns;
+    }
+
+    /**
+     * Returns the line that matched a fatal pattern during the last run
+     * @return the line, or null if the process was not aborted
+     */
+    public String getFatalLine() {
+        return fatalLine;
+    }
+
+    /**
+     * Sets the token that cancels the process. When it is cancelled, the process
+     * and all its descendants are destroyed. By default, the token that is active
+     * in the thread that starts the process is used, see {@link CancellationToken#current()}
+     * @param cancellationToken the token
+     */
+    public void setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
     /**
      * Adds a command line argument to the list of existing list of
      * command line arguments
@@ -176,19 +298,7 @@ public class ProcessRunner {
      * @throws InterruptedException
      */
     public int runProcess(String processName, File workingDirectory) throws IOException, InterruptedException {
-        Process p = setupProcess(processName, workingDirectory);
-
-        Thread logThread = mergeProcessOutput(p.getInputStream());
-        int result = p.waitFor();
-        logThread.join();
-        Logger.logDebug("Result for " + processName + ": " + result);
-        if (result != 0) {
-            Logger.logSevere("Process " + processName + " failed with result: " + result);
-        }
-        if (logToFile || result != 0) {
-            logProcess(processName, "result: " + result, result != 0);
-        }
-        return result;
+        return await(start(processName, workingDirectory)).getExitValue();
     }
 
     /**
@@ -216,18 +326,156 @@ public class ProcessRunner {
      * @throws InterruptedException
      */
     public boolean runTimedProcess(String processName, File workingDirectory, long timeout) throws IOException, InterruptedException {
-        Process p = setupProcess(processName, workingDirectory);
-        Thread logThread = mergeProcessOutput(p.getInputStream());
-        boolean result = p.waitFor(timeout, TimeUnit.SECONDS);
-        logThread.join();
-        Logger.logDebug("Result for " + processName + ": " + result);
-        if (!result) {
-            Logger.logSevere("Process " + processName + " failed with result: " + result);
+        CompletableFuture<ProcessResult> future = start(processName, workingDirectory);
+        try {
+            future.get(timeout, TimeUnit.SECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            Logger.logSevere("Process " + processName + " didn't end after " + timeout + " seconds, destroying it");
+            destroyTree(process.toHandle());
+            try {
+                // wait for the output and the log of the process
+                future.get(DESTROY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (ExecutionException | TimeoutException ex) {
+                Logger.logDebug("Process " + processName + " ended with: " + ex);
+            }
+            return false;
+        } catch (ExecutionException e) {
+            throw toIOException(e);
+        }
+    }
+
+    /**
+     * Starts a process with a given set of command line arguments, and returns
+     * without waiting for it to end.
+     *
+     * @param processName the name of the process
+     * @return a future that completes with the result of the process when it ends
+     * @throws IOException if the process can't be started
+     */
+    public CompletableFuture<ProcessResult> start(String processName) throws IOException {
+        return start(processName, null);
+    }
+
+    /**
+     * Starts a process with a given set of command line arguments, in a given
+     * working directory, and returns without waiting for it to end.
+     * The output of the process is read by a shared pool of threads, and only the
+     * last lines are kept in memory, see {@link #setMaxOutputLines(int)}.
+     *
+     * @param processName the name of the process
+     * @param workingDirectory a file with the working directory of the process
+     * @return a future that completes with the result of the process when it ends
+     * @throws IOException if the process can't be started
+     */
+    public CompletableFuture<ProcessResult> start(String processName, File workingDirectory) throws IOException {
+        CancellationToken token = cancellationToken != null ? cancellationToken : CancellationToken.current();
+        if (token != null) {
+            token.throwIfCancelled();
+        }
+        BuildUsage.StepScope step = BuildUsage.current();
+        OutputBuffer buffer = new OutputBuffer(maxOutputLines);
+        output = buffer;
+        matchers.forEach(OutputMatcher::reset);
+        fatalLine = null;
+        List<Pattern> fatal = new ArrayList<>(fatalPatterns);
+        if (defaultFatalPatterns && !args.isEmpty()) {
+            fatal.addAll(FatalPatterns.forCommand(args.get(0)));
+        }
+        if (spillOutput) {
+            buffer.spillTo(getProcessLogPath().resolve("process-" + processName.replaceAll("[^A-Za-z0-9._-]", "_") +
+                    "-" + UUID.randomUUID() + ".out"));
+        }
+        ProcessLog processLog = createLog(processName);
+        BuildTrace.Span span = BuildTrace.begin("process", processName);
+        long start = System.currentTimeMillis();
+        Process p;
+        try {
+            p = setupProcess(processName, workingDirectory);
+        } catch (IOException | RuntimeException e) {
+            buffer.close();
+            deleteSpillFile(buffer);
+            if (processLog != null) {
+                processLog.finish("failed to start: " + e.getMessage(), null);
+            }
+            throw e;
+        }
+        process = p;
+        ProcessStats stats = ProcessStats.start(p);
+        Runnable removeCancelListener = token == null ? () -> {} : token.onCancel(() -> {
+            Logger.logDebug("Destroying process " + processName + ": " + token.getReason());
+            destroyTree(p.toHandle());
+        });
+
+        CompletableFuture<Void> drain = CompletableFuture.runAsync(() -> drainOutput(p, buffer, processLog, fatal), OUTPUT_EXECUTOR);
+        return p.onExit()
+                .thenCombine(drain, (process, ignored) -> process.exitValue())
+                .whenComplete((exitValue, error) -> {
+                    removeCancelListener.run();
+                    stats.stop();
+                    buffer.close();
+                    closeSpan(span, stats, exitValue);
+                })
+                .thenApply(exitValue -> {
+                    Logger.logDebug("Result for " + processName + ": " + exitValue);
+                    ProcessUsage usage = stats.getUsage();
+                    if (usage != null) {
+                        Logger.logDebug("Resources used by " + processName + ": " + usage);
+                        if (step != null) {
+                            step.add(processName, usage);
+                        }
+                    }
+                    boolean cancelled = exitValue != 0 && token != null && token.isCancelled();
+                    if (cancelled) {
+                        Logger.logInfo("Process " + processName + " was cancelled: " + token.getReason());
+                    } else if (fatalLine != null) {
+                        Logger.logSevere("Process " + processName + " was aborted after this error:\n" + fatalLine);
+                    } else if (exitValue != 0) {
+                        Logger.logSevere("Process " + processName + " failed with result: " + exitValue);
+                    }
+                    if (processLog != null) {
+                        processLog.finish(cancelled ? "cancelled: " + token.getReason() :
+                                fatalLine != null ? "aborted with result " + exitValue + " after: " + fatalLine :
+                                "result: " + exitValue, usage);
+                        if (exitValue != 0) {
+                            Logger.logInfo("Logging process [" + processName + "] to file: " + processLog.getFile());
+                        } else if (logToFile) {
+                            Logger.logDebug("Logging process [" + processName + "] to file: " + processLog.getFile());
+                        } else {
+                            processLog.delete();
+                        }
+                    }
+                    if (cancelled) {
+                        throw new CancellationException("Process " + processName + " was cancelled: " + token.getReason());
+                    }
+                    return new ProcessResult(processName, args, exitValue, buffer.getLines(), buffer.getTotalLines(),
+                            spillOutput ? buffer.getSpillFile() : null, System.currentTimeMillis() - start, fatalLine, usage);
+                });
+    }
+
+    /**
+     * Waits for the result of a process started with {@link #start(String)}
+     */
+    private static ProcessResult await(CompletableFuture<ProcessResult> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw toIOException(e);
+        }
+    }
+
+    private static IOException toIOException(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+            return (IOException) cause;
         }
-        if (logToFile || !result) {
-            logProcess(processName, "result: " + result, !result);
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
         }
-        return result;
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IOException(cause);
     }
 
     /**
@@ -236,20 +484,19 @@ public class ProcessRunner {
      * @return a single string with the whole output of the process
      */
     public String getResponse() {
-        if (answer != null) {
-            return answer.toString().replace("\n", "");
-        }
-        return null;
+        return String.join("", output.getLines());
     }
 
     /**
-     * Gets the response of the process as list of lines
+     * Gets the response of the process as list of lines. If the process printed
+     * more lines than the maximum set with {@link #setMaxOutputLines(int)}, only
+     * the last lines are returned.
      *
      * @return a list with all the lines of the output
      */
     public List<String> getResponses() {
-        return answer == null ? null :
-                Arrays.asList(answer.toString().split("\n"));
+        List<String> lines = output.getLines();
+        return lines.isEmpty() ? List.of("") : lines;
     }
 
     /**
@@ -258,11 +505,8 @@ public class ProcessRunner {
      * @return a string with the last line of the output
      */
     public String getLastResponse() {
-        if (answer == null) {
-            return null;
-        }
-        String[] answers = answer.toString().split("\n");
-        return answers.length > 0 ? answers[answers.length - 1] : "";
+        String line = output.getLastLine();
+        return line == null ? "" : line;
     }
 
     /**
@@ -300,6 +544,7 @@ public class ProcessRunner {
     }
 
     private Process setupProcess(String processName, File directory) throws IOException {
+        BuildPlan.checkProcessAllowed(getCmd());
         ProcessBuilder pb = new ProcessBuilder(args);
         Logger.logDebug("PB Command for " +  processName + ": " + String.join(" ", pb.command()));
         pb.redirectErrorStream(true);
@@ -310,41 +555,111 @@ public class ProcessRunner {
             pb.directory(directory);
         }
         map.forEach((k, v) -> pb.environment().put(k, v));
-        answer.setLength(0);
         Logger.logDebug("Start process " + processName + "...");
         return pb.start();
     }
 
-    private Thread mergeProcessOutput(final InputStream is) {
-        Runnable r = () -> {
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(is))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    answer.append(line).append("\n");
-                    if (info) {
-                        Logger.logInfo("[SUB] " + line);
-                    } else {
-                        Logger.logDebug("[SUB] " + line);
-                    }
+    private void closeSpan(BuildTrace.Span span, ProcessStats stats, Integer exitValue) {
+        span.arg("cmd", getCmd()).arg("exitValue", exitValue);
+        ProcessUsage usage = stats.getUsage();
+        if (usage != null) {
+            span.arg("userTimeMs", usage.getUserTimeMillis())
+                    .arg("systemTimeMs", usage.getSystemTimeMillis())
+                    .arg("peakRssKb", usage.getPeakRssKb())
+                    .arg("readBytes", usage.getReadBytes())
+                    .arg("writtenBytes", usage.getWrittenBytes());
+        }
+        span.close();
+    }
+
+    private void drainOutput(Process process, OutputBuffer buffer, ProcessLog processLog, List<Pattern> fatal) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                buffer.add(line);
+                if (processLog != null) {
+                    processLog.write(line);
+                }
+                if (fatalLine == null && isFatal(fatal, line)) {
+                    fatalLine = line;
+                    Logger.logDebug("Fatal output found, destroying process: " + line);
+                    destroyTree(process.toHandle());
+                }
+                for (Consumer<String> consumer : lineConsumers) {
+                    consumer.accept(line);
+                }
+                for (OutputMatcher matcher : matchers) {
+                    matcher.match(line);
+                }
+                if (info) {
+                    Logger.logInfo("[SUB] " + line);
+                } else {
+                    Logger.logDebug("[SUB] " + line);
                 }
-            } catch (IOException ex) {
-                ex.printStackTrace();
             }
-        };
-        Thread thread = new Thread(r);
-        thread.start();
-        return thread;
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    private static boolean isFatal(List<Pattern> fatal, String line) {
+        for (Pattern pattern : fatal) {
+            if (pattern.matcher(line).find()) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
-     * Logs to a file the command line arguments, the whole output and the
-     * result of the process.
+     * Destroys a process and all its descendants, so no orphan keeps running,
+     * or keeps the output open. The descendants are found before the process
+     * is destroyed, as they are not reachable from it afterwards, but destroyed
+     * after it, so the process can't react to their end.
+     * @param process the process
+     */
+    static void destroyTree(ProcessHandle process) {
+        List<ProcessHandle> descendants = process.descendants().collect(Collectors.toList());
+        process.destroyForcibly();
+        descendants.forEach(ProcessHandle::destroyForcibly);
+    }
+
+    private static void deleteSpillFile(OutputBuffer buffer) {
+        Path file = buffer.getSpillFile();
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                Logger.logDebug("Error deleting " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Creates the log file of the process, where the command line arguments,
+     * the output and the result of the process are written while it runs.
+     * The file is removed if the process ends successfully, unless
+     * {@link #setLogToFile(boolean)} was set.
      * @param processName The name of the process
-     * @param result The result of the process
-     * @param failure true if the process failed
-     * @throws IOException
+     * @return the log, or null if there is no log folder and logging to file was not required
+     * @throws IOException if logging to file was required and the log can't be created
      */
-    private void logProcess(String processName, String result, boolean failure) throws IOException {
+    private ProcessLog createLog(String processName) throws IOException {
+        try {
+            return ProcessLog.create(getProcessLogPath(), processName, getCmd());
+        } catch (IOException e) {
+            if (logToFile) {
+                throw e;
+            }
+            Logger.logDebug("Process " + processName + " won't be logged to file: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private Path getProcessLogPath() throws IOException {
+        if (processLogPath == null && Logger.getLogDirectory() != null) {
+            processLogPath = Path.of(Logger.getLogDirectory());
+        }
         if (processLogPath == null) {
             Path buildPath = Path.of(System.getProperty("user.dir"),"target");
             if (!Files.exists(buildPath)) {
@@ -358,20 +673,7 @@ public class ProcessRunner {
         if (!Files.exists(processLogPath)) {
             Files.createDirectories(processLogPath);
         }
-        Path log = processLogPath.resolve("process-" + processName + "-" + System.currentTimeMillis() + ".log");
-        if (failure) {
-            Logger.logInfo("Logging process [" + processName + "] to file: " + log);
-        } else {
-            Logger.logDebug("Logging process [" + processName + "] to file: " + log);
-        }
-        Files.write(log, toString(processName, result).getBytes());
-    }
-
-    private String toString(String processName, String result) {
-        return "Process\n=======\n" + processName + "\n\n" +
-                "Command Line\n============\n" + getCmd() + "\n\n" +
-                "Output\n======\n" + answer.toString() + "\n\n" +
-                "Result\n======\n" + result;
+        return processLogPath;
     }
 
     /**
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Samples the CPU time, the resident memory and the storage I/O of a process
+ * and its descendants from <code>/proc</code>, on Linux. On other systems,
+ * no values are collected.
+ *
+ * The values are sampled periodically while the process runs, so the
+ * CPU time of very short processes, or the last moments of a process,
+ * might not be accounted. For the same reason, the peak resident memory is
+ * the highest total of the processes alive at one sample, which can miss
+ * short peaks between samples.
+ */
+class ProcessStats {
+
+    private static final Path PROC = Path.of("/proc");
+    private static final boolean SUPPORTED = Files.isDirectory(PROC.resolve("self"));
+    private static final long DEFAULT_CLOCK_TICKS_PER_SECOND = 100;
+    private static volatile long clockTicksPerSecond;
+    private static final long SAMPLE_PERIOD_MILLIS = 200;
+
+    private static final ScheduledExecutorService SAMPLER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "substrate-process-stats");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Process process;
+    private final Map<Long, Long> userTicks = new ConcurrentHashMap<>();
+    private final Map<Long, Long> systemTicks = new ConcurrentHashMap<>();
+    private final Map<Long, Long> readBytes = new ConcurrentHashMap<>();
+    private final Map<Long, Long> writtenBytes = new ConcurrentHashMap<>();
+    private volatile long peakRssKb;
+    private ScheduledFuture<?> future;
+
+    private ProcessStats(Process process) {
+        this.process = process;
+    }
+
+    /**
+     * Starts sampling the given process
+     * @param process the process
+     * @return the stats of the process, that are collected until {@link #stop()} is called
+     */
+    static ProcessStats start(Process process) {
+        ProcessStats stats = new ProcessStats(process);
+        if (SUPPORTED) {
+            stats.sample();
+            stats.future = SAMPLER.scheduleAtFixedRate(stats::sample, SAMPLE_PERIOD_MILLIS,
+                    SAMPLE_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        return stats;
+    }
+
+    /**
+     * Stops sampling the process
+     */
+    void stop() {
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * @return true if the values were sampled
+     */
+    boolean hasValues() {
+        return !userTicks.isEmpty();
+    }
+
+    /**
+     * @return the resources used by the process and its descendants, or null if no values were sampled
+     */
+    ProcessUsage getUsage() {
+        if (!hasValues()) {
+            return null;
+        }
+        long ticks = getClockTicksPerSecond();
+        return new ProcessUsage(sum(userTicks) * 1000 / ticks,
+                sum(systemTicks) * 1000 / ticks,
+                peakRssKb, sum(readBytes), sum(writtenBytes));
+    }
+
+    private static long sum(Map<Long, Long> values) {
+        return values.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * Returns USER_HZ, the unit of the times in <code>/proc/[pid]/stat</code>,
+     * as reported by <code>getconf CLK_TCK</code>. If it can't be queried,
+     * 100 is used, which is the value on all common architectures.
+     * @return the number of clock ticks per second
+     */
+    static long getClockTicksPerSecond() {
+        if (clockTicksPerSecond == 0) {
+            clockTicksPerSecond = parseClockTicks(queryClockTicks());
+        }
+        return clockTicksPerSecond;
+    }
+
+    static long parseClockTicks(String value) {
+        if (value != null) {
+            try {
+                long ticks = Long.parseLong(value.trim());
+                if (ticks > 0) {
+                    return ticks;
+                }
+            } catch (NumberFormatException e) {
+                // fall through
+            }
+        }
+        Logger.logDebug("Invalid CLK_TCK value: " + value + ", using " + DEFAULT_CLOCK_TICKS_PER_SECOND);
+        return DEFAULT_CLOCK_TICKS_PER_SECOND;
+    }
+
+    private static String queryClockTicks() {
+        try {
+            Process p = new ProcessBuilder("getconf", "CLK_TCK").redirectErrorStream(true).start();
+            try (InputStream is = p.getInputStream()) {
+                String output = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+                return p.waitFor(5, TimeUnit.SECONDS) && p.exitValue() == 0 ? output : null;
+            }
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private void sample() {
+        long rss = Stream.concat(Stream.of(process.toHandle()), process.descendants())
+                .mapToLong(handle -> sample(handle.pid()))
+                .sum();
+        peakRssKb = Math.max(peakRssKb, rss);
+    }
+
+    private long sample(long pid) {
+        Path dir = PROC.resolve(Long.toString(pid));
+        try {
+            String stat = Files.readString(dir.resolve("stat"));
+            // the command name can contain spaces and parentheses
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            userTicks.merge(pid, Long.parseLong(fields[11]), Math::max);
+            systemTicks.merge(pid, Long.parseLong(fields[12]), Math::max);
+            sampleIO(dir, pid);
+
+            // the peaks of each process (VmHWM) might not overlap, so only
+            // the current values can be added up
+            for (String line : Files.readAllLines(dir.resolve("status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+            return 0;
+        } catch (IOException | RuntimeException e) {
+            // the process ended
+            return 0;
+        }
+    }
+
+    private void sampleIO(Path dir, long pid) {
+        try {
+            for (String line : Files.readAllLines(dir.resolve("io"))) {
+                if (line.startsWith("read_bytes:")) {
+                    readBytes.merge(pid, Long.parseLong(line.substring(11).trim()), Math::max);
+                } else if (line.startsWith("write_bytes:")) {
+                    writtenBytes.merge(pid, Long.parseLong(line.substring(12).trim()), Math::max);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // the process ended, or the kernel doesn't provide I/O accounting
+        }
+    }
+}
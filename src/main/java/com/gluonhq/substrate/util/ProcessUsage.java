@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import java.util.Locale;
+
+/**
+ * The resources used by an external process and its descendants: CPU time,
+ * peak resident memory and bytes read from and written to storage.
+ * The values are only available on Linux, see {@link ProcessResult#getUsage()}.
+ */
+public class ProcessUsage {
+
+    static final ProcessUsage NONE = new ProcessUsage(0, 0, 0, 0, 0);
+
+    private final long userTimeMillis;
+    private final long systemTimeMillis;
+    private final long peakRssKb;
+    private final long readBytes;
+    private final long writtenBytes;
+
+    ProcessUsage(long userTimeMillis, long systemTimeMillis, long peakRssKb, long readBytes, long writtenBytes) {
+        this.userTimeMillis = userTimeMillis;
+        this.systemTimeMillis = systemTimeMillis;
+        this.peakRssKb = peakRssKb;
+        this.readBytes = readBytes;
+        this.writtenBytes = writtenBytes;
+    }
+
+    public long getUserTimeMillis() {
+        return userTimeMillis;
+    }
+
+    public long getSystemTimeMillis() {
+        return systemTimeMillis;
+    }
+
+    /**
+     * @return the CPU time, user and system
+     */
+    public long getCpuTimeMillis() {
+        return userTimeMillis + systemTimeMillis;
+    }
+
+    /**
+     * @return the peak of the resident memory of the process and its descendants together
+     */
+    public long getPeakRssKb() {
+        return peakRssKb;
+    }
+
+    public long getReadBytes() {
+        return readBytes;
+    }
+
+    public long getWrittenBytes() {
+        return writtenBytes;
+    }
+
+    /**
+     * Adds the usage of another process. Times and bytes are added, while the
+     * peak memory is the largest of both, as processes usually run one after the other.
+     * @param other the usage of the other process
+     * @return the usage of both processes
+     */
+    ProcessUsage plus(ProcessUsage other) {
+        return new ProcessUsage(userTimeMillis + other.userTimeMillis, systemTimeMillis + other.systemTimeMillis,
+                Math.max(peakRssKb, other.peakRssKb), readBytes + other.readBytes, writtenBytes + other.writtenBytes);
+    }
+
+    String toJson() {
+        return "{\"userTimeMs\": " + userTimeMillis + ", \"systemTimeMs\": " + systemTimeMillis +
+                ", \"peakRssKb\": " + peakRssKb + ", \"readBytes\": " + readBytes +
+                ", \"writtenBytes\": " + writtenBytes + "}";
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "CPU %.1f s (user %.1f s, system %.1f s), peak RSS %d MB, read %d MB, written %d MB",
+                getCpuTimeMillis() / 1000.0, userTimeMillis / 1000.0, systemTimeMillis / 1000.0,
+                peakRssKb / 1024, readBytes / (1024 * 1024), writtenBytes / (1024 * 1024));
+    }
+}
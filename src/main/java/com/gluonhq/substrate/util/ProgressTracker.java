@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tracks the progress of a native-image process, by parsing the lines that
+ * native-image prints when each of its phases ends, like:
+ *
+ * <pre>
+ * [helloworld:12345]    classlist:   2,345.67 ms,  0.96 GB
+ * </pre>
+ *
+ * The durations of the phases of successful builds are stored for each
+ * application and target, and used to estimate the progress and the remaining
+ * time of the next builds. Without previous builds, the progress is based on
+ * typical durations of the phases, and the remaining time is unknown.
+ */
+public class ProgressTracker implements Consumer<String> {
+
+    /**
+     * The phases of native-image, in order, with their typical part of the total time
+     */
+    static final Map<String, Double> PHASES;
+    static {
+        Map<String, Double> phases = new LinkedHashMap<>();
+        phases.put("classlist", 0.05);
+        phases.put("setup", 0.03);
+        phases.put("analysis", 0.40);
+        phases.put("universe", 0.02);
+        phases.put("compile", 0.40);
+        phases.put("image", 0.07);
+        phases.put("write", 0.03);
+        PHASES = Collections.unmodifiableMap(phases);
+    }
+
+    private static final Pattern PHASE_PATTERN = Pattern.compile("^\\[[^]]*]\\s+([a-z]+):\\s+([\\d,]+(?:\\.\\d+)?)\\s*ms");
+    // weight of the last build in the stored durations
+    private static final double HISTORY_WEIGHT = 0.5;
+    private static final long TICK_SECONDS = 5;
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "substrate-progress");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path historyFile;
+    private final List<ProgressListener> listeners;
+    private final Map<String, Long> expected;
+    private final boolean hasHistory;
+    private final Map<String, Long> completed = new LinkedHashMap<>();
+    private long start;
+    private long lastPhaseEnd;
+    private ScheduledFuture<?> ticker;
+
+    /**
+     * Creates a tracker
+     * @param historyFile the file with the durations of the previous builds of the same application and target
+     * @param listeners the listeners of the progress
+     */
+    public ProgressTracker(Path historyFile, List<ProgressListener> listeners) {
+        this.historyFile = historyFile;
+        this.listeners = new CopyOnWriteArrayList<>(listeners);
+        this.expected = readHistory(historyFile);
+        this.hasHistory = !expected.isEmpty();
+    }
+
+    /**
+     * Starts tracking, and notifies the listeners periodically until
+     * {@link #finish(boolean)} is called
+     */
+    public synchronized void start() {
+        start = System.currentTimeMillis();
+        lastPhaseEnd = start;
+        completed.clear();
+        ticker = TIMER.scheduleAtFixedRate(() -> notifyListeners(false), TICK_SECONDS, TICK_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Parses a line of the output of native-image
+     * @param line the line
+     */
+    @Override
+    public void accept(String line) {
+        Matcher matcher = PHASE_PATTERN.matcher(line);
+        if (!matcher.find() || !PHASES.containsKey(matcher.group(1))) {
+            return;
+        }
+        long duration = (long) Double.parseDouble(matcher.group(2).replace(",", ""));
+        synchronized (this) {
+            completed.put(matcher.group(1), duration);
+            lastPhaseEnd = System.currentTimeMillis();
+        }
+        notifyListeners(false);
+    }
+
+    /**
+     * Stops tracking. If the build succeeded, the durations of its phases
+     * are stored for the next builds.
+     *
+     * @param success true if native-image succeeded
+     */
+    public void finish(boolean success) {
+        synchronized (this) {
+            if (ticker != null) {
+                ticker.cancel(false);
+                ticker = null;
+            }
+            if (success && completed.keySet().containsAll(PHASES.keySet())) {
+                writeHistory();
+            }
+        }
+        notifyListeners(true);
+    }
+
+    /**
+     * Returns the current progress
+     * @return the progress
+     */
+    public synchronized Progress getProgress() {
+        long now = System.currentTimeMillis();
+        long elapsed = now - start;
+        String current = null;
+        double done = 0;
+        double total = 0;
+        for (String phase : PHASES.keySet()) {
+            double weight = getExpected(phase);
+            total += weight;
+            if (completed.containsKey(phase)) {
+                done += weight;
+            } else if (current == null) {
+                current = phase;
+                // the running phase counts until its expected duration
+                double running = hasHistory ? now - lastPhaseEnd : 0;
+                done += Math.min(running, weight * 0.95);
+            }
+        }
+        int percent = current == null ? 100 : (int) Math.min(99, Math.round(100 * done / total));
+        long eta = -1;
+        if (hasHistory) {
+            eta = current == null ? 0 : Math.max(0, (long) (total - done));
+        }
+        return new Progress(current, new ArrayList<>(completed.keySet()), percent, elapsed, eta, false);
+    }
+
+    private double getExpected(String phase) {
+        return hasHistory ? expected.getOrDefault(phase, 0L) : PHASES.get(phase);
+    }
+
+    private void notifyListeners(boolean finished) {
+        Progress progress = getProgress();
+        if (finished) {
+            progress = new Progress(progress.getPhase(), progress.getCompletedPhases(), progress.getPercent(),
+                    progress.getElapsedMillis(), progress.getEtaMillis(), true);
+        }
+        for (ProgressListener listener : listeners) {
+            try {
+                listener.onProgress(progress);
+            } catch (RuntimeException e) {
+                Logger.logDebug("Error in progress listener: " + e);
+            }
+        }
+    }
+
+    private static Map<String, Long> readHistory(Path historyFile) {
+        Map<String, Long> history = new LinkedHashMap<>();
+        if (historyFile == null || !Files.exists(historyFile)) {
+            return history;
+        }
+        Properties properties = new Properties();
+        try (InputStream is = Files.newInputStream(historyFile)) {
+            properties.load(is);
+            for (String phase : PHASES.keySet()) {
+                String value = properties.getProperty(phase);
+                if (value == null) {
+                    return new LinkedHashMap<>();
+                }
+                history.put(phase, Long.parseLong(value));
+            }
+        } catch (IOException | NumberFormatException e) {
+            Logger.logDebug("Error reading build history " + historyFile + ": " + e.getMessage());
+            return new LinkedHashMap<>();
+        }
+        return history;
+    }
+
+    private void writeHistory() {
+        if (historyFile == null) {
+            return;
+        }
+        Properties properties = new Properties();
+        completed.forEach((phase, duration) -> {
+            long value = hasHistory ?
+                    Math.round(HISTORY_WEIGHT * duration + (1 - HISTORY_WEIGHT) * expected.get(phase)) : duration;
+            properties.setProperty(phase, Long.toString(value));
+        });
+        try {
+            Files.createDirectories(historyFile.getParent());
+            try (OutputStream os = Files.newOutputStream(historyFile)) {
+                properties.store(os, "Durations of the native-image phases, in ms");
+            }
+        } catch (IOException e) {
+            Logger.logDebug("Error writing build history " + historyFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * The progress of a native-image process
+     */
+    public static class Progress {
+
+        private final String phase;
+        private final List<String> completedPhases;
+        private final int percent;
+        private final long elapsedMillis;
+        private final long etaMillis;
+        private final boolean finished;
+
+        Progress(String phase, List<String> completedPhases, int percent, long elapsedMillis, long etaMillis, boolean finished) {
+            this.phase = phase;
+            this.completedPhases = Collections.unmodifiableList(completedPhases);
+            this.percent = percent;
+            this.elapsedMillis = elapsedMillis;
+            this.etaMillis = etaMillis;
+            this.finished = finished;
+        }
+
+        /**
+         * @return the running phase, or null if all the phases ended
+         */
+        public String getPhase() {
+            return phase;
+        }
+
+        public List<String> getCompletedPhases() {
+            return completedPhases;
+        }
+
+        /**
+         * @return the estimated percent of the build that is done, between 0 and 100
+         */
+        public int getPercent() {
+            return percent;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * @return the estimated remaining time, or -1 if there are no previous builds
+         */
+        public long getEtaMillis() {
+            return etaMillis;
+        }
+
+        /**
+         * @return true if native-image ended
+         */
+        public boolean isFinished() {
+            return finished;
+        }
+
+        @Override
+        public String toString() {
+            return "Progress{phase=" + phase + ", percent=" + percent + ", elapsed=" + elapsedMillis +
+                    " ms, eta=" + etaMillis + " ms, finished=" + finished + '}';
+        }
+    }
+}
@@ -0,0 +1,416 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import com.gluonhq.substrate.Constants;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Sizes the heap and the number of threads of native-image, based on the
+ * physical memory, the cgroup limits of the container, if any, and the number
+ * of native-image processes started by Substrate that are already running on the host.
+ *
+ * It also limits the number of native-image processes that run at the same time
+ * from this JVM, when several targets are built concurrently, to the number of
+ * processes that can still get {@link #MIN_CONCURRENT_HEAP} of heap and
+ * {@link #MIN_CONCURRENT_THREADS} threads each. The limit can be set with the
+ * system property <code>maxnativeimages</code>.
+ *
+ * Every native-image process holds a lock on a file under
+ * <code>~/.gluon/substrate/builds</code> while it runs, so other builds, from any
+ * JVM, can count it. Files that are not locked belong to builds that ended
+ * abnormally, and are removed.
+ *
+ * The values are only added if the compiler arguments of the project don't set them.
+ */
+public class ResourceGovernor {
+
+    private static final long GB = 1024L * 1024 * 1024;
+    private static final long MIN_HEAP = GB;
+    private static final long MIN_RESERVED_MEMORY = GB;
+    // part of the memory of the native-image process that is used outside the heap
+    private static final double HEAP_RATIO = 0.8;
+    // resources that each native-image process needs, to run more than one at the same time
+    static final long MIN_CONCURRENT_HEAP = 4 * GB;
+    static final int MIN_CONCURRENT_THREADS = 4;
+
+    private static final long STALE_LOCK_MILLIS = 10_000;
+
+    private static final Path CGROUP = Path.of("/sys/fs/cgroup");
+
+    // lock files of this JVM, that must not be opened again: closing another
+    // channel of the same file would release the lock on some systems
+    private static final Set<Path> OWN_LOCK_FILES = ConcurrentHashMap.newKeySet();
+
+    private static final int MAX_PROCESSES = Integer.getInteger("maxnativeimages",
+            computeMaxProcesses(getAvailableMemory(), getAvailableProcessors()));
+    private static final Semaphore SEMAPHORE = new Semaphore(Math.max(1, MAX_PROCESSES), true);
+
+    private ResourceGovernor() {
+    }
+
+    /**
+     * Returns the maximum number of native-image processes that can run concurrently
+     * from this JVM
+     * @return a number greater than 0
+     */
+    public static int getMaxProcesses() {
+        return Math.max(1, MAX_PROCESSES);
+    }
+
+    /**
+     * Waits until a new native-image process can be started from this JVM, then
+     * registers it, and computes its limits.
+     * The returned lease has to be closed when the process ends.
+     *
+     * @return the lease of the process
+     * @throws IOException if the lock file can't be created
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public static Lease acquire() throws IOException, InterruptedException {
+        if (!SEMAPHORE.tryAcquire()) {
+            Logger.logInfo("Waiting for other native-image processes to finish (max " + getMaxProcesses() + ")");
+            SEMAPHORE.acquire();
+        }
+        try {
+            return register(SEMAPHORE::release);
+        } catch (IOException | RuntimeException e) {
+            SEMAPHORE.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Registers a new native-image process, without waiting, and computes its limits
+     *
+     * @param onClose an action to run when the lease is closed
+     * @return the lease of the process
+     * @throws IOException if the lock file can't be created
+     */
+    static Lease register(Runnable onClose) throws IOException {
+        Path dir = Constants.USER_SUBSTRATE_PATH.resolve(Constants.ACTIVE_BUILDS_FOLDER);
+        Files.createDirectories(dir);
+        Path file = dir.resolve("build-" + UUID.randomUUID() + ".lock");
+        // registered before the file exists, so other builds of this JVM never open it
+        OWN_LOCK_FILES.add(file);
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            FileLock lock = channel.lock();
+            channel.write(StandardCharsets.UTF_8.encode(String.valueOf(ProcessHandle.current().pid())));
+
+            int activeBuilds = 1 + countOtherBuilds(dir, file);
+            Limits limits = computeLimits(getAvailableMemory(), getAvailableProcessors(), activeBuilds);
+            return new Lease(file, channel, lock, limits, onClose);
+        } catch (IOException | RuntimeException e) {
+            if (channel != null) {
+                channel.close();
+            }
+            Files.deleteIfExists(file);
+            OWN_LOCK_FILES.remove(file);
+            throw e;
+        }
+    }
+
+    /**
+     * Computes how many native-image processes can run at the same time, so each one
+     * still gets the minimum heap and threads for concurrent processes
+     *
+     * @param memory the memory available on the host, in bytes, or a negative value if unknown
+     * @param processors the processors available on the host
+     * @return a number greater than 0
+     */
+    static int computeMaxProcesses(long memory, int processors) {
+        int processes = 1;
+        while (true) {
+            Limits limits = computeLimits(memory, processors, processes + 1);
+            if (limits.getThreads() < MIN_CONCURRENT_THREADS ||
+                    (memory > 0 && limits.getMaxHeap() < MIN_CONCURRENT_HEAP)) {
+                return processes;
+            }
+            processes++;
+        }
+    }
+
+    /**
+     * Computes the limits of a native-image process
+     *
+     * @param memory the memory available on the host, in bytes, or a negative value if unknown
+     * @param processors the processors available on the host
+     * @param activeBuilds the number of native-image processes, including the new one
+     * @return the limits of the new process
+     */
+    static Limits computeLimits(long memory, int processors, int activeBuilds) {
+        int builds = Math.max(1, activeBuilds);
+        long heap = -1;
+        if (memory > 0) {
+            long reserved = Math.max(MIN_RESERVED_MEMORY, memory / 8);
+            long perBuild = Math.max(0, memory - reserved) / builds;
+            heap = Math.max(MIN_HEAP, (long) (perBuild * HEAP_RATIO));
+        }
+        int threads = Math.max(1, processors / builds);
+        return new Limits(heap, threads, builds);
+    }
+
+    /**
+     * Returns the native-image arguments for the given limits, skipping the
+     * ones that are already set in the arguments of the project
+     *
+     * @param limits the limits of the process
+     * @param compilerArgs the arguments of the project
+     * @return a list of arguments, possibly empty
+     */
+    static List<String> getNativeImageArgs(Limits limits, List<String> compilerArgs) {
+        List<String> args = new ArrayList<>();
+        if (limits.getMaxHeap() > 0 && compilerArgs.stream().noneMatch(a -> a.startsWith("-J-Xmx"))) {
+            args.add("-J-Xmx" + (limits.getMaxHeap() / (1024 * 1024)) + "m");
+        }
+        if (compilerArgs.stream().noneMatch(a -> a.startsWith("-H:NumberOfThreads") || a.startsWith("--parallelism"))) {
+            args.add("-H:NumberOfThreads=" + limits.getThreads());
+        }
+        return args;
+    }
+
+    private static int countOtherBuilds(Path dir, Path own) {
+        int count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "build-*.lock")) {
+            for (Path file : files) {
+                if (file.equals(own)) {
+                    continue;
+                }
+                if (OWN_LOCK_FILES.contains(file) || isActive(file)) {
+                    count++;
+                }
+            }
+        } catch (IOException e) {
+            Logger.logDebug("Error counting the active builds: " + e.getMessage());
+        }
+        return count;
+    }
+
+    /**
+     * Checks if the lock file belongs to a running build, and removes it otherwise
+     */
+    private static boolean isActive(Path file) {
+        try {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                FileLock lock = channel.tryLock();
+                if (lock == null) {
+                    return true;
+                }
+                lock.release();
+            }
+            if (System.currentTimeMillis() - Files.getLastModifiedTime(file).toMillis() < STALE_LOCK_MILLIS) {
+                // just created, and not locked yet
+                return true;
+            }
+            Files.deleteIfExists(file);
+            return false;
+        } catch (IOException e) {
+            // removed, or locked on a system with mandatory locks
+            return Files.exists(file);
+        }
+    }
+
+    private static long getAvailableMemory() {
+        long physical;
+        try {
+            physical = ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+                    .getTotalPhysicalMemorySize();
+        } catch (ClassCastException e) {
+            physical = -1;
+        }
+        long cgroup = getCgroupMemoryLimit();
+        if (cgroup > 0 && (physical <= 0 || cgroup < physical)) {
+            return cgroup;
+        }
+        return physical;
+    }
+
+    private static int getAvailableProcessors() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        int cgroup = getCgroupProcessors();
+        return cgroup > 0 ? Math.min(processors, cgroup) : processors;
+    }
+
+    /**
+     * Reads the memory limit of the cgroup, v2 or v1
+     * @return the limit in bytes, or -1 if there is no limit
+     */
+    private static long getCgroupMemoryLimit() {
+        String v2 = readFirstLine(CGROUP.resolve("memory.max"));
+        if (v2 != null) {
+            return parseLong(v2);
+        }
+        long v1 = parseLong(readFirstLine(CGROUP.resolve("memory").resolve("memory.limit_in_bytes")));
+        // an unlimited cgroup v1 reports a value close to Long.MAX_VALUE
+        return v1 > 0 && v1 < Long.MAX_VALUE / 2 ? v1 : -1;
+    }
+
+    /**
+     * Reads the CPU quota of the cgroup, v2 or v1
+     * @return the number of processors, or -1 if there is no quota
+     */
+    private static int getCgroupProcessors() {
+        long quota, period;
+        String v2 = readFirstLine(CGROUP.resolve("cpu.max"));
+        if (v2 != null) {
+            String[] parts = v2.trim().split("\\s+");
+            quota = parseLong(parts[0]);
+            period = parts.length > 1 ? parseLong(parts[1]) : -1;
+        } else {
+            quota = parseLong(readFirstLine(CGROUP.resolve("cpu").resolve("cpu.cfs_quota_us")));
+            period = parseLong(readFirstLine(CGROUP.resolve("cpu").resolve("cpu.cfs_period_us")));
+        }
+        if (quota <= 0 || period <= 0) {
+            return -1;
+        }
+        return (int) Math.max(1, (quota + period - 1) / period);
+    }
+
+    private static String readFirstLine(Path file) {
+        try {
+            return Files.isReadable(file) ? Files.readAllLines(file).stream().findFirst().orElse(null) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static long parseLong(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            // "max"
+            return -1;
+        }
+    }
+
+    /**
+     * The limits of a native-image process
+     */
+    public static class Limits {
+
+        private final long maxHeap;
+        private final int threads;
+        private final int activeBuilds;
+
+        Limits(long maxHeap, int threads, int activeBuilds) {
+            this.maxHeap = maxHeap;
+            this.threads = threads;
+            this.activeBuilds = activeBuilds;
+        }
+
+        /**
+         * @return the maximum heap in bytes, or -1 if the memory of the host is unknown
+         */
+        public long getMaxHeap() {
+            return maxHeap;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public int getActiveBuilds() {
+            return activeBuilds;
+        }
+
+        @Override
+        public String toString() {
+            return "Limits{maxHeap=" + (maxHeap > 0 ? maxHeap / (1024 * 1024) + "MB" : "unknown") +
+                    ", threads=" + threads + ", activeBuilds=" + activeBuilds + '}';
+        }
+    }
+
+    /**
+     * The registration of a running native-image process
+     */
+    public static class Lease implements AutoCloseable {
+
+        private final Path file;
+        private final FileChannel channel;
+        private final FileLock lock;
+        private final Limits limits;
+        private final Runnable onClose;
+
+        private Lease(Path file, FileChannel channel, FileLock lock, Limits limits, Runnable onClose) {
+            this.file = file;
+            this.channel = channel;
+            this.lock = lock;
+            this.limits = limits;
+            this.onClose = onClose;
+        }
+
+        public Limits getLimits() {
+            return limits;
+        }
+
+        /**
+         * Returns the native-image arguments for the limits of this lease, skipping
+         * the ones that are already set in the arguments of the project
+         * @param compilerArgs the arguments of the project
+         * @return a list of arguments, possibly empty
+         */
+        public List<String> getNativeImageArgs(List<String> compilerArgs) {
+            return ResourceGovernor.getNativeImageArgs(limits, compilerArgs);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                lock.release();
+                channel.close();
+            } finally {
+                try {
+                    Files.deleteIfExists(file);
+                    OWN_LOCK_FILES.remove(file);
+                } finally {
+                    onClose.run();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,388 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A graph of build tasks. Each task declares the names of its inputs and its
+ * outputs, and a task depends on all the tasks that produce any of its inputs.
+ * Inputs that are not produced by any task are considered available.
+ *
+ * When the graph is executed, every task starts as soon as all its dependencies
+ * have finished, so independent tasks run concurrently. If a task fails, the
+ * tasks that depend on it are not executed, and the ones that are still running
+ * are cancelled.
+ *
+ * The tasks run with the {@link CancellationToken} and the {@link BuildUsage} step
+ * that are active in the thread that executes the graph, so the processes they start
+ * are destroyed when the build is cancelled, and their resources are added to that step.
+ */
+public class TaskGraph {
+
+    /**
+     * The work done by a task
+     */
+    @FunctionalInterface
+    public interface TaskAction {
+
+        /**
+         * Runs the task
+         * @return true if the task succeeded, false otherwise
+         * @throws Exception if the task failed with an exception
+         */
+        boolean run() throws Exception;
+    }
+
+    /**
+     * Thrown when a task of the graph fails
+     */
+    public static class TaskFailedException extends Exception {
+
+        private final String taskName;
+
+        TaskFailedException(String taskName, Throwable cause) {
+            super("Task " + taskName + " failed" + (cause == null ? "" : ": " + cause), cause);
+            this.taskName = taskName;
+        }
+
+        /**
+         * Returns the name of the first task that failed
+         * @return the name of the task
+         */
+        public String getTaskName() {
+            return taskName;
+        }
+    }
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final String name;
+    private final Map<String, Task> tasks = new LinkedHashMap<>();
+    private CancellationToken cancellationToken;
+
+    /**
+     * Creates an empty task graph
+     * @param name a name for the graph, used in the logs
+     */
+    public TaskGraph(String name) {
+        this.name = Objects.requireNonNull(name);
+    }
+
+    /**
+     * Adds a task to the graph
+     * @param name the unique name of the task
+     * @param inputs the names of the inputs of the task
+     * @param outputs the names of the outputs of the task
+     * @param action the work done by the task
+     * @return this task graph
+     * @throws IllegalArgumentException if there is already a task with the same name,
+     * or an output is already produced by another task
+     */
+    public TaskGraph addTask(String name, List<String> inputs, List<String> outputs, TaskAction action) {
+        Objects.requireNonNull(name);
+        if (tasks.containsKey(name)) {
+            throw new IllegalArgumentException("Task " + name + " was already added to " + this.name);
+        }
+        for (String output : outputs) {
+            tasks.values().stream()
+                    .filter(task -> task.outputs.contains(output))
+                    .findFirst()
+                    .ifPresent(task -> {
+                        throw new IllegalArgumentException("Output " + output + " is produced by " + task.name + " and " + name);
+                    });
+        }
+        tasks.put(name, new Task(name, inputs, outputs, Objects.requireNonNull(action)));
+        return this;
+    }
+
+    /**
+     * Sets the token that cancels the execution of the graph. By default, the token
+     * that is active in the thread that executes the graph is used, see {@link CancellationToken#current()}
+     * @param cancellationToken the token, or null
+     * @return this task graph
+     */
+    public TaskGraph setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+        return this;
+    }
+
+    /**
+     * Returns the names of the tasks that the given task depends on
+     * @param name the name of a task of this graph
+     * @return the names of the tasks that produce the inputs of that task
+     */
+    public Set<String> getDependencies(String name) {
+        Task task = Objects.requireNonNull(tasks.get(name), "Task " + name + " not found");
+        Set<String> dependencies = new LinkedHashSet<>();
+        for (Task other : tasks.values()) {
+            if (other != task && other.outputs.stream().anyMatch(task.inputs::contains)) {
+                dependencies.add(other.name);
+            }
+        }
+        return dependencies;
+    }
+
+    /**
+     * Runs all the tasks of the graph, on a new thread pool with one thread per task,
+     * and waits for them to finish
+     * @throws TaskFailedException if any task failed
+     * @throws InterruptedException if the thread is interrupted while waiting
+     * @throws java.util.concurrent.CancellationException if the build is cancelled
+     */
+    public void execute() throws TaskFailedException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, tasks.size()), r -> {
+            Thread thread = new Thread(r, "substrate-task-" + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            execute(executor);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs all the tasks of the graph on the given executor, and waits for them to finish.
+     * When a task fails, or the thread is interrupted, or the build is cancelled, the tasks
+     * that didn't start yet are skipped, and the ones that are running are interrupted
+     * and their processes destroyed. This method returns once they have all finished,
+     * so they can't interfere with what runs next.
+     * @param executor the executor
+     * @throws TaskFailedException if any task failed
+     * @throws InterruptedException if the thread is interrupted while waiting
+     * @throws java.util.concurrent.CancellationException if the build is cancelled
+     */
+    public void execute(ExecutorService executor) throws TaskFailedException, InterruptedException {
+        CancellationToken buildToken = cancellationToken != null ? cancellationToken : CancellationToken.current();
+        if (buildToken != null) {
+            buildToken.throwIfCancelled();
+        }
+        // the tasks run with a token of their own, that is cancelled with the build,
+        // but also when a task fails
+        CancellationToken graphToken = new CancellationToken(true);
+        Execution execution = new Execution(graphToken, BuildUsage.current());
+        Runnable removeCancelListener = buildToken == null ? () -> {} :
+                buildToken.onCancel(() -> graphToken.cancel(buildToken.getReason()));
+
+        Map<String, CompletableFuture<Void>> futures = new LinkedHashMap<>();
+        try {
+            for (String taskName : sortTasks()) {
+                Task task = tasks.get(taskName);
+                CompletableFuture<?>[] dependencies = getDependencies(taskName).stream()
+                        .map(futures::get)
+                        .toArray(CompletableFuture[]::new);
+                futures.put(taskName, CompletableFuture.allOf(dependencies)
+                        .thenRunAsync(() -> runTask(task, execution), executor));
+            }
+
+            CompletableFuture<Void> cancelled = new CompletableFuture<>();
+            Runnable removeGraphListener = graphToken.onCancel(() -> cancelled.complete(null));
+            try {
+                CompletableFuture.anyOf(CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new)),
+                        cancelled).get();
+            } catch (ExecutionException e) {
+                // the failure is recorded by the task
+            } finally {
+                removeGraphListener.run();
+            }
+        } catch (InterruptedException e) {
+            execution.abort("the build was interrupted");
+            throw e;
+        } finally {
+            removeCancelListener.run();
+            if (execution.isAborted()) {
+                futures.values().forEach(future -> future.cancel(false));
+                execution.awaitRunningTasks();
+            }
+        }
+
+        if (execution.failure != null) {
+            throw execution.failure;
+        }
+        if (buildToken != null) {
+            buildToken.throwIfCancelled();
+        }
+    }
+
+    private void runTask(Task task, Execution execution) {
+        if (!execution.started()) {
+            // the graph was aborted before the task started
+            return;
+        }
+        Logger.logDebug("[" + name + "] Starting task " + task.name);
+        long start = System.currentTimeMillis();
+        boolean success;
+        try (BuildTrace.Span span = BuildTrace.begin("task", name + ":" + task.name)) {
+            success = execution.token.call(() -> execution.step == null ?
+                    task.action.run() : execution.step.call(task.action::run));
+            span.arg("success", success);
+        } catch (Exception e) {
+            throw new CompletionException(execution.fail(new TaskFailedException(task.name, e)));
+        } finally {
+            execution.finished();
+        }
+        Logger.logDebug("[" + name + "] Task " + task.name + " finished in " + (System.currentTimeMillis() - start) + " ms");
+        if (!success) {
+            throw new CompletionException(execution.fail(new TaskFailedException(task.name, null)));
+        }
+    }
+
+    /**
+     * Sorts the tasks so every task comes after its dependencies
+     * @throws IllegalStateException if the graph has a cycle
+     */
+    private List<String> sortTasks() {
+        List<String> sorted = new ArrayList<>();
+        Set<String> visiting = new LinkedHashSet<>();
+        for (String taskName : tasks.keySet()) {
+            visit(taskName, visiting, sorted);
+        }
+        return sorted;
+    }
+
+    private void visit(String taskName, Set<String> visiting, List<String> sorted) {
+        if (sorted.contains(taskName)) {
+            return;
+        }
+        if (!visiting.add(taskName)) {
+            throw new IllegalStateException("Task graph " + name + " has a cycle: " + visiting);
+        }
+        for (String dependency : getDependencies(taskName)) {
+            visit(dependency, visiting, sorted);
+        }
+        visiting.remove(taskName);
+        sorted.add(taskName);
+    }
+
+    /**
+     * The state of one execution of the graph
+     */
+    private class Execution {
+        private final CancellationToken token;
+        private final BuildUsage.StepScope step;
+        private final Set<Thread> running = new HashSet<>();
+        private volatile TaskFailedException failure;
+
+        Execution(CancellationToken token, BuildUsage.StepScope step) {
+            this.token = token;
+            this.step = step;
+        }
+
+        /**
+         * Registers the current thread as running a task
+         * @return false if the graph is aborted, and the task must not run
+         */
+        synchronized boolean started() {
+            if (token.isCancelled()) {
+                return false;
+            }
+            running.add(Thread.currentThread());
+            return true;
+        }
+
+        void finished() {
+            synchronized (this) {
+                running.remove(Thread.currentThread());
+                notifyAll();
+            }
+            // an interrupt sent to abort this task must not reach the next task of the thread
+            Thread.interrupted();
+        }
+
+        /**
+         * Records the first failure of a task, and aborts the rest of the tasks
+         */
+        TaskFailedException fail(TaskFailedException e) {
+            synchronized (this) {
+                if (failure == null && !token.isCancelled()) {
+                    failure = e;
+                }
+            }
+            abort("task " + e.getTaskName() + " of " + name + " failed");
+            return e;
+        }
+
+        void abort(String reason) {
+            token.cancel(reason);
+            synchronized (this) {
+                running.forEach(Thread::interrupt);
+            }
+        }
+
+        boolean isAborted() {
+            return token.isCancelled();
+        }
+
+        /**
+         * Waits until the tasks that are running have finished, preserving
+         * the interrupted status of the current thread
+         */
+        synchronized void awaitRunningTasks() {
+            boolean interrupted = false;
+            while (!running.isEmpty()) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class Task {
+        private final String name;
+        private final List<String> inputs;
+        private final List<String> outputs;
+        private final TaskAction action;
+
+        Task(String name, List<String> inputs, List<String> outputs, TaskAction action) {
+            this.name = name;
+            this.inputs = List.copyOf(inputs);
+            this.outputs = List.copyOf(outputs);
+            this.action = action;
+        }
+    }
+}
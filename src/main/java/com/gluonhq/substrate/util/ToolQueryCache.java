@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import com.gluonhq.substrate.Constants;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of the output of commands that only query the toolchain, like
+ * <code>gcc --version</code> or <code>xcrun --show-sdk-path</code>, shared by
+ * all the projects of the user.
+ *
+ * The key of an entry is the command line, together with the path, size and
+ * last modified time of the executable and of any other file the answer depends on,
+ * so an entry is not used anymore when the toolchain changes. Only successful
+ * answers are stored. Entries are kept in memory, and in files that are moved in
+ * place atomically, and expire after a number of days.
+ *
+ * The number of days can be set with the system property <code>toolquerycachedays</code>,
+ * a value of 0 disables the cache.
+ */
+public class ToolQueryCache {
+
+    private static final String TMP_PREFIX = ".tmp-";
+    private static final Map<String, Entry> MEMORY_CACHE = new ConcurrentHashMap<>();
+
+    private final Path root;
+    private final long maxAgeMillis;
+
+    /**
+     * Creates a cache stored at the given folder
+     * @param root the folder of the cache
+     * @param maxAgeMillis the time an entry is valid, 0 to disable the cache
+     */
+    public ToolQueryCache(Path root, long maxAgeMillis) {
+        this.root = Objects.requireNonNull(root);
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Returns the cache of the current user, under {@link Constants#USER_SUBSTRATE_PATH}
+     * @return the tool query cache
+     */
+    public static ToolQueryCache getUserCache() {
+        int days = Integer.getInteger("toolquerycachedays", Constants.DEFAULT_TOOL_QUERY_CACHE_DAYS);
+        return new ToolQueryCache(Constants.USER_SUBSTRATE_PATH.resolve(Constants.TOOL_QUERY_CACHE_FOLDER),
+                TimeUnit.DAYS.toMillis(Math.max(0, days)));
+    }
+
+    /**
+     * Returns true if the cache can be used
+     * @return true if the maximum age is greater than 0
+     */
+    public boolean isEnabled() {
+        return maxAgeMillis > 0;
+    }
+
+    /**
+     * Returns the output of the command, running it only if there is no valid
+     * entry for it
+     * @param processName the name of the process
+     * @param command the command line
+     * @return the lines of the output, or null if the process failed
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public List<String> query(String processName, String... command) throws IOException, InterruptedException {
+        return query(processName, List.of(), command);
+    }
+
+    /**
+     * Returns the output of the command, running it only if there is no valid
+     * entry for it
+     * @param processName the name of the process
+     * @param dependencies other files that the output depends on, besides the executable
+     * @param command the command line
+     * @return the lines of the output, or null if the process failed
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public List<String> query(String processName, List<Path> dependencies, String... command) throws IOException, InterruptedException {
+        return query(processName, List.of(), dependencies, command);
+    }
+
+    /**
+     * Returns the output of the command, running it only if there is no valid
+     * entry for it
+     * @param processName the name of the process
+     * @param environment the names of the environment variables that the output depends on
+     * @param dependencies other files that the output depends on, besides the executable
+     * @param command the command line
+     * @return the lines of the output, or null if the process failed
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public List<String> query(String processName, List<String> environment, List<Path> dependencies,
+                              String... command) throws IOException, InterruptedException {
+        String key = isEnabled() ? getKey(List.of(command), environment, dependencies) : null;
+        if (key != null) {
+            List<String> lines = fetch(key);
+            if (lines != null) {
+                Logger.logDebug("Using cached output for " + processName + ": " + String.join(" ", command));
+                return lines;
+            }
+        }
+        ProcessRunner runner = new ProcessRunner(command);
+        if (runner.runProcess(processName) != 0) {
+            return null;
+        }
+        List<String> lines = List.copyOf(runner.getResponses());
+        if (key != null) {
+            store(key, lines);
+        }
+        return lines;
+    }
+
+    /**
+     * Returns the output of the command as a single string, like
+     * {@link ProcessRunner#runProcessForSingleOutput(String, String...)}
+     * @param processName the name of the process
+     * @param dependencies other files that the output depends on, besides the executable
+     * @param command the command line
+     * @return a string with the output of the process, or null if it failed
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public String querySingleOutput(String processName, List<Path> dependencies, String... command) throws IOException, InterruptedException {
+        return querySingleOutput(processName, List.of(), dependencies, command);
+    }
+
+    /**
+     * Returns the output of the command as a single string, like
+     * {@link ProcessRunner#runProcessForSingleOutput(String, String...)}
+     * @param processName the name of the process
+     * @param environment the names of the environment variables that the output depends on
+     * @param dependencies other files that the output depends on, besides the executable
+     * @param command the command line
+     * @return a string with the output of the process, or null if it failed
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public String querySingleOutput(String processName, List<String> environment, List<Path> dependencies,
+                                    String... command) throws IOException, InterruptedException {
+        List<String> lines = query(processName, environment, dependencies, command);
+        return lines == null ? null : String.join("", lines);
+    }
+
+    /**
+     * Returns the key of a command
+     * @param command the command line
+     * @param environment the names of the environment variables that the output depends on
+     * @param dependencies other files that the output depends on
+     * @return the key, or null if the executable can't be found
+     */
+    String getKey(List<String> command, List<String> environment, List<Path> dependencies) {
+        Path executable = findExecutable(command.get(0));
+        if (executable == null) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder(String.join("\0", command));
+        key.append('\n').append(stamp(executable));
+        for (String name : environment) {
+            key.append('\n').append(name).append('=').append(Objects.toString(System.getenv(name), ""));
+        }
+        for (Path dependency : dependencies) {
+            key.append('\n').append(stamp(dependency));
+        }
+        return BuildFingerprint.hash(key.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<String> fetch(String key) {
+        long now = System.currentTimeMillis();
+        Entry entry = MEMORY_CACHE.get(root + ":" + key);
+        if (entry != null && now - entry.time < maxAgeMillis) {
+            return entry.lines;
+        }
+        Path file = root.resolve(key);
+        try {
+            if (!Files.isRegularFile(file)) {
+                return null;
+            }
+            long time = Files.getLastModifiedTime(file).toMillis();
+            if (now - time >= maxAgeMillis) {
+                Files.deleteIfExists(file);
+                return null;
+            }
+            List<String> lines = List.copyOf(Files.readAllLines(file, StandardCharsets.UTF_8));
+            MEMORY_CACHE.put(root + ":" + key, new Entry(lines, time));
+            return lines;
+        } catch (IOException e) {
+            Logger.logDebug("Error reading tool query cache entry " + key + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void store(String key, List<String> lines) {
+        MEMORY_CACHE.put(root + ":" + key, new Entry(lines, System.currentTimeMillis()));
+        Path tmpFile = root.resolve(TMP_PREFIX + UUID.randomUUID());
+        try {
+            Files.createDirectories(root);
+            Files.write(tmpFile, lines, StandardCharsets.UTF_8);
+            Files.move(tmpFile, root.resolve(key), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Logger.logDebug("Error storing tool query cache entry " + key + ": " + e.getMessage());
+            try {
+                Files.deleteIfExists(tmpFile);
+            } catch (IOException ex) {
+                Logger.logDebug("Error removing " + tmpFile + ": " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Finds the executable of a command, like the shell does
+     * @param name the name or path of the executable
+     * @return the path of the executable, or null if it can't be found
+     */
+    static Path findExecutable(String name) {
+        if (name.contains("/") || name.contains("\\")) {
+            Path path = Path.of(name);
+            return Files.isRegularFile(path) ? path : null;
+        }
+        String pathEnv = System.getenv("PATH");
+        if (pathEnv == null) {
+            return null;
+        }
+        List<String> names = new ArrayList<>(List.of(name));
+        String pathExt = System.getenv("PATHEXT");
+        if (pathExt != null) {
+            for (String ext : pathExt.split(";")) {
+                names.add(name + ext.toLowerCase(Locale.ROOT));
+            }
+        }
+        for (String dir : pathEnv.split(File.pathSeparator)) {
+            if (dir.isEmpty()) {
+                continue;
+            }
+            for (String candidate : names) {
+                Path path = Path.of(dir, candidate);
+                if (Files.isRegularFile(path) && Files.isExecutable(path)) {
+                    return path;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String stamp(Path path) {
+        try {
+            Path realPath = path.toRealPath();
+            return realPath + ":" + Files.size(realPath) + ":" + Files.getLastModifiedTime(realPath).toMillis();
+        } catch (IOException e) {
+            return path + ":missing";
+        }
+    }
+
+    private static class Entry {
+        private final List<String> lines;
+        private final long time;
+
+        Entry(List<String> lines, long time) {
+            this.lines = lines;
+            this.time = time;
+        }
+    }
+}
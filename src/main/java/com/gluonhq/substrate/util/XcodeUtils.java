@@ -5,6 +5,7 @@ import com.gluonhq.substrate.util.ios.NSDictionaryEx;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 import java.util.Locale;
 
 import static com.gluonhq.substrate.Constants.GLUON_SUBSTRATE;
@@ -32,7 +33,8 @@ public class XcodeUtils {
 
         private String getSdkDir(String name) {
             try {
-                return ProcessRunner.runProcessForSingleOutput("sdk", "xcrun", "--sdk", name, "--show-sdk-path");
+                return ToolQueryCache.getUserCache()
+                        .querySingleOutput("sdk", getXcodeDependencies(), "xcrun", "--sdk", name, "--show-sdk-path");
             } catch (IOException | InterruptedException e) {
                 Logger.logFatal(e, "Error retrieving sdk for " + name + ":" + e.getMessage());
             }
@@ -40,6 +42,8 @@ public class XcodeUtils {
         }
     }
 
+    private static final Path XCODE_SELECT_LINK = Path.of("/var/db/xcode_select_link");
+
     public static final Path XCODE_PRODUCTS_PATH = Paths.get(System.getProperty("user.home")).
             resolve("Library/Developer/Xcode/DerivedData/" + GLUON_SUBSTRATE + "/Build/Products/");
 
@@ -119,6 +123,18 @@ public class XcodeUtils {
     }
 
     public static String getCommandForSdk(String command, String sdk) throws IOException, InterruptedException {
-        return ProcessRunner.runProcessForSingleOutput("xcrun", "xcrun", "-sdk", sdk, "-f", command);
+        return ToolQueryCache.getUserCache()
+                .querySingleOutput("xcrun", getXcodeDependencies(), "xcrun", "-sdk", sdk, "-f", command);
+    }
+
+    /**
+     * xcrun answers for the Xcode selected with xcode-select, or with DEVELOPER_DIR
+     */
+    private static List<Path> getXcodeDependencies() {
+        String developerDir = System.getenv("DEVELOPER_DIR");
+        if (developerDir != null && !developerDir.isEmpty()) {
+            return List.of(XCODE_SELECT_LINK, Path.of(developerDir));
+        }
+        return List.of(XCODE_SELECT_LINK);
     }
 }
@@ -31,6 +31,7 @@ import com.gluonhq.substrate.model.InternalProjectConfiguration;
 import com.gluonhq.substrate.model.ProcessPaths;
 import com.gluonhq.substrate.util.FileOps;
 import com.gluonhq.substrate.util.Logger;
+import com.gluonhq.substrate.util.OutputMatcher;
 import com.gluonhq.substrate.util.ProcessRunner;
 import com.gluonhq.substrate.util.XcodeUtils;
 
@@ -46,8 +47,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
-import java.util.Objects;
-import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -242,18 +242,17 @@ public class CodeSigning {
         runner.addArg(appPath.toString());
         String codesignAllocate = XcodeUtils.getCommandForSdk("codesign_allocate", "iphoneos");
         runner.addToEnv(CODESIGN_ALLOCATE_ENV, codesignAllocate);
+        OutputMatcher keychainError = runner.addMatcher(Pattern.quote(KEYCHAIN_ERROR_MESSAGE));
         if (!runner.runTimedProcess("codesign", 30)) {
             Logger.logSevere("Codesign process failed");
             return false;
         }
-        for (String line : runner.getResponses()) {
-            if (line.contains(KEYCHAIN_ERROR_MESSAGE)) {
-                Logger.logInfo("Error signing the application: the keychain was locked.\nYou will be required now to unlock the keychain");
-                if (unlockKeychain()) {
-                    return sign(entitlementsPath, appPath);
-                }
-                return false;
+        if (keychainError.isMatched()) {
+            Logger.logInfo("Error signing the application: the keychain was locked.\nYou will be required now to unlock the keychain");
+            if (unlockKeychain()) {
+                return sign(entitlementsPath, appPath);
             }
+            return false;
         }
 
         if (!verifyCodesign(appPath)) {
@@ -302,12 +301,9 @@ public class CodeSigning {
     private boolean verifyCodesign(Path target) throws IOException, InterruptedException {
         Logger.logDebug("Validating codesign...");
         ProcessRunner runner = new ProcessRunner("codesign", "--verify", "-vvvv", target.toAbsolutePath().toString());
-        if (runner.runTimedProcess("verify", 5)) {
-            return runner.getResponses().stream()
-                    .anyMatch(line -> line.contains(CODESIGN_OK_1) ||
-                            line.contains(CODESIGN_OK_2) || line.contains(CODESING_OK_3));
-        }
-        return false;
+        OutputMatcher codesignOk = runner.addMatcher(Pattern.quote(CODESIGN_OK_1) + "|" +
+                Pattern.quote(CODESIGN_OK_2) + "|" + Pattern.quote(CODESING_OK_3));
+        return runner.runTimedProcess("verify", 5) && codesignOk.isMatched();
     }
 
     private NSDictionaryEx dictionary;
@@ -367,19 +363,12 @@ public class CodeSigning {
 
     public static List<Identity> retrieveAllIdentities() {
         ProcessRunner runner = new ProcessRunner("security", "find-identity", "-p", "codesigning", "-v");
+        OutputMatcher identityMatcher = runner.addMatcher(IDENTITY_PATTERN);
         try {
             if (runner.runProcess("security") == 0) {
-                return runner.getResponses().stream()
-                        .map(line -> IDENTITY_PATTERN.matcher(line.trim()))
-                        .filter(Matcher::find)
-                        .map(matcher -> {
-                            String flags = matcher.group(3);
-                            if (flags == null || !flags.startsWith(IDENTITY_ERROR_FLAG)) {
-                                return new Identity(matcher.group(1), matcher.group(2));
-                            }
-                            return null;
-                        })
-                        .filter(Objects::nonNull)
+                return identityMatcher.getMatches().stream()
+                        .filter(groups -> groups.get(3) == null || !groups.get(3).startsWith(IDENTITY_ERROR_FLAG))
+                        .map(groups -> new Identity(groups.get(1), groups.get(2)))
                         .sorted(Comparator.comparing(identity -> identity.getCommonName().toLowerCase(Locale.ROOT)))
                         .collect(Collectors.toList());
             }
@@ -29,6 +29,7 @@ package com.gluonhq.substrate.util.ios;
 
 import com.gluonhq.substrate.util.FileOps;
 import com.gluonhq.substrate.util.Logger;
+import com.gluonhq.substrate.util.OutputMatcher;
 import com.gluonhq.substrate.util.ProcessRunner;
 
 import java.io.IOException;
@@ -42,6 +43,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import static com.gluonhq.substrate.util.XcodeUtils.XCODE_PRODUCTS_PATH;
@@ -90,10 +92,15 @@ public class Deploy {
         }
 
         ProcessRunner runner = new ProcessRunner("otool", "-L", libiPath.get(0));
+        Map<String, OutputMatcher> linkMatchers = new HashMap<>();
+        for (String key : map.keySet()) {
+            linkMatchers.put(key, runner.addMatcher(map.get(key).stream()
+                    .map(Pattern::quote)
+                    .collect(Collectors.joining("|", "(?:", ")"))));
+        }
         if (runner.runProcess("otool") == 0) {
             for (String key : map.keySet()) {
-                if (runner.getResponses().stream()
-                        .noneMatch(link -> map.get(key).stream().anyMatch(link::contains))) {
+                if (map.get(key).isEmpty() || !linkMatchers.get(key).isMatched()) {
                     Logger.logSevere("Error: there is a mismatch in the dependency (" + key + ") required by libimobiledevice.dylib: " + map.get(key) + "is required but it wasn't found");
                     throw new RuntimeException("Open a terminal and run the following command to reinstall the required libraries: \n\n" +
                             "brew reinstall " + key);
@@ -128,14 +135,13 @@ public class Deploy {
             return new String[] {};
         }
         ProcessRunner runner = new ProcessRunner("ios-deploy", "-c");
+        OutputMatcher devices = runner.addMatcher("^\\[\\.\\.\\.\\.] Found (\\S*)");
         if (!runner.runTimedProcess("connected devices", 10L)) {
             Logger.logSevere("Error finding connected devices");
             return new String[] {};
         }
-        List<String> devices = runner.getResponses();
-        return devices.stream()
-                .filter(line -> line.startsWith("[....] Found"))
-                .map(line -> line.substring("[....] Found ".length()).split("\\s")[0])
+        return devices.getMatches().stream()
+                .map(groups -> groups.get(1))
                 .peek(id -> Logger.logDebug("ID found: " + id))
                 .toArray(String[]::new);
     }
@@ -160,13 +166,14 @@ public class Deploy {
                 "--id", deviceId, "--bundle", app, "--no-wifi", "--debug", "--noninteractive");
         runner.addToEnv("PATH", "/usr/bin/:$PATH");
         runner.setInfo(true);
+        OutputMatcher deviceLocked = runner.addMatcher("^Error: The device is locked\\.$");
         boolean keepTrying = true;
         while (keepTrying) {
             keepTrying = false;
             boolean result = runner.runTimedProcess("run", 60);
             Logger.logInfo("result = " + result);
             if (result) {
-                if (runner.getResponses().stream().anyMatch(l -> "Error: The device is locked.".equals(l))) {
+                if (deviceLocked.isMatched()) {
                     Logger.logInfo("Device locked! Please, unlock and press ENTER to try again");
                     System.in.read();
                     keepTrying = true;
@@ -32,13 +32,16 @@ import static com.gluonhq.substrate.util.linux.LinuxLinkerFlags.PkgInfo.debian;
 import static com.gluonhq.substrate.util.linux.LinuxLinkerFlags.PkgInfo.fedora;
 import static com.gluonhq.substrate.util.linux.LinuxLinkerFlags.PkgInfo.hardwired;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
 import com.gluonhq.substrate.util.Logger;
-import com.gluonhq.substrate.util.ProcessRunner;
+import com.gluonhq.substrate.util.ToolQueryCache;
 import com.gluonhq.substrate.util.linux.LinuxFlavor.Flavor;
 
 /**
@@ -95,6 +98,16 @@ public class LinuxLinkerFlags {
                  fedora("gmodule-no-export-2.0", "glib2-devel"))
     );
 
+    /**
+     * Default folders of the pkg-config files. Their last modified time changes
+     * when OS packages are installed, updated or removed, so the cached output
+     * of pkg-config is not used anymore.
+     */
+    private static final List<String> PKG_CONFIG_DIRS = List.of(
+            "/usr/lib/pkgconfig", "/usr/share/pkgconfig", "/usr/lib64/pkgconfig",
+            "/usr/lib/x86_64-linux-gnu/pkgconfig", "/usr/lib/aarch64-linux-gnu/pkgconfig",
+            "/usr/local/lib/pkgconfig", "/usr/local/share/pkgconfig");
+
     /**
      * List of packages found missing on computer.
      */
@@ -112,6 +125,10 @@ public class LinuxLinkerFlags {
      * with information to the user about which OS packages need
      * to be installed.
      *
+     * The output of pkg-config is cached with {@link ToolQueryCache},
+     * and looked up again when <code>PKG_CONFIG_PATH</code>, the pkg-config
+     * folders or the <code>.pc</code> file of the package change.
+     *
      * @return linker flag appropriate for the current linux variant.
      * @throws InterruptedException 
      * @throws IOException 
@@ -145,17 +162,49 @@ public class LinuxLinkerFlags {
         }
 
         String pkgName = pkgInfo.pkgName;
-        ProcessRunner process = new ProcessRunner("/usr/bin/pkg-config", "--libs", pkgName);
-        if (process.runProcess("Get config for " + pkgName) != 0) {
+        String response = ToolQueryCache.getUserCache()
+                .querySingleOutput("Get config for " + pkgName, List.of("PKG_CONFIG_PATH"), getPkgConfigDependencies(pkgName),
+                        "/usr/bin/pkg-config", "--libs", pkgName);
+        if (response == null) {
             missingPackages.add(pkgInfo.installName + " (for pkgConfig " + pkgName + ")");
             return List.of();
         }
 
-        List<String> flags = List.of(process.getResponse().trim().split(" "));
+        List<String> flags = List.of(response.trim().split(" "));
         Logger.logDebug("Pkg " + pkgName + " provided flags: " + flags);
         return flags;
     }
 
+    /**
+     * Returns the files that the output of pkg-config for a package depends on:
+     * the pkg-config folders, which change when packages are installed or removed,
+     * and the <code>.pc</code> file of the package, which changes when it is updated
+     */
+    private static List<Path> getPkgConfigDependencies(String pkgName) {
+        List<Path> dirs = getPkgConfigDirs();
+        List<Path> dependencies = new ArrayList<>(dirs);
+        dirs.stream()
+                .map(dir -> dir.resolve(pkgName + ".pc"))
+                .filter(Files::isRegularFile)
+                .findFirst()
+                .ifPresent(dependencies::add);
+        return dependencies;
+    }
+
+    private static List<Path> getPkgConfigDirs() {
+        List<Path> dirs = new ArrayList<>();
+        String pkgConfigPath = System.getenv("PKG_CONFIG_PATH");
+        if (pkgConfigPath != null) {
+            for (String dir : pkgConfigPath.split(File.pathSeparator)) {
+                if (!dir.isEmpty()) {
+                    dirs.add(Path.of(dir));
+                }
+            }
+        }
+        PKG_CONFIG_DIRS.forEach(dir -> dirs.add(Path.of(dir)));
+        return dirs;
+    }
+
     private boolean isOSPackageMissing() {
         return !missingPackages.isEmpty();
     }    
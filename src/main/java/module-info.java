@@ -2,5 +2,6 @@ module com.gluonhq.substrate {
     requires java.logging;
     requires dd.plist;
     requires java.xml;
+    requires jdk.management;
     requires bcpkix.jdk15on;
 }
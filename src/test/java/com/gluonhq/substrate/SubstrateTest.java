@@ -33,6 +33,11 @@ import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -121,4 +126,58 @@ class SubstrateTest {
         config = new InternalProjectConfiguration(publicConfig);
         assertFalse(config.isUseJavaFX());
     }
+
+    @Test
+    void testTripletAsKey() {
+        Set<Triplet> triplets = new HashSet<>(List.of(
+                new Triplet(Constants.Profile.LINUX),
+                new Triplet(Constants.Profile.LINUX),
+                new Triplet(Constants.Profile.ANDROID)));
+        assertEquals(2, triplets.size());
+    }
+
+    @Test
+    void testCopyForTarget() {
+        ProjectConfiguration publicConfig = new ProjectConfiguration("a.b.Foo", "a.b-1.0.jar");
+        publicConfig.setAppName("foo");
+        publicConfig.setTarget(new Triplet(Constants.Profile.LINUX));
+
+        ProjectConfiguration copy = publicConfig.copyForTarget(new Triplet(Constants.Profile.ANDROID));
+        assertEquals(new Triplet(Constants.Profile.ANDROID), copy.getTargetTriplet());
+        assertEquals(new Triplet(Constants.Profile.LINUX), publicConfig.getTargetTriplet());
+        assertEquals("foo", copy.getAppName());
+        assertEquals("a.b.Foo", copy.getMainClassName());
+        assertEquals("a.b-1.0.jar", copy.getClasspath());
+    }
+
+    @Test
+    void testDaemonConfigRoundTrip() {
+        ProjectConfiguration publicConfig = new ProjectConfiguration("a.b.Foo", "a.b-1.0.jar");
+        publicConfig.setAppName("foo");
+        publicConfig.setTarget(new Triplet(Constants.Profile.ANDROID));
+        publicConfig.setCompilerArgs(List.of("-H:IncludeResources=a,b", "-Dfoo"));
+
+        ProjectConfiguration copy = SubstrateDaemon.fromProperties(SubstrateDaemon.toProperties(publicConfig));
+        assertEquals(new Triplet(Constants.Profile.ANDROID), copy.getTargetTriplet());
+        assertEquals("foo", copy.getAppName());
+        assertEquals("a.b.Foo", copy.getMainClassName());
+        assertEquals("a.b-1.0.jar", copy.getClasspath());
+        assertEquals(List.of("-H:IncludeResources=a,b", "-Dfoo"), copy.getCompilerArgs());
+        assertTrue(copy.getBundlesList().isEmpty());
+    }
+
+    @Test
+    void testDaemonEnvironmentDifferences() {
+        Properties request = new Properties();
+        request.setProperty("env.PATH", "/usr/bin");
+        request.setProperty("env.ANDROID_SDK", "/opt/android");
+        request.setProperty("env.PWD", "/home/user/project");
+        request.setProperty("env.LC_ALL", "C");
+
+        assertTrue(SubstrateDaemon.getEnvironmentDifferences(request,
+                Map.of("PATH", "/usr/bin", "ANDROID_SDK", "/opt/android", "LC_ALL", "C",
+                        "PWD", "/", "SSH_AUTH_SOCK", "/tmp/agent", "MAVEN_OPTS", "-Xmx1g")).isEmpty());
+        assertEquals(List.of("ANDROID_SDK", "GRAALVM_HOME", "LC_ALL", "PATH"), SubstrateDaemon.getEnvironmentDifferences(request,
+                Map.of("PATH", "/bin", "GRAALVM_HOME", "/opt/graalvm", "TERM", "xterm")));
+    }
 }
@@ -27,9 +27,16 @@
  */
 package com.gluonhq.substrate;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Locale;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
-class TestUtils {
+public class TestUtils {
 
     /**
      * Checks if the test is running on Travis CI
@@ -86,4 +93,39 @@ class TestUtils {
     static boolean isCILinux() {
         return isCI() && System.getProperty("os.name").toLowerCase(Locale.ROOT).contains("nux");
     }
+
+    /**
+     * Writes a jar with the given entries
+     * @param jar the path of the jar
+     * @param entries the names and the text content of the entries
+     * @return the path of the jar
+     * @throws IOException if the jar can't be written
+     */
+    public static Path writeJar(Path jar, Map<String, String> entries) throws IOException {
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(jar))) {
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                zos.putNextEntry(new ZipEntry(entry.getKey()));
+                zos.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+                zos.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    /**
+     * Writes a jar with a single entry
+     * @param jar the path of the jar
+     * @param name the name of the entry
+     * @param content the content of the entry
+     * @return the path of the jar
+     * @throws IOException if the jar can't be written
+     */
+    public static Path writeJar(Path jar, String name, byte[] content) throws IOException {
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(jar))) {
+            zos.putNextEntry(new ZipEntry(name));
+            zos.write(content);
+            zos.closeEntry();
+        }
+        return jar;
+    }
 }
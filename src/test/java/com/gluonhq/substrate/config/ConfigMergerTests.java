@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2019, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.config;
+
+import com.gluonhq.substrate.Constants;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConfigMergerTests {
+
+    @Test
+    void testDuplicateClassesAreMerged() throws IOException {
+        ConfigMerger merger = new ConfigMerger();
+        merger.addClassConfig("[{\"name\":\"a.B\",\"allPublicMethods\":true," +
+                "\"methods\":[{\"name\":\"run\",\"parameterTypes\":[]}]}]", "first");
+        merger.addClassConfig("[{\"name\":\"a.B\",\"allDeclaredFields\":true,\"allPublicMethods\":false," +
+                "\"methods\":[{\"name\":\"run\",\"parameterTypes\":[]},{\"name\":\"call\",\"parameterTypes\":[\"int\"]}]}," +
+                "{\"name\":\"a.A\"}]", "second");
+        assertEquals(2, merger.getClassCount());
+
+        List<?> classes = (List<?>) Json.parse(new StringReader(write(merger)), "merged");
+        assertEquals(2, classes.size());
+        assertEquals("a.A", ((Map<?, ?>) classes.get(0)).get("name"));
+        Map<?, ?> b = (Map<?, ?>) classes.get(1);
+        assertEquals("a.B", b.get("name"));
+        assertEquals(Boolean.TRUE, b.get("allPublicMethods"));
+        assertEquals(Boolean.TRUE, b.get("allDeclaredFields"));
+        List<?> methods = (List<?>) b.get("methods");
+        assertEquals(2, methods.size());
+        assertEquals("call", ((Map<?, ?>) methods.get(0)).get("name"));
+    }
+
+    @Test
+    void testAddClass() throws IOException {
+        ConfigMerger merger = new ConfigMerger();
+        merger.addClass("a.Main", false);
+        merger.addClass("a.Main", true);
+        merger.addClass("a.Other", false);
+        String content = write(merger);
+        List<?> classes = (List<?>) Json.parse(new StringReader(content), "merged");
+        assertEquals(Map.of("name", "a.Other"), classes.get(1));
+        assertEquals(7, ((Map<?, ?>) classes.get(0)).size());
+        assertEquals(Boolean.TRUE, ((Map<?, ?>) classes.get(0)).get("allDeclaredConstructors"));
+    }
+
+    @Test
+    void testOutputIsCanonical() throws IOException {
+        ConfigMerger first = new ConfigMerger();
+        first.addClassConfig("[{\"allPublicFields\":true,\"name\":\"x.Y\"},{\"name\":\"a.B\"}]", "first");
+        ConfigMerger second = new ConfigMerger();
+        second.addClassConfig("[ {\"name\" : \"a.B\"} ,\n {\"name\":\"x.Y\", \"allPublicFields\" : true} ]", "second");
+        String content = write(first);
+        assertEquals(content, write(second));
+        assertTrue(content.indexOf("\"a.B\"") < content.indexOf("\"x.Y\""));
+        assertTrue(content.indexOf("\"name\" : \"x.Y\"") < content.indexOf("allPublicFields"));
+    }
+
+    @Test
+    void testBundledConfigFiles() throws IOException {
+        ConfigMerger merger = new ConfigMerger();
+        for (String file : List.of("reflectionconfig-java.json", "reflectionconfig-javafxsw.json",
+                "jniconfig-java.json", "jniconfig-javafxsw.json")) {
+            InputStream inputStream = ConfigMergerTests.class.getResourceAsStream(Constants.CONFIG_FILES + file);
+            assertNotNull(inputStream);
+            merger.addClassConfig(inputStream, file);
+        }
+        assertTrue(merger.getClassCount() > 0);
+        Json.parse(new StringReader(write(merger)), "merged");
+    }
+
+    @Test
+    void testResourcePatterns() throws IOException {
+        ConfigMerger merger = new ConfigMerger();
+        merger.addResourcePattern(".*\\.png$");
+        merger.addEscapedResourcePattern(".*\\\\.png$");
+        merger.addEscapedResourcePattern(".*\\\\.txt$");
+        merger.addResourceConfig("{\"resources\": [{\"pattern\": \".*\\\\.txt$\"}, {\"pattern\": \"a\"}]}", "first");
+        merger.addResourceConfig("{\"resources\": {\"includes\": [{\"pattern\": \"b\"}]}}", "second");
+        assertEquals(4, merger.getPatternCount());
+
+        Path path = Files.createTempDirectory("substrate-tests").resolve("resourceconfig.json");
+        merger.writeResourceConfig(path);
+        Map<?, ?> config = (Map<?, ?>) Json.parse(new StringReader(Files.readString(path)), "merged");
+        List<?> resources = (List<?>) config.get("resources");
+        assertEquals(List.of(".*\\.png$", ".*\\.txt$", "a", "b"),
+                resources.stream().map(r -> ((Map<?, ?>) r).get("pattern")).collect(Collectors.toList()));
+    }
+
+    @Test
+    void testInvalidConfig() {
+        ConfigMerger merger = new ConfigMerger();
+        IOException e = assertThrows(IOException.class,
+                () -> merger.addClassConfig("[\n{\"name\":\"a.B\",}\n]", "broken.json"));
+        assertTrue(e.getMessage().contains("line 2 of broken.json"));
+        assertThrows(IOException.class, () -> merger.addClassConfig("[{\"methods\":[]}]", "noname.json"));
+        assertThrows(IOException.class, () -> merger.addResourceConfig("[]", "resources.json"));
+    }
+
+    @Test
+    void testUserConfigs() throws IOException, InterruptedException {
+        Path jarPath = Files.createTempDirectory("substrate-tests").resolve("substrate-test.jar");
+        Files.copy(ConfigMergerTests.class.getResourceAsStream("/substrate-test.jar"), jarPath);
+        ConfigResolver resolver = new ConfigResolver(jarPath.toString());
+
+        ConfigMerger merger = new ConfigMerger();
+        for (Map.Entry<String, String> config : resolver.getUserReflectionConfigs("test").entrySet()) {
+            merger.addClassConfig(config.getValue(), config.getKey());
+        }
+        for (Map.Entry<String, String> config : resolver.getUserReflectionConfigs(null).entrySet()) {
+            merger.addClassConfig(config.getValue(), config.getKey());
+        }
+        assertEquals(2, merger.getClassCount());
+
+        ConfigMerger resources = new ConfigMerger();
+        for (Map.Entry<String, String> config : resolver.getUserResourceConfigs(null).entrySet()) {
+            resources.addResourceConfig(config.getValue(), config.getKey());
+        }
+        assertEquals(2, resources.getPatternCount());
+    }
+
+    private static String write(ConfigMerger merger) throws IOException {
+        Path path = Files.createTempDirectory("substrate-tests").resolve("config.json");
+        merger.writeClassConfig(path);
+        return Files.readString(path);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2019, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.config;
+
+import com.gluonhq.substrate.model.ClassPathEntry;
+import com.gluonhq.substrate.util.FileOps;
+import com.gluonhq.substrate.util.JarIndex;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the sequential and the parallel scan of a large classpath.
+ * It is not run by the test task, run it with <code>gradle benchmark</code>.
+ */
+@Tag("benchmark")
+class ConfigScanBenchmarkTests {
+
+    @Test
+    void parallelScan() throws IOException, InterruptedException {
+        Path dir = Files.createTempDirectory("substrate-benchmark");
+        try {
+            List<ClassPathEntry> jars = ConfigTests.writeJars(dir, 1000);
+
+            // warm up
+            ConfigResolver.scanEntries(new JarIndex(null, 0), jars, 1);
+
+            long start = System.nanoTime();
+            Map<ClassPathEntry, Map<String, byte[]>> sequential = ConfigResolver.scanEntries(new JarIndex(null, 0), jars, 1);
+            long sequentialTime = System.nanoTime() - start;
+
+            int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+            start = System.nanoTime();
+            Map<ClassPathEntry, Map<String, byte[]>> parallel = ConfigResolver.scanEntries(new JarIndex(null, 0), jars, threads);
+            long parallelTime = System.nanoTime() - start;
+
+            System.out.println(String.format("Scanned %d jars: sequential %d ms, parallel (%d threads) %d ms, speedup %.2fx",
+                    jars.size(), sequentialTime / 1_000_000, threads, parallelTime / 1_000_000,
+                    (double) sequentialTime / parallelTime));
+
+            ConfigTests.assertSameScan(jars, sequential, parallel);
+            assertEquals(100, sequential.values().stream().filter(m -> !m.isEmpty()).count());
+        } finally {
+            FileOps.deleteDirectory(dir);
+        }
+    }
+}
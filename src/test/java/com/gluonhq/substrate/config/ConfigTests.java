@@ -27,15 +27,24 @@
  */
 package com.gluonhq.substrate.config;
 
+import com.gluonhq.substrate.model.ClassPathEntry;
 import com.gluonhq.substrate.util.FileOps;
+import com.gluonhq.substrate.util.JarIndex;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import static com.gluonhq.substrate.TestUtils.writeJar;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -72,57 +81,131 @@ class ConfigTests {
 
     @Test
     void testReflectionNullArch() throws IOException {
-        List<String> reflectionList = resolver.getUserReflectionList(null);
-        assertNotNull(reflectionList);
-        assertEquals(5, reflectionList.size());
-        assertTrue(reflectionList.stream()
-                .anyMatch(s -> "\"name\":\"this.is.a.test\",".equals(s.trim())));
-        assertTrue(reflectionList.stream()
-                .anyMatch(s -> "\"methods\":[{\"name\":\"test\",\"parameterTypes\":[\"int\"] }]".equals(s.trim())));
+        Map<String, String> reflectionConfigs = resolver.getUserReflectionConfigs(null);
+        assertNotNull(reflectionConfigs);
+        assertEquals(1, reflectionConfigs.size());
+        String config = reflectionConfigs.values().iterator().next();
+        assertTrue(config.contains("\"name\":\"this.is.a.test\""));
+        assertTrue(config.contains("\"methods\":[{\"name\":\"test\",\"parameterTypes\":[\"int\"] }]"));
     }
 
     @Test
     void testReflection() throws IOException {
-        List<String> reflectionList = resolver.getUserReflectionList("test");
-        assertNotNull(reflectionList);
-        assertEquals(10, reflectionList.size());
-        assertTrue(reflectionList.stream()
-                .anyMatch(s -> "\"name\":\"this.is.a.target.test\",".equals(s.trim())));
-        assertTrue(reflectionList.stream()
-                .anyMatch(s -> "\"methods\":[{\"name\":\"test\",\"parameterTypes\":[\"int\"] }]".equals(s.trim())));
+        Map<String, String> reflectionConfigs = resolver.getUserReflectionConfigs("test");
+        assertNotNull(reflectionConfigs);
+        assertEquals(2, reflectionConfigs.size());
+        assertTrue(reflectionConfigs.values().stream()
+                .anyMatch(s -> s.contains("\"name\":\"this.is.a.target.test\"")));
     }
 
     @Test
     void testJNINullArch() throws IOException {
-        List<String> jniList = resolver.getUserJNIList(null);
-        assertNotNull(jniList);
-        assertEquals(5, jniList.size());
-        assertTrue(jniList.stream()
-                .anyMatch(s -> "\"name\":\"this.is.a.test\",".equals(s.trim())));
-        assertEquals(1, jniList.stream()
-                .filter(s -> ",".equals(s.trim()))
-                .count());
+        Map<String, String> jniConfigs = resolver.getUserJNIConfigs(null);
+        assertNotNull(jniConfigs);
+        assertEquals(1, jniConfigs.size());
+        assertTrue(jniConfigs.values().iterator().next().contains("\"name\":\"this.is.a.test\""));
     }
 
     @Test
     void testJNI() throws IOException {
-        List<String> jniList = resolver.getUserJNIList("test");
-        assertNotNull(jniList);
-        assertEquals(10, jniList.size());
-        assertTrue(jniList.stream()
-                .anyMatch(s -> "\"name\":\"this.is.a.test\",".equals(s.trim())));
-        assertEquals(2, jniList.stream()
-                .filter(s -> ",".equals(s.trim()))
-                .count());
+        Map<String, String> jniConfigs = resolver.getUserJNIConfigs("test");
+        assertNotNull(jniConfigs);
+        assertEquals(2, jniConfigs.size());
+        assertTrue(jniConfigs.values().stream()
+                .anyMatch(s -> s.contains("\"name\":\"this.is.a.test\"")));
+        assertTrue(jniConfigs.values().stream()
+                .anyMatch(s -> s.contains("\"name\":\"this.is.a.target.test\"")));
     }
 
     @Test
     void testResourcesNullArch() throws IOException {
-        List<String> resourcesList = resolver.getUserResourcesList(null);
-        assertNotNull(resourcesList);
-        assertEquals(2, resourcesList.size());
-        assertTrue(resourcesList.stream()
-                .anyMatch(s -> s.contains("\".*\\\\.ptn$\"")));
+        Map<String, String> resourceConfigs = resolver.getUserResourceConfigs(null);
+        assertNotNull(resourceConfigs);
+        assertEquals(1, resourceConfigs.size());
+        assertTrue(resourceConfigs.values().iterator().next().contains("\".*\\\\.ptn$\""));
+    }
+
+    @Test
+    void testDalvikClassesAreNotRead() throws IOException, InterruptedException {
+        Path dir = Files.createTempDirectory("substrate-tests");
+        Path first = dir.resolve("first.jar");
+        Path second = dir.resolve("second.jar");
+        String prefix = "META-INF/substrate/dalvik/precompiled/classes/";
+        writeJar(first, Map.of(prefix + "a/A.class", "first", prefix + "a/B.class", "first",
+                "a/Other.class", "other"));
+        writeJar(second, Map.of(prefix + "a/A.class", "second",
+                "META-INF/substrate/config/initbuildtime", "this.is.a.dalvik.test"));
+
+        ConfigResolver dalvikResolver = new ConfigResolver(first + File.pathSeparator + second);
+        assertEquals(List.of("this.is.a.dalvik.test"), dalvikResolver.getUserInitBuildTimeList(null));
+        List<ClassPathEntry> jars = List.of(ClassPathEntry.ofJar(first), ClassPathEntry.ofJar(second));
+        Map<ClassPathEntry, Map<String, byte[]>> scan = ConfigResolver.scanEntries(new JarIndex(null, 0), jars, 1);
+        assertEquals(Set.of(), scan.get(jars.get(0)).keySet());
+        assertEquals(Set.of("META-INF/substrate/config/initbuildtime"), scan.get(jars.get(1)).keySet());
+    }
+
+    @Test
+    void testClassesDirectory() throws IOException, InterruptedException {
+        Path dir = Files.createTempDirectory("substrate-tests");
+        Path classes = dir.resolve("build").resolve("classes");
+        Path resources = dir.resolve("build").resolve("resources").resolve("main");
+        Path config = Files.createDirectories(classes.resolve("META-INF/substrate/config"));
+        Files.writeString(config.resolve("initbuildtime"), "this.is.a.classes.test");
+        Path dalvik = Files.createDirectories(resources.resolve("META-INF/substrate/dalvik/precompiled/classes/a"));
+        Files.writeString(dalvik.resolve("A.class"), "resources");
+        Files.createDirectories(classes.resolve("a"));
+        Files.writeString(classes.resolve("a").resolve("Main.class"), "main");
+
+        ConfigResolver classesResolver = new ConfigResolver(classes + File.pathSeparator + resources);
+        assertEquals(List.of("this.is.a.classes.test"), classesResolver.getUserInitBuildTimeList(null));
+    }
+
+    @Test
+    void testParallelScanIsDeterministic() throws IOException, InterruptedException {
+        Path dir = Files.createTempDirectory("substrate-tests");
+        try {
+            List<ClassPathEntry> jars = writeJars(dir, 20);
+            Map<ClassPathEntry, Map<String, byte[]>> sequential = ConfigResolver.scanEntries(new JarIndex(null, 0), jars, 1);
+            Map<ClassPathEntry, Map<String, byte[]>> parallel = ConfigResolver.scanEntries(new JarIndex(null, 0), jars, 4);
+            assertSameScan(jars, sequential, parallel);
+            assertEquals(2, sequential.values().stream().filter(m -> !m.isEmpty()).count());
+        } finally {
+            FileOps.deleteDirectory(dir);
+        }
+    }
+
+    /**
+     * Writes a synthetic classpath of jars, one of every ten with substrate config files
+     */
+    static List<ClassPathEntry> writeJars(Path dir, int count) throws IOException {
+        List<ClassPathEntry> jars = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Map<String, String> entries = new HashMap<>();
+            for (int j = 0; j < 50; j++) {
+                entries.put("com/example/jar" + i + "/Class" + j + ".class", "class " + j);
+            }
+            if (i % 10 == 0) {
+                entries.put("META-INF/substrate/config/initbuildtime", "this.is.jar" + i);
+                entries.put("META-INF/substrate/config/reflectionconfig.json", "[{\"name\":\"this.is.jar" + i + "\"}]");
+            }
+            Path jar = dir.resolve("jar" + i + ".jar");
+            writeJar(jar, entries);
+            jars.add(ClassPathEntry.ofJar(jar));
+        }
+        return jars;
+    }
+
+    static void assertSameScan(List<ClassPathEntry> jars, Map<ClassPathEntry, Map<String, byte[]>> expected,
+                               Map<ClassPathEntry, Map<String, byte[]>> actual) {
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(actual.keySet()));
+        for (ClassPathEntry jar : jars) {
+            Map<String, byte[]> expectedEntries = expected.get(jar);
+            Map<String, byte[]> actualEntries = actual.get(jar);
+            assertEquals(new ArrayList<>(expectedEntries.keySet()), new ArrayList<>(actualEntries.keySet()));
+            for (String name : expectedEntries.keySet()) {
+                assertArrayEquals(expectedEntries.get(name), actualEntries.get(name));
+            }
+        }
     }
 
 }
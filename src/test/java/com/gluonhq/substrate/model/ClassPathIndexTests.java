@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.model;
+
+import com.gluonhq.substrate.ProjectConfiguration;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.gluonhq.substrate.TestUtils.writeJar;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClassPathIndexTests {
+
+    @Test
+    void indexesClassesPackagesServicesAndResources() throws IOException, InterruptedException {
+        Path dir = Files.createTempDirectory("substrate-tests");
+        Path first = writeJar(dir.resolve("first.jar"), Map.of(
+                "com/example/Main.class", "",
+                "com/example/Main$Inner.class", "",
+                "com/example/module-info.class", "",
+                "META-INF/versions/11/com/example/Versioned.class", "",
+                "META-INF/services/com.example.Service", "# providers\ncom.example.FirstService\n",
+                "com/example/app.css", ""));
+        Path second = writeJar(dir.resolve("second.jar"), Map.of(
+                "com/example/Main.class", "",
+                "com/other/Other.class", "",
+                "META-INF/services/com.example.Service", "com.other.SecondService # second",
+                "com/example/app.css", ""));
+        Path classes = Files.createDirectories(dir.resolve("classes").resolve("com").resolve("project"));
+        Files.writeString(classes.resolve("Project.class"), "");
+
+        List<ClassPathEntry> entries = List.of(ClassPathEntry.ofJar(first), ClassPathEntry.ofJar(second),
+                ClassPathEntry.ofDirectory(dir.resolve("classes")));
+        ClassPathIndex index = ClassPathIndex.build(entries, 4);
+
+        assertEquals(entries.get(0), index.findClass("com.example.Main"));
+        assertTrue(index.containsClass("com.example.Main$Inner"));
+        assertTrue(index.containsClass("com.example.Versioned"));
+        assertFalse(index.containsClass("com.example.module-info"));
+        assertEquals(entries.get(1), index.findClass("com.other.Other"));
+        assertEquals(entries.get(2), index.findClass("com.project.Project"));
+        assertNull(index.findClass("com.example.Missing"));
+
+        assertEquals(List.of(entries.get(0), entries.get(1)), index.findPackage("com.example"));
+        assertTrue(index.containsPackage("com.project"));
+        assertEquals(List.of("com.example", "com.other", "com.project"), index.getPackageNames("com."));
+        assertTrue(index.getPackageNames("javafx.").isEmpty());
+
+        assertEquals(List.of("com.example.FirstService", "com.other.SecondService"),
+                index.getServiceProviders("com.example.Service"));
+        assertTrue(index.getServiceProviders("com.example.Missing").isEmpty());
+
+        assertEquals(entries.get(0), index.findResource("com/example/app.css"));
+        assertEquals(List.of(entries.get(0), entries.get(1)), index.findResources("com/example/app.css"));
+        assertEquals(List.of("META-INF/services/com.example.Service"), index.getResourceNames("META-INF/services/"));
+    }
+
+    @Test
+    void parallelBuildIsDeterministic() throws IOException, InterruptedException {
+        Path dir = Files.createTempDirectory("substrate-tests");
+        List<ClassPathEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            entries.add(ClassPathEntry.ofJar(writeJar(dir.resolve("jar" + i + ".jar"),
+                    Map.of("com/example/Shared.class", "", "shared.txt", "", "com/jar" + i + "/A.class", ""))));
+        }
+        ClassPathIndex sequential = ClassPathIndex.build(entries, 1);
+        ClassPathIndex parallel = ClassPathIndex.build(entries, 8);
+        assertEquals(entries.get(0), parallel.findClass("com.example.Shared"));
+        assertEquals(sequential.findResources("shared.txt"), parallel.findResources("shared.txt"));
+        assertEquals(sequential.getPackageNames(""), parallel.getPackageNames(""));
+    }
+
+    @Test
+    void detectsJavaFXByContent() throws IOException {
+        Path dir = Files.createTempDirectory("substrate-tests");
+        Path fx = writeJar(dir.resolve("graphics.jar"), Map.of("javafx/application/Application.class", ""));
+        Path named = writeJar(dir.resolve("my-javafx-utils.jar"), Map.of("com/example/Util.class", ""));
+
+        assertTrue(configuration(fx.toString()).isUseJavaFX());
+        assertFalse(configuration(named.toString()).isUseJavaFX());
+        // elements that don't exist are detected by name
+        assertTrue(configuration(dir.resolve("javafx-base-15.jar").toString()).isUseJavaFX());
+    }
+
+    @Test
+    void indexIsSharedAcrossTargets() throws Exception {
+        Path dir = Files.createTempDirectory("substrate-tests");
+        Path jar = writeJar(dir.resolve("app.jar"), Map.of("com/example/Main.class", ""));
+        ClassPathEntry entry = ClassPathEntry.ofJar(jar);
+        assertTrue(entry.containsEntries("com/example/"));
+        assertFalse(entry.containsEntries("javafx/"));
+
+        InternalProjectConfiguration first = configuration(jar.toString());
+        InternalProjectConfiguration second = configuration(jar.toString());
+        second.shareClassPathIndex(first);
+        assertSame(first.getClassPathIndex(), second.getClassPathIndex());
+        assertTrue(second.getClassPathIndex().containsClass("com.example.Main"));
+
+        InternalProjectConfiguration other = configuration(dir.resolve("other.jar").toString());
+        other.shareClassPathIndex(first);
+        assertNotSame(first.getClassPathIndex(), other.getClassPathIndex());
+    }
+
+    private static InternalProjectConfiguration configuration(String classpath) {
+        return new InternalProjectConfiguration(new ProjectConfiguration("a.b.Foo", classpath));
+    }
+}
@@ -2,9 +2,14 @@ package com.gluonhq.substrate.model;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -42,5 +47,32 @@ public class ClassPathTests {
         assertEquals(newCp, "/aa/bb/javafx-base.jar:/aa/bb/javafx-graphics.jar");
     }
 
+    @Test
+    public void testGetEntries() {
+        var cp = new ClassPath("/a/lib.jar:/a/build/classes/java/main:/a/build/resources/main:/a/other");
+        var entries = cp.getEntries(false);
+        assertEquals(1, entries.size());
+        assertFalse(entries.get(0).isDirectory());
+        assertEquals(Path.of("/a/lib.jar"), entries.get(0).getPath());
+
+        entries = cp.getEntries(true);
+        assertEquals(3, entries.size());
+        assertTrue(entries.get(1).isDirectory());
+        assertEquals(Path.of("/a/build/classes/java/main"), entries.get(1).getPath());
+        assertEquals(Path.of("/a/build/resources/main"), entries.get(2).getPath());
+    }
+
+    @Test
+    public void testReadDirectoryEntries() throws IOException {
+        Path dir = Files.createTempDirectory("substrate-tests");
+        Files.createDirectories(dir.resolve("META-INF/substrate/config"));
+        Files.writeString(dir.resolve("META-INF/substrate/config/initbuildtime"), "a.B");
+        Files.writeString(dir.resolve("META-INF/other"), "other");
+
+        Map<String, byte[]> entries = ClassPathEntry.ofDirectory(dir).readEntries("META-INF/substrate/");
+        assertEquals(Set.of("META-INF/substrate/config/initbuildtime"), entries.keySet());
+        assertEquals("a.B", new String(entries.get("META-INF/substrate/config/initbuildtime"), StandardCharsets.UTF_8));
+        assertTrue(ClassPathEntry.ofDirectory(dir).readEntries("META-INF/missing/").isEmpty());
+    }
 
 }
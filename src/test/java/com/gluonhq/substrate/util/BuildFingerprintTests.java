@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BuildFingerprintTests {
+
+    private Path getTempDir() throws IOException {
+        return Files.createTempDirectory("substrate-fingerprint-tests");
+    }
+
+    @Test
+    void matchesSameInputs() throws IOException {
+        Path tempDir = getTempDir();
+        Path input = Files.writeString(tempDir.resolve("input.txt"), "foo");
+        Path fingerprintFile = tempDir.resolve("test.fingerprint");
+
+        BuildFingerprint fingerprint = new BuildFingerprint()
+                .add("arguments", List.of("-a", "-b"))
+                .addFile(input);
+        assertFalse(fingerprint.matches(fingerprintFile));
+        fingerprint.write(fingerprintFile);
+
+        BuildFingerprint other = new BuildFingerprint()
+                .add("arguments", List.of("-a", "-b"))
+                .addFile(input);
+        assertTrue(other.matches(fingerprintFile));
+        assertEquals(fingerprint.getHash(), other.getHash());
+    }
+
+    @Test
+    void detectsChangedContent() throws IOException {
+        Path tempDir = getTempDir();
+        Path input = Files.writeString(tempDir.resolve("input.txt"), "foo");
+        Path fingerprintFile = tempDir.resolve("test.fingerprint");
+
+        BuildFingerprint fingerprint = new BuildFingerprint().addClasspath(tempDir.toString());
+        fingerprint.write(fingerprintFile);
+
+        Files.writeString(input, "bar");
+        BuildFingerprint other = new BuildFingerprint().addClasspath(tempDir.toString());
+        assertFalse(other.matches(fingerprintFile));
+        assertNotEquals(fingerprint.getHash(), other.getHash());
+    }
+
+    @Test
+    void detectsChangedArguments() throws IOException {
+        Path fingerprintFile = getTempDir().resolve("test.fingerprint");
+        new BuildFingerprint().add("arguments", List.of("-a", "-b")).write(fingerprintFile);
+
+        assertFalse(new BuildFingerprint().add("arguments", List.of("-a")).matches(fingerprintFile));
+        assertFalse(new BuildFingerprint()
+                .add("arguments", List.of("-a", "-b"))
+                .add("target", "x86_64-linux-linux")
+                .matches(fingerprintFile));
+    }
+
+    @Test
+    void relocatedPathsHaveSameHash() throws IOException {
+        Path checkout1 = getTempDir();
+        Path checkout2 = getTempDir();
+        Files.writeString(checkout1.resolve("input.txt"), "foo");
+        Files.writeString(checkout2.resolve("input.txt"), "foo");
+
+        BuildFingerprint fingerprint1 = new BuildFingerprint()
+                .relocate(checkout1, "${project}")
+                .add("arguments", List.of("-cp", checkout1.toString()))
+                .addClasspath(checkout1.toString());
+        BuildFingerprint fingerprint2 = new BuildFingerprint()
+                .relocate(checkout2, "${project}")
+                .add("arguments", List.of("-cp", checkout2.toString()))
+                .addClasspath(checkout2.toString());
+        assertEquals(fingerprint1.getHash(), fingerprint2.getHash());
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BuildPlanTests {
+
+    @Test
+    void processesAreNotStartedWhileComputing() throws Exception {
+        BuildPlan plan = new BuildPlan("x86_64-linux-linux");
+        plan.compute(() -> {
+            assertTrue(BuildPlan.isComputing());
+            BuildPlan.ProcessNotAllowedException e = assertThrows(BuildPlan.ProcessNotAllowedException.class,
+                    () -> new ProcessRunner("echo", "hello").runProcess("echo"));
+            assertEquals("echo hello", e.getCommand());
+            return null;
+        });
+        assertFalse(BuildPlan.isComputing());
+        assertEquals(0, new ProcessRunner("echo", "hello").runProcess("echo"));
+    }
+
+    @Test
+    void planAsJson() {
+        BuildPlan plan = new BuildPlan("x86_64-linux-linux");
+        plan.addDownload("javafxStaticSdk", "https://example.com/sdk.zip");
+        plan.addStep("compile", BuildPlan.Status.UP_TO_DATE, List.of("native-image", "-cp", "a \"b\""), null);
+        plan.addStep("link", BuildPlan.Status.UNRESOLVED, List.of(), "requires running pkg-config");
+        assertEquals("{\n" +
+                "  \"target\": \"x86_64-linux-linux\",\n" +
+                "  \"downloads\": [\n" +
+                "    {\"name\": \"javafxStaticSdk\", \"location\": \"https://example.com/sdk.zip\"}\n" +
+                "  ],\n" +
+                "  \"steps\": [\n" +
+                "    {\"name\": \"compile\", \"status\": \"up-to-date\", \"command\": [\"native-image\", \"-cp\", \"a \\\"b\\\"\"]},\n" +
+                "    {\"name\": \"link\", \"status\": \"unresolved\", \"detail\": \"requires running pkg-config\", \"command\": []}\n" +
+                "  ]\n" +
+                "}\n", plan.toJson());
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class BuildTraceTests {
+
+    @Test
+    void spansAreWrittenAsCompleteEvents() throws Exception {
+        Path file = Files.createTempDirectory("substrate-trace-tests").resolve(BuildTrace.TRACE_FILE);
+        BuildTrace.open(file, false);
+        try (BuildTrace.Span span = BuildTrace.begin("target", "compile \"app\"")) {
+            span.arg("result", true).arg("cmd", "a\tb");
+        }
+        String trace = Files.readString(file);
+        assertTrue(trace.startsWith("[\n{\"name\":\"compile \\\"app\\\"\",\"cat\":\"target\",\"ph\":\"X\""));
+        assertTrue(trace.endsWith(",\"args\":{\"result\":true,\"cmd\":\"a\\tb\"}}"));
+        BuildTrace.close();
+    }
+
+    @Test
+    void appendToExistingTrace() throws Exception {
+        Path file = Files.createTempDirectory("substrate-trace-tests").resolve(BuildTrace.TRACE_FILE);
+        BuildTrace.open(file, false);
+        BuildTrace.begin("dispatcher", "compile").close();
+        BuildTrace.close();
+
+        BuildTrace.open(file, true);
+        BuildTrace.begin("dispatcher", "link").close();
+        String trace = Files.readString(file);
+        assertEquals(2, trace.split("\"ph\":\"X\"").length - 1);
+        assertTrue(trace.contains("},\n{\"name\":\"link\""));
+
+        BuildTrace.open(file, false);
+        BuildTrace.begin("dispatcher", "compile").close();
+        assertEquals(1, Files.readString(file).split("\"ph\":\"X\"").length - 1);
+        BuildTrace.close();
+    }
+
+    @Test
+    void processSpansHaveResourceUsage() throws Exception {
+        assumeTrue(Files.isDirectory(Path.of("/proc/self")));
+        Path file = Files.createTempDirectory("substrate-trace-tests").resolve(BuildTrace.TRACE_FILE);
+        BuildTrace.open(file, false);
+        ProcessRunner runner = new ProcessRunner("sh", "-c", "i=0; while [ $i -lt 20000 ]; do i=$((i+1)); done; sleep 0.5");
+        assertEquals(0, runner.runProcess("busy"));
+        String trace = Files.readString(file);
+        assertTrue(trace.contains("\"name\":\"busy\",\"cat\":\"process\""));
+        assertTrue(trace.contains("\"exitValue\":0"));
+        assertTrue(trace.contains("\"peakRssKb\":"));
+        BuildTrace.close();
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class BuildUsageTests {
+
+    @Test
+    void recordsUsageByStep() throws Exception {
+        assumeTrue(Files.isDirectory(Path.of("/proc/self")));
+        BuildUsage buildUsage = new BuildUsage();
+
+        ProcessRunner busy = new ProcessRunner("sh", "-c", "i=0; while [ $i -lt 200000 ]; do i=$((i+1)); done; sleep 1");
+        ProcessResult result = buildUsage.call("compile", () -> busy.start("busy").get());
+        assertNotNull(result.getUsage());
+        assertTrue(result.getUsage().getCpuTimeMillis() > 0);
+        assertTrue(result.getUsage().getPeakRssKb() > 0);
+
+        buildUsage.call("link", () -> new ProcessRunner("sleep", "0.5").runProcess("sleep"));
+        new ProcessRunner("sleep", "0.5").runProcess("no step");
+
+        Map<String, ProcessUsage> byStep = buildUsage.getUsageByStep();
+        assertEquals(2, byStep.size());
+        assertEquals(result.getUsage().getCpuTimeMillis(), byStep.get("compile").getCpuTimeMillis());
+        assertNotNull(buildUsage.getUsage("link").get("sleep"));
+        assertNull(buildUsage.getUsage("link").get("busy"));
+
+        String json = buildUsage.toJson();
+        assertTrue(json.contains("\"name\": \"compile\""));
+        assertTrue(json.contains("\"name\": \"busy\""));
+        assertTrue(json.contains("\"userTimeMs\": "));
+    }
+
+    @Test
+    void recordsUsageOfTaskGraphs() throws Exception {
+        assumeTrue(Files.isDirectory(Path.of("/proc/self")));
+        BuildUsage buildUsage = new BuildUsage();
+
+        TaskGraph graph = new TaskGraph("compile")
+                .addTask("nativeImage", List.of(), List.of("objects"),
+                        () -> new ProcessRunner("sleep", "0.5").runProcess("native-image") == 0)
+                .addTask("additionalSources", List.of(), List.of("additionalObjects"),
+                        () -> new ProcessRunner("sleep", "0.2").runProcess("clang") == 0);
+        buildUsage.call("compile", () -> {
+            graph.execute();
+            return null;
+        });
+
+        assertNotNull(buildUsage.getUsage("compile").get("native-image"));
+        assertNotNull(buildUsage.getUsage("compile").get("clang"));
+    }
+}
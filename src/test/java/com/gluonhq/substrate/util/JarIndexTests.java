@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+import static com.gluonhq.substrate.TestUtils.writeJar;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JarIndexTests {
+
+    @Test
+    void indexesRelevantEntries() throws IOException {
+        Path tempDir = Files.createTempDirectory("substrate-jarindex-tests");
+        File jar = writeJar(tempDir.resolve("test.jar"), Map.of(
+                "META-INF/substrate/config/initbuildtime", "a.B",
+                "native/linux/libfoo.a", "archive",
+                "a/B.class", "class")).toFile();
+        JarIndex index = new JarIndex(tempDir.resolve("jarindex"), TimeUnit.DAYS.toMillis(1));
+
+        List<JarIndex.Entry> entries = index.getEntries(jar);
+        assertEquals(List.of("META-INF/substrate/config/initbuildtime", "native/linux/libfoo.a"),
+                entries.stream().map(JarIndex.Entry::getName).sorted().collect(Collectors.toList()));
+        JarIndex.Entry config = index.getEntries(jar, "META-INF/substrate/config/").get(0);
+        assertArrayEquals("a.B".getBytes(StandardCharsets.UTF_8), config.getContent());
+        JarIndex.Entry lib = index.getEntries(jar, "native/").get(0);
+        assertNull(lib.getContent());
+        assertEquals(7, lib.getSize());
+        assertEquals(crc("archive"), lib.getCrc());
+        assertTrue(index.hasNativeLibs(jar));
+    }
+
+    @Test
+    void unchangedJarIsNotReopened() throws IOException {
+        Path tempDir = Files.createTempDirectory("substrate-jarindex-tests");
+        Path jarPath = tempDir.resolve("test.jar");
+        File jar = writeJar(jarPath, Map.of("META-INF/substrate/config/initbuildtime", "a.B")).toFile();
+        FileTime time = Files.getLastModifiedTime(jarPath);
+        new JarIndex(tempDir.resolve("jarindex"), TimeUnit.DAYS.toMillis(1)).getEntries(jar);
+
+        // same size and time, but the jar can't be read anymore: a new index uses the stored one
+        byte[] garbage = new byte[(int) Files.size(jarPath)];
+        Files.write(jarPath, garbage);
+        Files.setLastModifiedTime(jarPath, time);
+        JarIndex index = new JarIndex(tempDir.resolve("jarindex"), TimeUnit.DAYS.toMillis(1));
+        assertEquals(1, index.getEntries(jar).size());
+        assertFalse(index.hasNativeLibs(jar));
+
+        // a changed jar is read again
+        writeJar(jarPath, Map.of("META-INF/substrate/config/initbuildtime", "a.B", "libbar.a", "archive"));
+        Files.setLastModifiedTime(jarPath, FileTime.fromMillis(time.toMillis() + 10_000));
+        assertEquals(2, index.getEntries(jar).size());
+        assertTrue(index.hasNativeLibs(jar));
+    }
+
+    @Test
+    void memoryKeepsOnlyLatestVersionOfJar() throws IOException {
+        Path tempDir = Files.createTempDirectory("substrate-jarindex-tests");
+        Path jarPath = tempDir.resolve("test.jar");
+        File jar = writeJar(jarPath, Map.of("META-INF/substrate/dalvik/classes.dex", "dex")).toFile();
+        FileTime time = Files.getLastModifiedTime(jarPath);
+        JarIndex index = new JarIndex(null, TimeUnit.DAYS.toMillis(1));
+        index.getEntries(jar);
+        long bytes = index.getMemoryBytes();
+        assertTrue(bytes > 0);
+
+        for (int i = 1; i <= 3; i++) {
+            writeJar(jarPath, Map.of("META-INF/substrate/dalvik/classes.dex", "dex" + i));
+            Files.setLastModifiedTime(jarPath, FileTime.fromMillis(time.toMillis() + i * 10_000));
+            index.getEntries(jar);
+        }
+        assertEquals(bytes + 1, index.getMemoryBytes());
+    }
+
+    @Test
+    void memoryIsBounded() throws IOException {
+        Path tempDir = Files.createTempDirectory("substrate-jarindex-tests");
+        String content = "x".repeat(1000);
+        JarIndex index = new JarIndex(null, TimeUnit.DAYS.toMillis(1), 5000);
+        for (int i = 0; i < 20; i++) {
+            File jar = writeJar(tempDir.resolve("test" + i + ".jar"),
+                    Map.of("META-INF/substrate/dalvik/classes.dex", content)).toFile();
+            assertEquals(1, index.getEntries(jar).size());
+            assertTrue(index.getMemoryBytes() <= 5000);
+        }
+        assertTrue(index.getMemoryBytes() > 0);
+    }
+
+    @Test
+    void pruneRemovesUnusedFiles() throws IOException {
+        Path tempDir = Files.createTempDirectory("substrate-jarindex-tests");
+        Path old = Files.writeString(tempDir.resolve("old"), "old");
+        Path recent = Files.writeString(tempDir.resolve("recent"), "recent");
+        Files.setLastModifiedTime(old, FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2)));
+
+        JarIndex.prune(tempDir, TimeUnit.DAYS.toMillis(1));
+        assertFalse(Files.exists(old));
+        assertTrue(Files.exists(recent));
+    }
+
+    private static long crc(String content) {
+        CRC32 crc = new CRC32();
+        crc.update(content.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+}
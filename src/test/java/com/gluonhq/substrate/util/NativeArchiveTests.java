@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NativeArchiveTests {
+
+    private static final int CPU_TYPE_X86_64 = 0x01000007;
+    private static final int CPU_TYPE_ARM64 = 0x0100000c;
+
+    @Test
+    void universalFile() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8 + 2 * 20).order(ByteOrder.BIG_ENDIAN)
+                .putInt(0xcafebabe)
+                .putInt(2);
+        buffer.putInt(CPU_TYPE_X86_64).putInt(3).putInt(4096).putInt(100).putInt(12);
+        buffer.putInt(CPU_TYPE_ARM64).putInt(0).putInt(8192).putInt(100).putInt(14);
+        assertEquals(Set.of("x86_64", "arm64"), read(buffer.array()));
+    }
+
+    @Test
+    void machOObject() throws IOException {
+        assertEquals(Set.of("arm64"), read(machO(CPU_TYPE_ARM64, 0)));
+        assertEquals(Set.of("arm64e"), read(machO(CPU_TYPE_ARM64, 2)));
+        assertEquals(Set.of("x86_64"), read(machO(CPU_TYPE_X86_64, 3)));
+    }
+
+    @Test
+    void staticArchive() throws IOException {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        archive.write("!<arch>\n".getBytes(StandardCharsets.US_ASCII));
+        String symdef = "__.SYMDEF SORTED";
+        addMember(archive, "#1/" + (symdef.length() + 4), concat(padded(symdef, symdef.length() + 4), new byte[7]));
+        addMember(archive, "notes.txt", "not an object".getBytes(StandardCharsets.US_ASCII));
+        addMember(archive, "foo.o", machO(CPU_TYPE_ARM64, 0));
+        addMember(archive, "bar.o", machO(CPU_TYPE_X86_64, 3));
+        assertEquals(Set.of("arm64"), read(archive.toByteArray()));
+    }
+
+    @Test
+    void bitcodeWrapper() throws IOException {
+        byte[] wrapper = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(0x0b17c0de)
+                .putInt(0)
+                .putInt(20)
+                .putInt(4)
+                .putInt(CPU_TYPE_ARM64)
+                .array();
+        assertEquals(Set.of("arm64"), read(wrapper));
+    }
+
+    @Test
+    void unknownFormats() throws IOException {
+        assertTrue(read(new byte[0]).isEmpty());
+        assertTrue(read("foo".getBytes(StandardCharsets.US_ASCII)).isEmpty());
+        assertTrue(read("\u007fELF and something else".getBytes(StandardCharsets.US_ASCII)).isEmpty());
+    }
+
+    private static Set<String> read(byte[] content) throws IOException {
+        return NativeArchive.readArchitectures(new ByteArrayInputStream(content));
+    }
+
+    private static byte[] machO(int cpuType, int cpuSubtype) {
+        return ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(0xfeedfacf)
+                .putInt(cpuType)
+                .putInt(cpuSubtype)
+                .putInt(1)
+                .array();
+    }
+
+    private static void addMember(ByteArrayOutputStream archive, String name, byte[] content) throws IOException {
+        String header = String.format("%-16s%-12s%-6s%-6s%-8s%-10d`\n", name, "0", "0", "0", "644", content.length);
+        archive.write(header.getBytes(StandardCharsets.US_ASCII));
+        archive.write(content);
+        if (content.length % 2 == 1) {
+            archive.write('\n');
+        }
+    }
+
+    private static byte[] padded(String name, int length) {
+        return concat(name.getBytes(StandardCharsets.US_ASCII), new byte[length - name.length()]);
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = new byte[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
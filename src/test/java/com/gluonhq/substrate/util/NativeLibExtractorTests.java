@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.gluonhq.substrate.TestUtils.writeJar;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NativeLibExtractorTests {
+
+    @Test
+    void onlyChangedLibrariesAreWritten() throws IOException, InterruptedException {
+        Path tempDir = Files.createTempDirectory("substrate-nativelibs-tests");
+        Path libPath = tempDir.resolve("lib");
+        File first = writeJar(tempDir.resolve("first.jar"), Map.of("native/libfoo.a", "foo", "native/libbar.a", "bar")).toFile();
+        File second = writeJar(tempDir.resolve("second.jar"), Map.of("libfoo.a", "other foo", "libbaz.a", "baz")).toFile();
+        JarIndex jarIndex = new JarIndex(null, 0);
+        NativeLibExtractor extractor = new NativeLibExtractor(libPath, jarIndex, null);
+
+        extractor.extract(List.of(first.getAbsoluteFile(), second));
+        assertEquals(3, extractor.getExtracted());
+        assertEquals("foo", Files.readString(libPath.resolve("libfoo.a")));
+        assertEquals("baz", Files.readString(libPath.resolve("libbaz.a")));
+
+        // nothing changed: nothing is written
+        extractor = new NativeLibExtractor(libPath, jarIndex, null);
+        extractor.extract(List.of(first, second));
+        assertEquals(0, extractor.getExtracted());
+        assertEquals(3, extractor.getKept());
+
+        // a library modified outside of the extractor is written again
+        Files.writeString(libPath.resolve("libbar.a"), "modified");
+        extractor.extract(List.of(first, second));
+        assertEquals(1, extractor.getExtracted());
+        assertEquals("bar", Files.readString(libPath.resolve("libbar.a")));
+
+        // a changed jar only writes its changed library, and removes the stale ones
+        writeJar(tempDir.resolve("second.jar"), Map.of("libbaz.a", "new baz!"));
+        Files.setLastModifiedTime(second.toPath(), FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        FileTime fooTime = Files.getLastModifiedTime(libPath.resolve("libfoo.a"));
+        extractor.extract(List.of(first, second));
+        assertEquals(1, extractor.getExtracted());
+        assertEquals(2, extractor.getKept());
+        assertEquals("new baz!", Files.readString(libPath.resolve("libbaz.a")));
+        assertEquals(fooTime, Files.getLastModifiedTime(libPath.resolve("libfoo.a")));
+
+        // a jar removed from the classpath
+        extractor.extract(List.of(first));
+        assertEquals(1, extractor.getRemoved());
+        assertFalse(Files.exists(libPath.resolve("libbaz.a")));
+
+        // no libraries at all
+        extractor.extract(List.of());
+        assertFalse(Files.exists(libPath));
+    }
+
+    @Test
+    void rejectedLibrariesFallBackToTheNextJar() throws IOException, InterruptedException {
+        Path tempDir = Files.createTempDirectory("substrate-nativelibs-tests");
+        Path libPath = tempDir.resolve("lib");
+        File first = writeJar(tempDir.resolve("first.jar"), "libfoo.a", machO(0x01000007)).toFile();
+        File second = writeJar(tempDir.resolve("second.jar"), "libfoo.a", machO(0x0100000c)).toFile();
+        JarIndex jarIndex = new JarIndex(null, 0);
+        AtomicInteger filterRuns = new AtomicInteger();
+        NativeLibExtractor extractor = new NativeLibExtractor(libPath, jarIndex, architectures -> {
+            filterRuns.incrementAndGet();
+            return architectures.contains("arm64");
+        });
+
+        extractor.extract(List.of(first, second));
+        assertArrayEquals(machO(0x0100000c), Files.readAllBytes(libPath.resolve("libfoo.a")));
+        assertEquals(2, filterRuns.get());
+        assertEquals(1, extractor.getExtracted());
+
+        // the rejection is remembered, so the filter doesn't run again
+        extractor.extract(List.of(first, second));
+        assertEquals(2, filterRuns.get());
+        assertEquals(0, extractor.getExtracted());
+        assertTrue(Files.exists(libPath.resolve(NativeLibExtractor.MANIFEST_FILE)));
+    }
+
+    @Test
+    void rejectedLibrariesAreNotWritten() throws IOException, InterruptedException {
+        Path tempDir = Files.createTempDirectory("substrate-nativelibs-tests");
+        Path libPath = tempDir.resolve("lib");
+        File jar = writeJar(tempDir.resolve("x86.jar"), "libfoo.a", machO(0x01000007)).toFile();
+        NativeLibExtractor extractor = new NativeLibExtractor(libPath, new JarIndex(null, 0),
+                architectures -> architectures.contains("arm64"));
+
+        extractor.extract(List.of(jar));
+        assertEquals(0, extractor.getExtracted());
+        try (Stream<Path> files = Files.list(libPath)) {
+            assertEquals(List.of(NativeLibExtractor.MANIFEST_FILE),
+                    files.map(p -> p.getFileName().toString()).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void parallelExtractionIsDeterministic() throws IOException, InterruptedException {
+        Path tempDir = Files.createTempDirectory("substrate-nativelibs-tests");
+        List<File> jars = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Map<String, String> entries = new LinkedHashMap<>();
+            for (int j = 0; j < 20; j++) {
+                entries.put("native/lib" + j + ".a", "jar " + i + " lib " + j);
+            }
+            jars.add(writeJar(tempDir.resolve("lib" + i + ".jar"), entries).toFile());
+        }
+        JarIndex jarIndex = new JarIndex(null, 0);
+
+        Path serialPath = tempDir.resolve("serial");
+        new NativeLibExtractor(serialPath, jarIndex, null, 1).extract(jars);
+        Path parallelPath = tempDir.resolve("parallel");
+        NativeLibExtractor extractor = new NativeLibExtractor(parallelPath, jarIndex, null, 4);
+        extractor.extract(jars);
+
+        assertEquals(20, extractor.getExtracted());
+        for (int j = 0; j < 20; j++) {
+            assertEquals("jar 0 lib " + j, Files.readString(parallelPath.resolve("lib" + j + ".a")));
+        }
+        assertEquals(manifestWithoutTimes(serialPath), manifestWithoutTimes(parallelPath));
+    }
+
+    private static List<String> manifestWithoutTimes(Path libPath) throws IOException {
+        return Files.readAllLines(libPath.resolve(NativeLibExtractor.MANIFEST_FILE)).stream()
+                .map(line -> line.substring(0, line.lastIndexOf('\t')))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * A 64-bit little endian Mach-O header for the given cpu type
+     */
+    private static byte[] machO(int cpuType) {
+        return ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(0xfeedfacf)
+                .putInt(cpuType)
+                .putInt(0)
+                .putInt(1)
+                .array();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ObjectCacheTests {
+
+    @Test
+    void storeAndFetch() throws IOException {
+        Path tempDir = Files.createTempDirectory("substrate-cache-tests");
+        Path object = Files.writeString(tempDir.resolve("main.o"), "object");
+        ObjectCache cache = new ObjectCache(tempDir.resolve("cache"), 1024);
+
+        assertTrue(cache.fetch("key", tempDir.resolve("out")).isEmpty());
+        cache.store("key", List.of(object));
+
+        List<Path> fetched = cache.fetch("key", tempDir.resolve("out"));
+        assertEquals(1, fetched.size());
+        assertEquals("object", Files.readString(tempDir.resolve("out").resolve("main.o")));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() throws IOException {
+        Path tempDir = Files.createTempDirectory("substrate-cache-tests");
+        Path object = Files.writeString(tempDir.resolve("main.o"), "0123456789");
+        Path cacheDir = tempDir.resolve("cache");
+        ObjectCache cache = new ObjectCache(cacheDir, 25);
+
+        cache.store("first", List.of(object));
+        cache.store("second", List.of(object));
+        Files.setLastModifiedTime(cacheDir.resolve("first"), FileTime.fromMillis(1000));
+        Files.setLastModifiedTime(cacheDir.resolve("second"), FileTime.fromMillis(2000));
+        cache.store("third", List.of(object));
+
+        assertFalse(Files.exists(cacheDir.resolve("first")));
+        assertTrue(Files.exists(cacheDir.resolve("second")));
+        assertTrue(Files.exists(cacheDir.resolve("third")));
+    }
+
+    @Test
+    void disabledCache() throws IOException {
+        Path tempDir = Files.createTempDirectory("substrate-cache-tests");
+        Path object = Files.writeString(tempDir.resolve("main.o"), "object");
+        ObjectCache cache = new ObjectCache(tempDir.resolve("cache"), 0);
+
+        cache.store("key", List.of(object));
+        assertFalse(Files.exists(tempDir.resolve("cache")));
+        assertTrue(cache.fetch("key", tempDir.resolve("out")).isEmpty());
+    }
+}
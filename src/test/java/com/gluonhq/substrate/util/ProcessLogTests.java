@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProcessLogTests {
+
+    @Test
+    void writesWhileRunning() throws IOException {
+        Path tempDir = Files.createTempDirectory("substrate-log-tests");
+        ProcessLog log = ProcessLog.create(tempDir, "check version", "java -version");
+        ProcessLog other = ProcessLog.create(tempDir, "check version", "java -version");
+        assertNotEquals(log.getFile(), other.getFile());
+        assertTrue(log.getFile().getFileName().toString().startsWith("process-check_version-"));
+
+        log.write("line 1");
+        log.finish("result: 0", null);
+        String content = Files.readString(log.getFile());
+        assertTrue(content.contains("java -version"));
+        assertTrue(content.contains("Output\n======\nline 1\n"));
+        assertTrue(content.endsWith("Result\n======\nresult: 0\n"));
+
+        other.delete();
+        assertFalse(Files.exists(other.getFile()));
+    }
+
+    @Test
+    void rotatesOldLogs() throws IOException {
+        Path tempDir = Files.createTempDirectory("substrate-log-tests");
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 6; i++) {
+            Path log = Files.writeString(tempDir.resolve("process-p" + i + ".log"), "log " + i);
+            Files.setLastModifiedTime(log, FileTime.fromMillis(now - i * 60_000L));
+        }
+        Files.writeString(tempDir.resolve("client-debug0.log"), "debug");
+
+        ProcessLog.rotate(tempDir, 2, 3);
+
+        assertTrue(Files.exists(tempDir.resolve("process-p0.log")));
+        assertTrue(Files.exists(tempDir.resolve("process-p1.log")));
+        assertTrue(Files.exists(tempDir.resolve("client-debug0.log")));
+        assertEquals(2, count(tempDir, ".log") - 1);
+        assertEquals(3, count(tempDir, ".log.gz"));
+        assertFalse(Files.exists(tempDir.resolve("process-p5.log.gz")));
+        try (InputStream is = new GZIPInputStream(Files.newInputStream(tempDir.resolve("process-p2.log.gz")))) {
+            assertEquals("log 2", new String(is.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void openLogsAreNotRotated() throws IOException {
+        Path tempDir = Files.createTempDirectory("substrate-log-tests");
+        long now = System.currentTimeMillis();
+        ProcessLog log = ProcessLog.create(tempDir, "native-image", "native-image");
+        log.write("line 1");
+        Files.setLastModifiedTime(log.getFile(), FileTime.fromMillis(now - 600_000L));
+        for (int i = 0; i < 2; i++) {
+            Files.writeString(tempDir.resolve("process-p" + i + ".log"), "log " + i);
+        }
+
+        ProcessLog.rotate(tempDir, 1, 3);
+        assertTrue(Files.exists(log.getFile()));
+        log.write("line 2");
+        log.finish("result: 0", null);
+        assertTrue(Files.readString(log.getFile()).contains("line 2"));
+
+        Files.setLastModifiedTime(log.getFile(), FileTime.fromMillis(now - 600_000L));
+        ProcessLog.rotate(tempDir, 1, 3);
+        assertFalse(Files.exists(log.getFile()));
+        assertTrue(Files.exists(log.getFile().resolveSibling(log.getFile().getFileName() + ".gz")));
+    }
+
+    private static long count(Path dir, String suffix) throws IOException {
+        try (Stream<Path> stream = Files.list(dir)) {
+            return stream.filter(p -> p.getFileName().toString().endsWith(suffix)).count();
+        }
+    }
+}
@@ -32,8 +32,19 @@ import org.junit.jupiter.api.Test;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class ProcessTest {
@@ -62,4 +73,155 @@ public class ProcessTest {
         assertTrue(runner.getLastResponse().endsWith("File exists"));
     }
 
+    @Test
+    public void asyncProcessTest() throws IOException, InterruptedException, ExecutionException {
+        CompletableFuture<ProcessResult> first = new ProcessRunner("ls", "LICENSE").start("dir");
+        CompletableFuture<ProcessResult> second = new ProcessRunner("ls", "pom-does-not-exist").start("dir");
+        ProcessResult result = first.get();
+        assertEquals(0, result.getExitValue());
+        assertEquals(List.of("LICENSE"), result.getOutput());
+        assertFalse(result.isTruncated());
+        assertNull(result.getOutputFile());
+        assertTrue(second.get().getExitValue() != 0);
+    }
+
+    @Test
+    public void boundedOutputTest() throws IOException, InterruptedException {
+        ProcessRunner runner = new ProcessRunner("seq", "1", "100");
+        runner.setMaxOutputLines(10);
+        assertEquals(0, runner.runProcess("seq"));
+        assertEquals(10, runner.getResponses().size());
+        assertEquals("91", runner.getResponses().get(0));
+        assertEquals("100", runner.getLastResponse());
+    }
+
+    @Test
+    public void spillOutputTest() throws IOException, InterruptedException, ExecutionException {
+        Path tempDir = getTempDir();
+        Logger.logInit(tempDir.toString(), false);
+        ProcessRunner runner = new ProcessRunner("seq", "1", "100");
+        runner.setMaxOutputLines(10);
+        runner.setSpillOutput(true);
+        ProcessResult result = runner.start("seq").get();
+        assertTrue(result.isTruncated());
+        assertEquals(100, result.getTotalLines());
+        assertEquals(10, result.getOutput().size());
+        assertNotNull(result.getOutputFile());
+        List<String> lines = Files.readAllLines(result.getOutputFile());
+        assertEquals(100, lines.size());
+        assertEquals("1", lines.get(0));
+        assertEquals("100", lines.get(99));
+    }
+
+    @Test
+    public void matcherTest() throws IOException, InterruptedException {
+        ProcessRunner runner = new ProcessRunner("seq", "1", "100");
+        runner.setMaxOutputLines(1);
+        OutputMatcher first = runner.addMatcher("^(1)(\\d)$");
+        OutputMatcher none = runner.addMatcher("^x");
+        List<String> lines = new ArrayList<>();
+        runner.addLineConsumer(lines::add);
+        assertEquals(0, runner.runProcess("seq"));
+        assertEquals(100, lines.size());
+        assertTrue(first.isMatched());
+        assertEquals(List.of("10", "1", "0"), first.getGroups());
+        assertEquals(10, first.getMatches().size());
+        assertEquals("9", first.getMatches().get(9).get(2));
+        assertFalse(none.isMatched());
+        assertEquals(List.of(), none.getGroups());
+
+        // matchers are reset on every run
+        assertEquals(0, runner.runProcess("seq"));
+        assertEquals(10, first.getMatches().size());
+    }
+
+    @Test
+    public void fatalPatternTest() throws IOException, InterruptedException {
+        ProcessRunner runner = new ProcessRunner("sh", "-c", "echo start; echo 'FATAL: stop'; sleep 60; echo end");
+        runner.addFatalPattern(Pattern.compile("^FATAL"));
+        long start = System.currentTimeMillis();
+        assertTrue(runner.runProcess("fatal") != 0);
+        assertTrue(System.currentTimeMillis() - start < 30_000);
+        assertEquals("FATAL: stop", runner.getFatalLine());
+        assertEquals("FATAL: stop", runner.getLastResponse());
+    }
+
+    @Test
+    public void defaultFatalPatternsTest() {
+        assertEquals(FatalPatterns.NATIVE_IMAGE, FatalPatterns.forCommand("/opt/graalvm/bin/native-image"));
+        assertEquals(FatalPatterns.NATIVE_IMAGE, FatalPatterns.forCommand("native-image.cmd"));
+        assertEquals(FatalPatterns.AAPT, FatalPatterns.forCommand("aapt2"));
+        assertEquals(List.of(), FatalPatterns.forCommand("ls"));
+        // the compilers and linkers exit on their own after reporting their errors
+        assertEquals(List.of(), FatalPatterns.forCommand("gcc"));
+        assertEquals(List.of(), FatalPatterns.forCommand("/ndk/bin/aarch64-linux-android-clang"));
+        assertEquals(List.of(), FatalPatterns.forCommand("/usr/bin/ld"));
+
+        assertTrue(matches(FatalPatterns.NATIVE_IMAGE, "Error: Unsupported features in 2 methods"));
+        assertTrue(matches(FatalPatterns.NATIVE_IMAGE, "Exception in thread \"main\" java.lang.OutOfMemoryError: Java heap space"));
+        assertTrue(matches(FatalPatterns.NATIVE_IMAGE, "java.lang.OutOfMemoryError: GC overhead limit exceeded"));
+        assertTrue(matches(FatalPatterns.NATIVE_IMAGE, "Caused by: java.lang.OutOfMemoryError: Java heap space"));
+        // names that contain the error are not failures
+        assertFalse(matches(FatalPatterns.NATIVE_IMAGE, "Registering reflection for java.lang.OutOfMemoryError"));
+        assertFalse(matches(FatalPatterns.NATIVE_IMAGE, "[hello:1234]    analysis:  12,345.67 ms"));
+    }
+
+    private static boolean matches(List<Pattern> patterns, String line) {
+        return patterns.stream().anyMatch(p -> p.matcher(line).find());
+    }
+
+    @Test
+    public void timeoutDestroysProcessTreeTest() throws IOException, InterruptedException {
+        ProcessRunner runner = new ProcessRunner("sh", "-c", "sleep 60 & echo $!; wait");
+        assertFalse(runner.runTimedProcess("sleep", 1));
+        long childPid = Long.parseLong(runner.getResponses().get(0).trim());
+        assertTrue(hasEnded(childPid));
+    }
+
+    @Test
+    public void cancelProcessTest() throws Exception {
+        CancellationToken token = new CancellationToken();
+        ProcessRunner runner = new ProcessRunner("sh", "-c", "sleep 60 & echo $!; wait");
+        long start = System.currentTimeMillis();
+        token.cancelAfter(500, TimeUnit.MILLISECONDS);
+        assertThrows(CancellationException.class, () -> token.call(() -> runner.runProcess("sleep")));
+        assertTrue(System.currentTimeMillis() - start < 30_000);
+        long childPid = Long.parseLong(runner.getResponses().get(0).trim());
+        assertTrue(hasEnded(childPid));
+
+        // a cancelled token doesn't start new processes
+        assertThrows(CancellationException.class, () -> token.call(() -> new ProcessRunner("ls").runProcess("ls")));
+        ProcessRunner other = new ProcessRunner("ls");
+        other.setCancellationToken(token);
+        assertThrows(CancellationException.class, () -> other.runProcess("ls"));
+    }
+
+    @Test
+    void clearedTimeoutDoesNotCancel() throws InterruptedException {
+        CancellationToken token = new CancellationToken();
+        token.cancelAfter(100, TimeUnit.MILLISECONDS);
+        token.clearTimeout();
+        Thread.sleep(300);
+        assertFalse(token.isCancelled());
+    }
+
+    @Test
+    void clockTicksFallBackToDefault() {
+        assertEquals(250, ProcessStats.parseClockTicks("250\n"));
+        assertEquals(100, ProcessStats.parseClockTicks(null));
+        assertEquals(100, ProcessStats.parseClockTicks("undefined"));
+        assertEquals(100, ProcessStats.parseClockTicks("0"));
+        assertTrue(ProcessStats.getClockTicksPerSecond() > 0);
+    }
+
+    private static boolean hasEnded(long pid) throws InterruptedException {
+        for (int i = 0; i < 50; i++) {
+            if (!ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false)) {
+                return true;
+            }
+            Thread.sleep(100);
+        }
+        return false;
+    }
+
 }
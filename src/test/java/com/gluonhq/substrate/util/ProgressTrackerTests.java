@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProgressTrackerTests {
+
+    private static final List<String> OUTPUT = List.of(
+            "[helloworld:1234]    classlist:   1,000.00 ms,  0.96 GB",
+            "[helloworld:1234]        (cap):     500.12 ms,  0.96 GB",
+            "[helloworld:1234]        setup:     600.00 ms,  0.96 GB",
+            "[helloworld:1234]     (clinit):     100.00 ms,  1.21 GB",
+            "[helloworld:1234]     analysis:   8,000.00 ms,  1.21 GB",
+            "[helloworld:1234]     universe:     400.00 ms,  1.21 GB",
+            "[helloworld:1234]      compile:   8,000.00 ms,  2.00 GB",
+            "[helloworld:1234]        image:   1,500.00 ms,  2.00 GB",
+            "[helloworld:1234]        write:     500.00 ms,  2.00 GB",
+            "[helloworld:1234]      [total]:  20,000.00 ms,  2.00 GB");
+
+    @Test
+    void phasesAreParsed() {
+        List<ProgressTracker.Progress> events = new CopyOnWriteArrayList<>();
+        ProgressTracker tracker = new ProgressTracker(null, List.of(events::add));
+        tracker.start();
+        tracker.accept("Some other output");
+        assertEquals("classlist", tracker.getProgress().getPhase());
+        assertEquals(0, tracker.getProgress().getPercent());
+
+        OUTPUT.subList(0, 5).forEach(tracker);
+        ProgressTracker.Progress progress = tracker.getProgress();
+        assertEquals("universe", progress.getPhase());
+        assertEquals(List.of("classlist", "setup", "analysis"), progress.getCompletedPhases());
+        assertEquals(48, progress.getPercent());
+        assertEquals(-1, progress.getEtaMillis());
+
+        OUTPUT.subList(5, OUTPUT.size()).forEach(tracker);
+        tracker.finish(true);
+        ProgressTracker.Progress last = events.get(events.size() - 1);
+        assertTrue(last.isFinished());
+        assertNull(last.getPhase());
+        assertEquals(100, last.getPercent());
+    }
+
+    @Test
+    void historyIsUsedForTheNextBuild() throws Exception {
+        Path history = Files.createTempDirectory("substrate-history-tests").resolve("app.properties");
+        ProgressTracker first = new ProgressTracker(history, List.of());
+        first.start();
+        OUTPUT.forEach(first);
+        first.finish(true);
+        assertTrue(Files.exists(history));
+
+        ProgressTracker second = new ProgressTracker(history, List.of());
+        second.start();
+        OUTPUT.subList(0, 5).forEach(second);
+        ProgressTracker.Progress progress = second.getProgress();
+        // 9600 ms of 20000 ms are done
+        assertTrue(progress.getPercent() >= 48 && progress.getPercent() <= 50, "percent: " + progress.getPercent());
+        assertTrue(progress.getEtaMillis() > 9_000 && progress.getEtaMillis() <= 10_400, "eta: " + progress.getEtaMillis());
+        second.finish(false);
+    }
+
+    @Test
+    void failedBuildsAreNotStored() throws Exception {
+        Path history = Files.createTempDirectory("substrate-history-tests").resolve("app.properties");
+        ProgressTracker tracker = new ProgressTracker(history, List.of());
+        tracker.start();
+        OUTPUT.subList(0, 5).forEach(tracker);
+        tracker.finish(false);
+        assertFalse(Files.exists(history));
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResourceGovernorTests {
+
+    private static final long GB = 1024L * 1024 * 1024;
+
+    @Test
+    void limitsAreSharedBetweenBuilds() {
+        ResourceGovernor.Limits single = ResourceGovernor.computeLimits(16 * GB, 16, 1);
+        assertEquals(16, single.getThreads());
+        assertEquals((long) (14 * GB * 0.8), single.getMaxHeap());
+
+        ResourceGovernor.Limits shared = ResourceGovernor.computeLimits(16 * GB, 16, 2);
+        assertEquals(8, shared.getThreads());
+        assertEquals((long) (7 * GB * 0.8), shared.getMaxHeap());
+    }
+
+    @Test
+    void limitsHaveMinimumValues() {
+        ResourceGovernor.Limits limits = ResourceGovernor.computeLimits(2 * GB, 2, 8);
+        assertEquals(1, limits.getThreads());
+        assertEquals(GB, limits.getMaxHeap());
+
+        assertEquals(-1, ResourceGovernor.computeLimits(-1, 4, 1).getMaxHeap());
+    }
+
+    @Test
+    void argumentsOfTheProjectArePreserved() {
+        ResourceGovernor.Limits limits = ResourceGovernor.computeLimits(16 * GB, 16, 1);
+        assertEquals(List.of("-J-Xmx11468m", "-H:NumberOfThreads=16"),
+                ResourceGovernor.getNativeImageArgs(limits, List.of("-H:+ReportExceptionStackTraces")));
+        assertEquals(List.of("-H:NumberOfThreads=16"),
+                ResourceGovernor.getNativeImageArgs(limits, List.of("-J-Xmx4g")));
+        assertTrue(ResourceGovernor.getNativeImageArgs(limits, List.of("-J-Xmx4g", "-H:NumberOfThreads=2")).isEmpty());
+    }
+
+    @Test
+    void concurrentProcessesKeepTheMinimumResources() {
+        assertEquals(2, ResourceGovernor.computeMaxProcesses(16 * GB, 16));
+        assertEquals(4, ResourceGovernor.computeMaxProcesses(64 * GB, 16));
+        assertEquals(1, ResourceGovernor.computeMaxProcesses(64 * GB, 4));
+        assertEquals(1, ResourceGovernor.computeMaxProcesses(4 * GB, 32));
+        assertEquals(3, ResourceGovernor.computeMaxProcesses(-1, 12));
+    }
+
+    @Test
+    void activeBuildsAreCounted() throws Exception {
+        try (ResourceGovernor.Lease first = ResourceGovernor.register(() -> {});
+             ResourceGovernor.Lease second = ResourceGovernor.register(() -> {})) {
+            assertTrue(second.getLimits().getActiveBuilds() >= first.getLimits().getActiveBuilds() + 1);
+        }
+    }
+
+    @Test
+    void concurrentRegistrationsInTheSameJVM() throws Exception {
+        AtomicInteger closed = new AtomicInteger();
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 20; j++) {
+                    try (ResourceGovernor.Lease lease = ResourceGovernor.register(closed::incrementAndGet)) {
+                        assertTrue(lease.getLimits().getActiveBuilds() >= 1);
+                    } catch (Throwable t) {
+                        errors.add(t);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(List.of(), errors);
+        assertEquals(160, closed.get());
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class TaskGraphTests {
+
+    @Test
+    void dependenciesFromInputsAndOutputs() {
+        TaskGraph graph = new TaskGraph("test")
+                .addTask("compile", List.of("classes"), List.of("objects"), () -> true)
+                .addTask("resources", List.of(), List.of("res"), () -> true)
+                .addTask("link", List.of("objects"), List.of("app"), () -> true)
+                .addTask("package", List.of("app", "res"), List.of("apk"), () -> true);
+        assertEquals(Set.of(), graph.getDependencies("compile"));
+        assertEquals(Set.of("compile"), graph.getDependencies("link"));
+        assertEquals(Set.of("link", "resources"), graph.getDependencies("package"));
+    }
+
+    @Test
+    void runsInDependencyOrder() throws Exception {
+        List<String> order = new CopyOnWriteArrayList<>();
+        new TaskGraph("test")
+                .addTask("package", List.of("app"), List.of(), () -> order.add("package"))
+                .addTask("link", List.of("objects"), List.of("app"), () -> order.add("link"))
+                .addTask("compile", List.of(), List.of("objects"), () -> order.add("compile"))
+                .execute();
+        assertEquals(List.of("compile", "link", "package"), order);
+    }
+
+    @Test
+    void runsIndependentTasksConcurrently() throws Exception {
+        CountDownLatch latch = new CountDownLatch(2);
+        new TaskGraph("test")
+                .addTask("first", List.of(), List.of("a"), () -> {
+                    latch.countDown();
+                    return latch.await(5, TimeUnit.SECONDS);
+                })
+                .addTask("second", List.of(), List.of("b"), () -> {
+                    latch.countDown();
+                    return latch.await(5, TimeUnit.SECONDS);
+                })
+                .execute();
+    }
+
+    @Test
+    void skipsDependentsOfFailedTask() {
+        List<String> executed = new CopyOnWriteArrayList<>();
+        TaskGraph graph = new TaskGraph("test")
+                .addTask("compile", List.of(), List.of("objects"), () -> false)
+                .addTask("link", List.of("objects"), List.of("app"), () -> executed.add("link"));
+        TaskGraph.TaskFailedException e = assertThrows(TaskGraph.TaskFailedException.class, graph::execute);
+        assertEquals("compile", e.getTaskName());
+        assertFalse(executed.contains("link"));
+    }
+
+    @Test
+    void failedTaskCancelsRunningTasks() throws Exception {
+        assumeTrue(Files.isExecutable(Path.of("/bin/sleep")));
+        CountDownLatch processStarted = new CountDownLatch(1);
+        CountDownLatch processEnded = new CountDownLatch(1);
+        TaskGraph graph = new TaskGraph("test")
+                .addTask("compile", List.of(), List.of("objects"), () -> {
+                    processStarted.await(5, TimeUnit.SECONDS);
+                    return false;
+                })
+                .addTask("resources", List.of(), List.of("res"), () -> {
+                    try {
+                        ProcessRunner runner = new ProcessRunner("sleep", "6");
+                        CompletableFuture<ProcessResult> result = runner.start("sleep");
+                        processStarted.countDown();
+                        return result.get().getExitValue() == 0;
+                    } finally {
+                        processEnded.countDown();
+                    }
+                });
+        long start = System.currentTimeMillis();
+        TaskGraph.TaskFailedException e = assertThrows(TaskGraph.TaskFailedException.class, graph::execute);
+        assertEquals("compile", e.getTaskName());
+        assertTrue(System.currentTimeMillis() - start < 4000);
+        // the running tasks have finished when the graph returns
+        assertEquals(0, processEnded.getCount());
+    }
+
+    @Test
+    void cancellationDestroysProcessesOfTasks() throws Exception {
+        assumeTrue(Files.isExecutable(Path.of("/bin/sleep")));
+        CountDownLatch processEnded = new CountDownLatch(1);
+        TaskGraph graph = new TaskGraph("test")
+                .addTask("nativeImage", List.of(), List.of("objects"), () -> {
+                    try {
+                        return new ProcessRunner("sleep", "6").runProcess("sleep") == 0;
+                    } finally {
+                        processEnded.countDown();
+                    }
+                });
+        CancellationToken token = new CancellationToken();
+        token.cancelAfter(1, TimeUnit.SECONDS);
+        long start = System.currentTimeMillis();
+        assertThrows(CancellationException.class, () -> token.call(() -> {
+            graph.execute();
+            return null;
+        }));
+        assertTrue(System.currentTimeMillis() - start < 4000);
+        // the running tasks have finished when the graph returns
+        assertEquals(0, processEnded.getCount());
+    }
+
+    @Test
+    void interruptStopsWaiting() throws Exception {
+        CountDownLatch taskStarted = new CountDownLatch(1);
+        CountDownLatch taskInterrupted = new CountDownLatch(1);
+        TaskGraph graph = new TaskGraph("test")
+                .addTask("slow", List.of(), List.of("objects"), () -> {
+                    taskStarted.countDown();
+                    try {
+                        Thread.sleep(10_000);
+                    } catch (InterruptedException e) {
+                        taskInterrupted.countDown();
+                        throw e;
+                    }
+                    return true;
+                });
+        Thread caller = Thread.currentThread();
+        new Thread(() -> {
+            try {
+                taskStarted.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            caller.interrupt();
+        }).start();
+        assertThrows(InterruptedException.class, graph::execute);
+        assertEquals(0, taskInterrupted.getCount());
+    }
+
+    @Test
+    void reportsExceptions() {
+        TaskGraph graph = new TaskGraph("test")
+                .addTask("compile", List.of(), List.of("objects"), () -> {
+                    throw new IllegalStateException("boom");
+                });
+        TaskGraph.TaskFailedException e = assertThrows(TaskGraph.TaskFailedException.class, graph::execute);
+        assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    void rejectsInvalidGraphs() {
+        TaskGraph graph = new TaskGraph("test")
+                .addTask("a", List.of(), List.of("x"), () -> true);
+        assertThrows(IllegalArgumentException.class, () -> graph.addTask("b", List.of(), List.of("x"), () -> true));
+
+        TaskGraph cycle = new TaskGraph("cycle")
+                .addTask("a", List.of("y"), List.of("x"), () -> true)
+                .addTask("b", List.of("x"), List.of("y"), () -> true);
+        assertThrows(IllegalStateException.class, cycle::execute);
+    }
+}
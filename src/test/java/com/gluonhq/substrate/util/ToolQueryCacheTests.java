@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2020, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ToolQueryCacheTests {
+
+    @Test
+    void cachesUntilToolChanges() throws IOException, InterruptedException {
+        Path tempDir = Files.createTempDirectory("substrate-query-tests");
+        Path tool = createTool(tempDir, "echo \"tool 1.0\"");
+        ToolQueryCache cache = new ToolQueryCache(tempDir.resolve("queries"), TimeUnit.DAYS.toMillis(1));
+
+        assertEquals(List.of("tool 1.0"), cache.query("tool", tool.toString(), "--version"));
+        assertEquals(1, countRuns(tempDir));
+        assertEquals(List.of("tool 1.0"), cache.query("tool", tool.toString(), "--version"));
+        assertEquals(1, countRuns(tempDir));
+
+        // the entry is read from disk by a new cache
+        ToolQueryCache otherCache = new ToolQueryCache(tempDir.resolve("queries"), TimeUnit.DAYS.toMillis(1));
+        assertEquals(List.of("tool 1.0"), otherCache.query("tool", tool.toString(), "--version"));
+        assertEquals(1, countRuns(tempDir));
+
+        // other arguments are a different query
+        cache.query("tool", tool.toString(), "--help");
+        assertEquals(2, countRuns(tempDir));
+
+        // a new version of the tool
+        createTool(tempDir, "echo \"tool 2.0.0\"");
+        Files.setLastModifiedTime(tool, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        assertEquals(List.of("tool 2.0.0"), cache.query("tool", tool.toString(), "--version"));
+        assertEquals(3, countRuns(tempDir));
+    }
+
+    @Test
+    void cachesUntilDependenciesChange() throws IOException, InterruptedException {
+        Path tempDir = Files.createTempDirectory("substrate-query-tests");
+        Path tool = createTool(tempDir, "echo \"-lgtk-3\"");
+        Path pcFile = Files.writeString(tempDir.resolve("gtk+-3.0.pc"), "Libs: -lgtk-3");
+        ToolQueryCache cache = new ToolQueryCache(tempDir.resolve("queries"), TimeUnit.DAYS.toMillis(1));
+
+        List<String> environment = List.of("PKG_CONFIG_PATH");
+        assertEquals("-lgtk-3", cache.querySingleOutput("tool", environment, List.of(pcFile), tool.toString(), "--libs"));
+        assertEquals("-lgtk-3", cache.querySingleOutput("tool", environment, List.of(pcFile), tool.toString(), "--libs"));
+        assertEquals(1, countRuns(tempDir));
+
+        // an updated package
+        Files.writeString(pcFile, "Libs: -lgtk-3 -lgdk-3");
+        assertEquals("-lgtk-3", cache.querySingleOutput("tool", environment, List.of(pcFile), tool.toString(), "--libs"));
+        assertEquals(2, countRuns(tempDir));
+
+        // the values of the environment variables are part of the key
+        List<String> command = List.of(tool.toString(), "--libs");
+        assertNotEquals(cache.getKey(command, List.of(), List.of(pcFile)),
+                cache.getKey(command, List.of("PATH"), List.of(pcFile)));
+    }
+
+    @Test
+    void failuresAreNotCached() throws IOException, InterruptedException {
+        Path tempDir = Files.createTempDirectory("substrate-query-tests");
+        Path tool = createTool(tempDir, "exit 1");
+        ToolQueryCache cache = new ToolQueryCache(tempDir.resolve("queries"), TimeUnit.DAYS.toMillis(1));
+
+        assertNull(cache.query("tool", tool.toString()));
+        assertNull(cache.query("tool", tool.toString()));
+        assertEquals(2, countRuns(tempDir));
+    }
+
+    @Test
+    void disabledCache() throws IOException, InterruptedException {
+        Path tempDir = Files.createTempDirectory("substrate-query-tests");
+        Path tool = createTool(tempDir, "echo ok");
+        ToolQueryCache cache = new ToolQueryCache(tempDir.resolve("queries"), 0);
+
+        assertEquals("ok", cache.querySingleOutput("tool", List.of(), tool.toString()));
+        assertEquals("ok", cache.querySingleOutput("tool", List.of(), tool.toString()));
+        assertEquals(2, countRuns(tempDir));
+    }
+
+    private static Path createTool(Path dir, String body) throws IOException {
+        Path tool = dir.resolve("tool.sh");
+        Files.writeString(tool, "#!/bin/sh\necho run >> " + dir.resolve("runs") + "\n" + body + "\n");
+        tool.toFile().setExecutable(true);
+        return tool;
+    }
+
+    private static int countRuns(Path dir) throws IOException {
+        Path runs = dir.resolve("runs");
+        return Files.exists(runs) ? Files.readAllLines(runs).size() : 0;
+    }
+}